@@ -0,0 +1,49 @@
+package core;
+
+/**
+ * The BenchmarkMain class runs the JMH benchmarks and writes the
+ * results as JSON, so runs of different versions can be compared.
+ * Any JMH option can be given; unless -rf or -rff is given the results
+ * go to jmh-result.json.
+ * 
+ * Usage: java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+	// Where the results go unless told otherwise
+	private static final String RESULT_FILE = "jmh-result.json";
+	
+	public static void main(String[] args) throws RunnerException {
+		CommandLineOptions cmd = null;
+		
+		try {
+			cmd = new CommandLineOptions(args);
+		}
+		catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+		}
+		
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		
+		if (!cmd.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		
+		if (!cmd.getResult().hasValue())
+			options.result(RESULT_FILE);
+		
+		new Runner(options.build()).run();
+	} // End main()
+} // End BenchmarkMain class
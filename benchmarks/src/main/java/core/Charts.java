@@ -0,0 +1,69 @@
+package core;
+
+/**
+ * The Charts class makes synthetic charts for the benchmarks. Notes
+ * are spread evenly over time with a random lane, from a fixed seed so
+ * every run and every version is timed on the same chart.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+public class Charts {
+	// Seed of the lanes, so every chart of a size is the same
+	private static final long SEED = 42L;
+	
+	/**
+	 * Creates a chart in memory.
+	 * 
+	 * @param noteCount The number of notes.
+	 * @param notesPerSecond How close together the notes are.
+	 * @return A NoteStore sorted by time.
+	 */
+	public static NoteStore createNotes(int noteCount, int notesPerSecond) {
+		NoteStore notes = new NoteStore(noteCount);
+		Random random = new Random(SEED);
+		
+		for (int i = 0; i < noteCount; i++)
+			notes.add(random.nextInt(NoteIndex.LANES) + 1, (i * 1000L) / notesPerSecond);
+		
+		return notes;
+	} // End createNotes()
+	
+	/**
+	 * Writes a chart to a temporary .cbm file, which is deleted when
+	 * the JVM exits.
+	 * 
+	 * @param noteCount The number of notes.
+	 * @return The .cbm file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static File writeMap(int noteCount) throws IOException {
+		File file = File.createTempFile("chart-" + noteCount + "-", ".cbm");
+		file.deleteOnExit();
+		
+		Random random = new Random(SEED);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		
+		try {
+			for (int i = 0; i < noteCount; i++) {
+				out.write(Integer.toString(random.nextInt(NoteIndex.LANES) + 1));
+				out.write("::");
+				out.write(Integer.toString(100 + (i * 20)));
+				out.newLine();
+			} // End for
+		}
+		finally {
+			out.close();
+		}
+		
+		return file;
+	} // End writeMap()
+} // End Charts class
@@ -0,0 +1,77 @@
+package core;
+
+/**
+ * The GameUpdateBenchmark class times GamePanel.gameUpdate() moving a
+ * chart forward one frame at a time, with no key presses, for charts
+ * from a thousand to a million notes, for one to four players. The
+ * song clock is a MockClock so every frame is exactly 1/80 s apart.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameUpdateBenchmark {
+	// Time between frames, in ms
+	private static final long FRAME_TIME = 1000 / 80;
+	
+	// Notes per second in the chart
+	private static final int NOTES_PER_SECOND = 8;
+	
+	// Notes in the chart
+	@Param({"1000", "100000", "1000000"})
+	public int notes;
+	
+	// Players playing the chart side by side
+	@Param({"1", "2", "4"})
+	public int players;
+	
+	// The panel being updated and its clock
+	private GamePanel panel;
+	private MockClock clock;
+	private long endTime;
+	
+	@Setup
+	public void setUp() {
+		NoteStore store = Charts.createNotes(this.notes, NOTES_PER_SECOND);
+		
+		this.clock = new MockClock();
+		this.panel = new GamePanel(null, store, FRAME_TIME * 1000000L, this.clock, false, this.players);
+		this.panel.getEngine().setJudgementListener(null);
+		this.endTime = store.getTime(store.size() - 1) + GameEngine.getPassTime();
+	} // End setUp()
+	
+	@Benchmark
+	public long gameUpdate() {
+		// Starting the chart again once it has played through
+		if (this.clock.getTime() > this.endTime) {
+			this.panel.getEngine().reset();
+			this.clock.start();
+		}
+		
+		this.clock.advance(FRAME_TIME);
+		this.panel.gameUpdate();
+		
+		return this.panel.getEngine().getMisses();
+	} // End gameUpdate()
+} // End GameUpdateBenchmark class
@@ -0,0 +1,73 @@
+package core;
+
+/**
+ * The JudgementBenchmark class times key presses going through
+ * GamePanel.checkHit() and being judged by the next gameUpdate(), on
+ * dense charts where every lane has many notes near the top arrows.
+ * Each press is for the next note, so every press finds a note.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class JudgementBenchmark {
+	// Notes in the chart
+	private static final int NOTES = 100000;
+	
+	// How close together the notes are
+	@Param({"10", "100", "1000"})
+	public int notesPerSecond;
+	
+	// The panel being played and its clock
+	private GamePanel panel;
+	private MockClock clock;
+	private NoteStore store;
+	private int next;
+	
+	@Setup
+	public void setUp() {
+		this.store = Charts.createNotes(NOTES, this.notesPerSecond);
+		
+		this.clock = new MockClock();
+		this.panel = new GamePanel(null, this.store, 1, this.clock, false);
+		this.panel.getEngine().setJudgementListener(null);
+		this.next = 0;
+	} // End setUp()
+	
+	@Benchmark
+	public long checkHit() {
+		// Starting the chart again once every note has been pressed
+		if (this.next == this.store.size()) {
+			this.panel.getEngine().reset();
+			this.clock.start();
+			this.next = 0;
+		}
+		
+		this.clock.setTime(this.store.getTime(this.next));
+		this.panel.checkHit(this.store.getLane(this.next++));
+		this.panel.gameUpdate();
+		
+		return this.panel.getEngine().getScore();
+	} // End checkHit()
+} // End JudgementBenchmark class
@@ -0,0 +1,61 @@
+package core;
+
+/**
+ * The MapParserBenchmark class times reading a .cbm chart from disk,
+ * both into Arrow objects (parseInArrows) and into a NoteStore.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapParserBenchmark {
+	// Notes in the chart
+	@Param({"1000", "100000", "1000000"})
+	public int notes;
+	
+	// The chart file and the parser reading it
+	private String map;
+	private MapParser parser;
+	
+	@Setup
+	public void setUp() throws IOException {
+		File file = Charts.writeMap(this.notes);
+		
+		this.map = file.getPath();
+		this.parser = new MapParser();
+	} // End setUp()
+	
+	@Benchmark
+	public ArrayList<Arrow> parseInArrows() throws IOException {
+		return this.parser.parseInArrows(this.map);
+	} // End parseInArrows()
+	
+	@Benchmark
+	public NoteStore parseInNotes() throws IOException {
+		return this.parser.parseInNotes(this.map);
+	} // End parseInNotes()
+} // End MapParserBenchmark class
@@ -0,0 +1,89 @@
+package core;
+
+/**
+ * The NoteStoreBenchmark class times one game update of a chart kept as
+ * an ArrayList of Arrows, each with its own Position, against the same
+ * chart kept in a NoteStore. The list moves every note up each update,
+ * while the store only moves its time forward and looks at the notes
+ * near the screen.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NoteStoreBenchmark {
+	// Tile size for the game
+	private static final int TILE_SIZE = 50;
+	
+	// Time between updates, in ms
+	private static final long FRAME_TIME = 12;
+	
+	// Notes per second in the chart
+	private static final int NOTES_PER_SECOND = 8;
+	
+	// Notes in the chart
+	@Param({"100", "1000", "10000", "100000", "1000000"})
+	public int notes;
+	
+	// The chart as a list of arrows and as a store, and the store's time
+	private ArrayList<Arrow> arrows;
+	private NoteStore store;
+	private long time;
+	
+	@Setup
+	public void setUp() {
+		this.store = Charts.createNotes(this.notes, NOTES_PER_SECOND);
+		this.arrows = new ArrayList<Arrow>(this.notes);
+		
+		// The same notes, each placed where it starts on screen
+		for (int i = 0; i < this.notes; i++) {
+			int lane = this.store.getLane(i);
+			this.arrows.add(new Arrow(new Position((lane * TILE_SIZE) - TILE_SIZE, this.store.getYCoord(i)), lane));
+		}
+		
+		this.time = 0L;
+	} // End setUp()
+	
+	@Benchmark
+	public int arrowList() {
+		for (int a = 0; a < this.arrows.size(); a++)
+			this.arrows.get(a).moveUp();
+		
+		return this.arrows.get(this.notes - 1).getPosition().getYCoord();
+	} // End arrowList()
+	
+	@Benchmark
+	public int noteStore() {
+		this.time += FRAME_TIME;
+		
+		// Starting the chart again once it has played through
+		if (this.time > this.store.getTime(this.notes - 1)) {
+			this.store.reset();
+			this.time = 0L;
+		}
+		
+		return this.store.advanceTo(this.time) + this.store.getYCoord(this.notes - 1);
+	} // End noteStore()
+} // End NoteStoreBenchmark class
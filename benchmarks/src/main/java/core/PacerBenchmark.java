@@ -0,0 +1,97 @@
+package core;
+
+/**
+ * The PacerBenchmark class runs a stand-in game loop with each frame
+ * pacer. Each frame does a little busy work, like an update and render
+ * would, and then the pacer waits for the next frame, so every frame
+ * should take exactly the frame period. The time of each frame is
+ * sampled, and how far its percentiles spread from the period is how
+ * much the pacer jitters. The uncapped pacer does not wait, so its
+ * frames only take as long as the work.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PacerBenchmark {
+	// The pacer waiting out each frame
+	@Param({"sleep", "adaptive", "uncapped"})
+	public String pacer;
+	
+	// Frames per second
+	@Param({"80"})
+	public int fps;
+	
+	// Time each frame is busy for, in us
+	@Param({"2000"})
+	public long work;
+	
+	// The pacer, the time between frames and when the next frame is due, in ns
+	private FramePacer framePacer;
+	private long period;
+	private long nextFrame;
+	
+	// Keeps the JIT from throwing the work away
+	private long sink;
+	
+	@Setup
+	public void setUp() {
+		if (this.pacer.equals("sleep"))
+			this.framePacer = new SleepPacer();
+		else if (this.pacer.equals("adaptive"))
+			this.framePacer = new AdaptivePacer();
+		else
+			this.framePacer = new UncappedPacer();
+		
+		this.period = (this.framePacer instanceof UncappedPacer) ? 0L : 1000000000L / this.fps;
+	} // End setUp()
+	
+	@Setup(Level.Iteration)
+	public void startFrames() {
+		// Frames missed between iterations are not the pacer's fault
+		this.nextFrame = System.nanoTime() + this.period;
+		this.framePacer.waitUntil(this.nextFrame);
+	} // End startFrames()
+	
+	@Benchmark
+	public long frame() {
+		long frameStart = System.nanoTime();
+		
+		// Standing in for the update and render
+		while (System.nanoTime() - frameStart < this.work * 1000L)
+			this.sink++;
+		
+		// Working out the next frame the way GamePanel.run() does
+		long afterTime = System.nanoTime();
+		this.nextFrame += this.period;
+		
+		if (afterTime - this.nextFrame > 0)
+			this.nextFrame = afterTime;
+		
+		this.framePacer.waitUntil(this.nextFrame);
+		
+		return this.sink;
+	} // End frame()
+} // End PacerBenchmark class
@@ -0,0 +1,82 @@
+package core;
+
+/**
+ * The RenderBenchmark class times drawing one frame of the game into
+ * an offscreen BufferedImage, with more or fewer notes on the screen.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+	// Size of the game screen
+	private static final int WIDTH = 200;
+	private static final int HEIGHT = 600;
+	
+	// Notes in the chart
+	private static final int NOTES = 10000;
+	
+	// How close together the notes are, which sets how many are on screen
+	@Param({"2", "20", "200"})
+	public int notesPerSecond;
+	
+	// The panel drawing and the image drawn into
+	private GamePanel panel;
+	private BufferedImage image;
+	private Graphics graphics;
+	
+	@Setup
+	public void setUp() {
+		NoteStore store = Charts.createNotes(NOTES, this.notesPerSecond);
+		MockClock clock = new MockClock();
+		
+		this.panel = new GamePanel(null, store, 1, clock, false);
+		this.panel.getEngine().setJudgementListener(null);
+		
+		// The panel is never added to a screen, so its images are read here
+		this.panel.readInImages();
+		
+		// Moving to the middle of the chart, where the screen is full
+		clock.setTime(store.getTime(NOTES / 2));
+		this.panel.gameUpdate();
+		
+		this.image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		this.graphics = this.image.getGraphics();
+	} // End setUp()
+	
+	@TearDown
+	public void tearDown() {
+		this.graphics.dispose();
+	} // End tearDown()
+	
+	@Benchmark
+	public BufferedImage drawGame() {
+		this.panel.drawGame(this.graphics);
+		
+		return this.image;
+	} // End drawGame()
+} // End RenderBenchmark class
@@ -0,0 +1,103 @@
+package core;
+
+/**
+ * The WindowBenchmark class times one frame (an update followed by a
+ * walk over the notes to draw) for charts from 100 to 1,000,000 notes.
+ * With only the notes near the screen active, the frame time should
+ * stay flat as the chart grows, while walking every note does not.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WindowBenchmark {
+	// Time between frames, in ms
+	private static final long FRAME_TIME = 7;
+	
+	// Notes per second in the chart
+	private static final int NOTES_PER_SECOND = 8;
+	
+	// Notes in the chart
+	@Param({"100", "1000", "10000", "100000", "1000000"})
+	public int notes;
+	
+	// The chart, where the frames start from and the current time
+	private NoteStore store;
+	private long startTime;
+	private long time;
+	
+	@Setup
+	public void setUp() {
+		this.store = Charts.createNotes(this.notes, NOTES_PER_SECOND);
+		this.startTime = this.store.getTime(this.store.size() / 2);
+		this.time = this.startTime;
+		this.store.advanceTo(this.time);
+	} // End setUp()
+	
+	@Benchmark
+	public long windowed() {
+		advance();
+		
+		return walk(this.store.getFirstActive(), this.store.getActiveEnd());
+	} // End windowed()
+	
+	@Benchmark
+	public long everyNote() {
+		advance();
+		
+		return walk(0, this.store.size());
+	} // End everyNote()
+	
+	/**
+	 * Moves the chart forward a frame, starting from the middle again
+	 * once it has played through.
+	 */
+	private void advance() {
+		this.time += FRAME_TIME;
+		
+		if (this.time > this.store.getTime(this.store.size() - 1)) {
+			this.store.reset();
+			this.time = this.startTime;
+		}
+		
+		this.store.advanceTo(this.time);
+	} // End advance()
+	
+	/**
+	 * Stands in for drawing each note that is waiting.
+	 * 
+	 * @param first The first note to look at.
+	 * @param end The note after the last one to look at.
+	 * @return A long of the coordinates added up, so the walk is not thrown away.
+	 */
+	private long walk(int first, int end) {
+		long sum = 0L;
+		
+		for (int i = first; i < end; i++)
+			if (this.store.getState(i) == NoteStore.WAITING)
+				sum += this.store.getYCoord(i) + this.store.getXCoord(i);
+		
+		return sum;
+	} // End walk()
+} // End WindowBenchmark class
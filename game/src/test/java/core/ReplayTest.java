@@ -0,0 +1,183 @@
+package core;
+
+/**
+ * The ReplayTest class checks that a replay survives being written and
+ * read back, and that a game recorded live plays back to the same
+ * result.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReplayTest {
+	// Time between ticks of the recorded game, in ms
+	private static final long TICK = 7;
+	
+	// Where the replay files are written
+	@TempDir
+	Path folder;
+	
+	@Test
+	public void writeThenReadKeepsEveryPress() throws IOException {
+		Replay replay = new Replay(0x1234567890ABCDEFL, 2);
+		
+		// Presses made before, with and after the engine time, in every lane, with gaps of hours
+		long[] engineTimes = {0L, 0L, 5L, 10000000L, 10000000L, 10005000L, 4000000000L, 4000000000L};
+		long[] pressTimes = {-5000L, 0L, 70000L, 9995000L, 10000000L, 10004999L, 3999999999L, 4000100000L};
+		int[] lanes = {1, 2, 3, 4, 4, 3, 2, 1};
+		
+		for (int i = 0; i < lanes.length; i++)
+			replay.add(engineTimes[i], pressTimes[i], lanes[i]);
+		
+		String filename = this.folder.resolve("presses.cbrr").toString();
+		replay.write(filename);
+		Replay read = Replay.read(filename);
+		
+		assertEquals(replay.getChartHash(), read.getChartHash());
+		assertEquals(lanes.length, read.size());
+		
+		for (int i = 0; i < lanes.length; i++) {
+			assertEquals(engineTimes[i], read.getEngineTime(i), "engine time of press " + i);
+			assertEquals(pressTimes[i], read.getPressTime(i), "press time of press " + i);
+			assertEquals(lanes[i], read.getLane(i), "lane of press " + i);
+		} // End for
+	} // End writeThenReadKeepsEveryPress()
+	
+	@Test
+	public void writeThenReadKeepsTheResult() throws IOException {
+		NoteStore notes = chart();
+		GameEngine engine = new GameEngine(notes.copy());
+		Replay replay = record(engine, notes);
+		
+		String filename = this.folder.resolve("result.cbrr").toString();
+		replay.write(filename);
+		Replay read = Replay.read(filename);
+		
+		assertEquals(Replay.hashChart(notes), read.getChartHash());
+		assertEquals(replay.getScore(), read.getScore());
+		assertEquals(replay.getHits(), read.getHits());
+		assertEquals(replay.getMisses(), read.getMisses());
+	} // End writeThenReadKeepsTheResult()
+	
+	@Test
+	public void recordedGamePlaysBackToTheSameResult() throws IOException {
+		NoteStore notes = chart();
+		GameEngine engine = new GameEngine(notes.copy());
+		Replay replay = record(engine, notes);
+		
+		// The recording has to have hit and missed something to show much
+		assertTrue(replay.getHits() > 0);
+		assertTrue(replay.getMisses() > 0);
+		
+		GameEngine played = new GameEngine(notes.copy());
+		replay.playInto(played);
+		assertTrue(replay.matches(played));
+		
+		// And the same again from the file
+		String filename = this.folder.resolve("played.cbrr").toString();
+		replay.write(filename);
+		
+		GameEngine playedFromFile = new GameEngine(notes.copy());
+		Replay.read(filename).playInto(playedFromFile);
+		assertTrue(replay.matches(playedFromFile));
+	} // End recordedGamePlaysBackToTheSameResult()
+	
+	@Test
+	public void differentPressesDoNotMatch() {
+		NoteStore notes = chart();
+		GameEngine engine = new GameEngine(notes.copy());
+		Replay replay = record(engine, notes);
+		
+		// Dropping the last press changes the result it plays back to
+		Replay shorter = new Replay(replay.getChartHash());
+		
+		for (int i = 0; i < replay.size() - 1; i++)
+			shorter.add(replay.getEngineTime(i), replay.getPressTime(i), replay.getLane(i));
+		
+		GameEngine played = new GameEngine(notes.copy());
+		shorter.playInto(played);
+		assertFalse(replay.matches(played));
+	} // End differentPressesDoNotMatch()
+	
+	/**
+	 * Makes a chart with a note in every lane and a few holds.
+	 * 
+	 * @return The NoteStore, sorted by time.
+	 */
+	private static NoteStore chart() {
+		NoteStore notes = new NoteStore();
+		
+		for (int i = 0; i < 40; i++) {
+			int lane = (i % 4) + 1;
+			long time = 1000L + (i * 250L);
+			
+			if (i % 10 == 9)
+				notes.add(lane, time, time + 400L);
+			else
+				notes.add(lane, time);
+		} // End for
+		
+		return notes;
+	} // End chart()
+	
+	/**
+	 * Plays a game the way GamePanel does, over a MockClock: on each
+	 * tick the presses made since the last one are handed in at the
+	 * time the clock gave them, then the engine moves to the clock.
+	 * Some notes are hit early, some late, and every fifth one is not
+	 * pressed at all.
+	 * 
+	 * @param engine The engine to play on.
+	 * @param notes The notes the engine is playing.
+	 * @return The replay, with the result of the game.
+	 */
+	private static Replay record(GameEngine engine, NoteStore notes) {
+		MockClock clock = new MockClock();
+		Replay replay = new Replay(Replay.hashChart(notes));
+		engine.setReplay(replay);
+		clock.start();
+		
+		int next = 0;
+		
+		while (!engine.isFinished()) {
+			clock.advance(TICK);
+			long now = clock.getTime();
+			
+			// Each press lands a few ms off the note, and is only seen on the tick after
+			while (next < notes.size() && notes.getTime(next) + offset(next) <= now - TICK) {
+				if (next % 5 != 4)
+					engine.submitInput(clock.toTime(System.nanoTime()) - TICK, notes.getLane(next));
+				
+				next++;
+			} // End while
+			
+			engine.update(now);
+		} // End while
+		
+		engine.setReplay(null);
+		replay.setResult(engine);
+		
+		return replay;
+	} // End record()
+	
+	/**
+	 * Works out how far off a note the player presses.
+	 * 
+	 * @param note The index of the note.
+	 * @return A long of the offset in ms, from -30 to 30.
+	 */
+	private static long offset(int note) {
+		return ((note * 37L) % 61L) - 30L;
+	} // End offset()
+} // End ReplayTest class
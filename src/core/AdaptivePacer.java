@@ -0,0 +1,67 @@
+package core;
+
+/**
+ * The AdaptivePacer class waits by parking the thread for most of the
+ * time left and spinning for the last part. Parking frees the CPU but
+ * wakes up late by however long the OS takes; spinning is exact but
+ * keeps the CPU busy. The pacer measures how late each park wakes up
+ * and spins for a little more than that, so frames land close to their
+ * deadline while spinning as little as the machine allows.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.concurrent.locks.LockSupport;
+
+public class AdaptivePacer implements FramePacer {
+	// Limits on the time spent spinning, in ns
+	private static final long MIN_SPIN = 50000L;
+	private static final long MAX_SPIN = 2000000L;
+	
+	// The spin time is this many times the average overshoot
+	private static final int SAFETY = 2;
+	
+	// Wake ups the average overshoot is taken over
+	private static final int SMOOTHING = 8;
+	
+	// Average of how late parking wakes up, in ns
+	private long overshoot = MIN_SPIN / SAFETY;
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FramePacer#waitUntil(long)
+	 */
+	public long waitUntil(long deadline) {
+		long spin = getSpinTime();
+		long parkUntil = deadline - spin;
+		long now = System.nanoTime();
+		
+		// Parking through most of the wait, and learning how late it wakes
+		if (parkUntil - now > 0) {
+			LockSupport.parkNanos(parkUntil - now);
+			
+			now = System.nanoTime();
+			long late = Math.max(0L, now - parkUntil);
+			this.overshoot += (late - this.overshoot) / SMOOTHING;
+		} // End if
+		
+		// Spinning the rest of the way
+		while (deadline - now > 0) {
+			Thread.onSpinWait();
+			now = System.nanoTime();
+		} // End while
+		
+		return now;
+	} // End waitUntil()
+	
+	/**
+	 * Gets how long the pacer will spin before a deadline.
+	 * 
+	 * @return A long of the spin time in ns.
+	 */
+	public long getSpinTime() {
+		return Math.max(MIN_SPIN, Math.min(MAX_SPIN, this.overshoot * SAFETY));
+	} // End getSpinTime()
+} // End AdaptivePacer class
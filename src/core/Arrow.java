@@ -1,6 +1,9 @@
 package core;
 
 public class Arrow extends Item {
+	// The amount the arrow moves up per render
+	public static final int MOVE_SIZE = 2;
+	
 	// The position of this arrow
 	private Position posn;
 	
@@ -13,8 +16,14 @@ public class Arrow extends Item {
 	 */
 	private int direction;
 	
-	// The amount the arrow moves up per render
-	private final int MOVE_SIZE = 2;
+	// Whether the arrow has already been judged
+	private boolean consumed = false;
+	
+	// The note store backing this arrow (null if the arrow stands alone)
+	private NoteStore store;
+	
+	// The index of this arrow's note in the store
+	private int index;
 	
 	// Constructor(s)
 	/**
@@ -28,37 +37,93 @@ public class Arrow extends Item {
 		this.posn = initPosn;
 		this.direction = dir;
 	} // End Arrow(Position)
+	
+	/**
+	 * This constructor creates an arrow that is a view of
+	 * a note in a NoteStore. Reading the arrow reads the
+	 * note, and consuming it marks the note hit, but the
+	 * arrow cannot be moved: the store keeps its notes in
+	 * order of time for judging and drawing.
+	 * 
+	 * @param store The store holding the note.
+	 * @param index The index of the note in the store.
+	 */
+	public Arrow(NoteStore store, int index) {
+		this.store = store;
+		this.index = index;
+		this.posn = new Position();
+	} // End Arrow(NoteStore, int)
 	// End Constructor(s)
 	
 	/**
 	 * Moves the arrow up by MOVE_SIZE;
+	 * 
+	 * @throws UnsupportedOperationException If the arrow is backed by a NoteStore.
 	 */
 	public void moveUp() {
+		checkMovable();
+		
 		int newY = this.posn.getYCoord() - MOVE_SIZE;
 		this.posn.setYCoord(newY);
 	} // End moveUp()
 	
+	/**
+	 * Gets the position of the arrow. An arrow backed by a
+	 * NoteStore gives where its note is at the store's current
+	 * time; the same Position is filled in on each call, and
+	 * changing it does not move the note.
+	 * 
+	 * @return The Position of the arrow.
+	 */
 	@Override
 	public Position getPosition() {
+		if (this.store != null) {
+			this.posn.setXCoord(this.store.getXCoord(this.index));
+			this.posn.setYCoord(this.store.getYCoord(this.index));
+		}
+		
 		return this.posn;
 	} // End getPosition()
 
+	/**
+	 * Sets the position of the arrow.
+	 * 
+	 * @param newPosn The new Position.
+	 * @throws UnsupportedOperationException If the arrow is backed by a NoteStore.
+	 */
 	@Override
 	public void setPosition(Position newPosn) {
-		this.posn = newPosn;		
+		checkMovable();
+		
+		this.posn = newPosn;
 	} // End setPosition()
 	
+	/**
+	 * Checks that the arrow stands alone, since moving a note
+	 * in a NoteStore would take it out of order of time.
+	 * 
+	 * @throws UnsupportedOperationException If the arrow is backed by a NoteStore.
+	 */
+	private void checkMovable() {
+		if (this.store != null)
+			throw new UnsupportedOperationException("an arrow backed by a NoteStore cannot be moved");
+	} // End checkMovable()
+	
 	/**
 	 * Gets the direction of the arrow.
 	 * 
 	 * @return An int representing the arrow's direction.
 	 */
 	public int getDirection() {
+		if (this.store != null)
+			return this.store.getLane(this.index);
+		
 		return this.direction;
 	} // End getDirection()
 	
 	/**
-	 * Sets the direction of the arrow.
+	 * Sets the direction of the arrow. Arrows backed by
+	 * a NoteStore keep the direction of their note.
 	 * 
 	 * @param dir Arrow's direction.
 	 */
@@ -66,12 +131,39 @@ public class Arrow extends Item {
 		this.direction = dir;
 	} // End setDirection
 	
+	/**
+	 * Checks if the arrow has already been judged.
+	 * 
+	 * @return True if the arrow has been hit.
+	 */
+	public boolean isConsumed() {
+		if (this.store != null)
+			return this.store.getState(this.index) == NoteStore.HIT;
+		
+		return this.consumed;
+	} // End isConsumed()
+	
+	/**
+	 * Marks the arrow as judged so it is not scored again.
+	 */
+	public void consume() {
+		if (this.store != null) {
+			this.store.setState(this.index, NoteStore.HIT);
+			return;
+		}
+		
+		this.consumed = true;
+	} // End consume()
+	
 	/**
 	 * This method scores the points for the CBR game.
 	 * 
 	 * @param posn A position to check for points.
 	 * @return An int of the points awarded.
+	 * @deprecated Notes are judged on time instead of distance,
+	 *             use Judgement.scorePoints(long).
 	 */
+	@Deprecated
 	public int scorePoints(Position posn) {
 		int points = 0;
 		int myY = this.getPosition().getYCoord();
@@ -0,0 +1,141 @@
+package core;
+
+/**
+ * The AssetManager class finds and loads the files the game uses. Each
+ * image is decoded only once and then handed out from a cache. Images
+ * can be asked for from many threads at once, and different images
+ * are decoded at the same time rather than one after another. Files
+ * are looked up on the classpath first, so the game runs from a jar,
+ * and then under the src folder for running from the source tree.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import javax.imageio.ImageIO;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AssetManager {
+	// Folder the images are in
+	public static final String IMAGE_DIR = "Images/";
+	
+	// Folder the assets are in when running from the source tree
+	private static final String SOURCE_DIR = "src/";
+	
+	// Images that have already been decoded, by name
+	private final ConcurrentHashMap<String, BufferedImage> images = new ConcurrentHashMap<String, BufferedImage>();
+	
+	// Constructor(s)
+	/**
+	 * The main constructor of the AssetManager class.
+	 */
+	public AssetManager() {
+		// Do nothing
+	} // End AssetManager()
+	// End Constructor(s)
+	
+	/**
+	 * Gets an image from the Images folder, decoding it the first time
+	 * it is asked for. If two threads ask for the same new image at
+	 * once both decode it, and both get the one that was cached first.
+	 * 
+	 * @param name The file name of the image.
+	 * @return The decoded image.
+	 * @throws IOException If the image cannot be found or decoded.
+	 */
+	public BufferedImage getImage(String name) throws IOException {
+		BufferedImage image = this.images.get(name);
+		
+		if (image == null) {
+			InputStream in = openResource(IMAGE_DIR + name);
+			
+			try {
+				image = ImageIO.read(in);
+			}
+			finally {
+				in.close();
+			}
+			
+			if (image == null)
+				throw new IOException(name + " is not an image that can be read");
+			
+			BufferedImage cached = this.images.putIfAbsent(name, image);
+			
+			if (cached != null)
+				image = cached;
+		} // End if
+		
+		return image;
+	} // End getImage()
+	
+	/**
+	 * Packs images into one sprite atlas. Sprite i of the atlas is the
+	 * image named names[i]; names that repeat share the same sprite.
+	 * 
+	 * @param names The file names of the images.
+	 * @param gc The configuration of the screen, or null if there is none.
+	 * @return The sprite atlas.
+	 * @throws IOException If an image cannot be found or decoded.
+	 */
+	public SpriteAtlas createAtlas(String[] names, GraphicsConfiguration gc) throws IOException {
+		BufferedImage[] sprites = new BufferedImage[names.length];
+		
+		for (int i = 0; i < names.length; i++)
+			sprites[i] = getImage(names[i]);
+		
+		return new SpriteAtlas(sprites, gc);
+	} // End createAtlas()
+	
+	/**
+	 * Opens a file from the classpath or, failing that, from the
+	 * source tree.
+	 * 
+	 * @param path The path of the file, like "Images/fire_up_1.png".
+	 * @return A stream of the file's contents.
+	 * @throws IOException If the file cannot be found.
+	 */
+	public InputStream openResource(String path) throws IOException {
+		InputStream in = AssetManager.class.getResourceAsStream("/" + path);
+		
+		if (in != null)
+			return in;
+		
+		File file = new File(SOURCE_DIR + path);
+		
+		if (!file.exists())
+			throw new FileNotFoundException(path + " is not on the classpath or in " + SOURCE_DIR);
+		
+		return new FileInputStream(file);
+	} // End openResource()
+	
+	/**
+	 * Finds a file on the classpath or, failing that, in the source tree.
+	 * 
+	 * @param path The path of the file, like "Clips/explosion.wav".
+	 * @return A URL of the file.
+	 * @throws IOException If the file cannot be found.
+	 */
+	public URL findResource(String path) throws IOException {
+		URL url = AssetManager.class.getResource("/" + path);
+		
+		if (url != null)
+			return url;
+		
+		File file = new File(SOURCE_DIR + path);
+		
+		if (!file.exists())
+			throw new FileNotFoundException(path + " is not on the classpath or in " + SOURCE_DIR);
+		
+		return file.toURI().toURL();
+	} // End findResource()
+} // End AssetManager class
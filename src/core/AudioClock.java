@@ -0,0 +1,110 @@
+package core;
+
+/**
+ * The AudioClock class is a SongClock that follows the audio being
+ * played. The frame position of the AudioEngine is the true time of
+ * the song, but it only moves a block at a time, so the clock keeps
+ * the offset between it and System.nanoTime() and moves that offset a
+ * little toward each new reading. The time stays smooth from frame to
+ * frame while never drifting away from the audio, however long the
+ * song is. A resync can move the offset back, so the times given out
+ * for the clock and for key presses are each kept from going backwards.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+public class AudioClock implements SongClock {
+	// Readings the offset is averaged over
+	private static final int SMOOTHING = 16;
+	
+	// How far the audio can be from the clock before it jumps to it, in ns
+	private static final long RESYNC_NANOS = 20000000L;
+	
+	// The audio being followed
+	private final AudioEngine audio;
+	
+	// The frame position of the audio when the chart started
+	private long startFrame = 0L;
+	private boolean started = false;
+	
+	// Chart time minus System.nanoTime(), in ns
+	private long offset = 0L;
+	
+	// The last time given out, so the time never goes backwards
+	private long lastTime = 0L;
+	
+	// The last press time given out, so presses stay in the order they were handed in
+	private long lastPressTime = 0L;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a clock that follows the audio engine.
+	 * 
+	 * @param audio The audio engine playing the song.
+	 */
+	public AudioClock(AudioEngine audio) {
+		this.audio = audio;
+	} // End AudioClock(AudioEngine)
+	// End Constructor(s)
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#start()
+	 */
+	public synchronized void start() {
+		this.startFrame = this.audio.getFramePosition();
+		this.offset = -System.nanoTime();
+		this.lastTime = 0L;
+		this.lastPressTime = 0L;
+		this.started = true;
+	} // End start()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#getTime()
+	 */
+	public synchronized long getTime() {
+		if (!this.started)
+			return 0L;
+		
+		long now = System.nanoTime();
+		sync(now);
+		
+		this.lastTime = Math.max(this.lastTime, (now + this.offset) / 1000000L);
+		
+		return this.lastTime;
+	} // End getTime()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#toTime(long)
+	 * 
+	 * Presses are converted in the order they are handed to the engine,
+	 * which judges them in that order, so a press never gets a time
+	 * before the press converted last.
+	 */
+	public synchronized long toTime(long nanos) {
+		if (!this.started)
+			return 0L;
+		
+		this.lastPressTime = Math.max(this.lastPressTime, (nanos + this.offset) / 1000000L);
+		
+		return this.lastPressTime;
+	} // End toTime()
+	
+	/**
+	 * Moves the offset toward a new reading of the audio position.
+	 * 
+	 * @param now A reading of System.nanoTime() taken with the position.
+	 */
+	private void sync(long now) {
+		long frames = this.audio.getFramePosition() - this.startFrame;
+		long audioNanos = (long) (frames * 1e9 / AudioEngine.SAMPLE_RATE);
+		long error = (audioNanos - now) - this.offset;
+		
+		if (Math.abs(error) > RESYNC_NANOS)
+			this.offset += error;
+		else
+			this.offset += error / SMOOTHING;
+	} // End sync()
+} // End AudioClock class
@@ -0,0 +1,534 @@
+package core;
+
+/**
+ * The AudioEngine class plays sound clips with low and steady latency.
+ * Clips are decoded once into 16 bit PCM at the output rate, and up to
+ * a fixed number of voices are mixed in software into one
+ * SourceDataLine with a small buffer. Playing a sound only writes
+ * it into a ring that the mixer takes voices for at the start of the
+ * next block, so nothing is allocated or decoded when a sound is
+ * triggered, many sounds can overlap, and the thread playing a sound
+ * never waits while a block is mixed. The ring has one producer, so
+ * play() should only be called from one thread.
+ * 
+ * Without a sound device the engine can still be driven by calling
+ * mix() to fill a byte buffer, which is how it is checked headless.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class AudioEngine implements Runnable {
+	// The format everything is mixed to: 44.1 kHz, 16 bit, mono, little-endian
+	public static final float SAMPLE_RATE = 44100f;
+	public static final AudioFormat OUTPUT_FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+	
+	// Bytes in one frame of output
+	private static final int FRAME_SIZE = 2;
+	
+	// Frames mixed at a time, about 5.8 ms
+	public static final int BLOCK_FRAMES = 256;
+	
+	// Blocks the line buffers, so the line holds about 11.6 ms
+	private static final int LINE_BLOCKS = 2;
+	
+	// Sounds play() can have waiting for the next block, a power of 2
+	private static final int TRIGGER_CAPACITY = 64;
+	
+	// The decoded clips
+	private short[][] clips = new short[8][];
+	private volatile int clipCount = 0;
+	
+	// Sounds waiting for a voice, as a ring written by play() and read by the mixer
+	private final int[] triggerClips = new int[TRIGGER_CAPACITY];
+	private final long[] triggerTimes = new long[TRIGGER_CAPACITY];
+	
+	// Next sound to start, only moved while holding the monitor
+	private volatile long triggerHead = 0L;
+	
+	// Next slot to write, only moved by play()
+	private volatile long triggerTail = 0L;
+	
+	// Sounds that did not fit in the ring, only changed by play()
+	private volatile int triggersDropped = 0;
+	
+	// The voices, each playing one clip (clip -1 when free)
+	private final int[] voiceClips;
+	private final int[] voicePositions;
+	private final boolean[] voiceLoops;
+	private final long[] voiceTriggers;
+	
+	// The buffers a block is mixed through
+	private final int[] mixBuffer = new int[BLOCK_FRAMES];
+	private final byte[] outBuffer = new byte[BLOCK_FRAMES * FRAME_SIZE];
+	
+	// The sound device and the thread feeding it
+	private SourceDataLine line = null;
+	private Thread mixer = null;
+	private volatile boolean running = false;
+	
+	// Frames mixed so far
+	private volatile long framesMixed = 0L;
+	
+	// Time from play() to the sound reaching the device, in ns
+	private volatile long lastLatency = 0L;
+	private volatile long maxLatency = 0L;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates an engine that can play the given
+	 * number of sounds at once.
+	 * 
+	 * @param voices The number of voices.
+	 */
+	public AudioEngine(int voices) {
+		this.voiceClips = new int[voices];
+		this.voicePositions = new int[voices];
+		this.voiceLoops = new boolean[voices];
+		this.voiceTriggers = new long[voices];
+		
+		for (int v = 0; v < voices; v++)
+			this.voiceClips[v] = -1;
+	} // End AudioEngine(int)
+	// End Constructor(s)
+	
+	/**
+	 * Loads a clip through the AssetManager and decodes it to the
+	 * output format.
+	 * 
+	 * @param assets Where to find the file.
+	 * @param path The path of the file, like "Clips/explosion.wav".
+	 * @return An int id of the clip for play() and loop().
+	 * @throws IOException If the file cannot be read or decoded.
+	 */
+	public int loadClip(AssetManager assets, String path) throws IOException {
+		InputStream in = new BufferedInputStream(assets.openResource(path));
+		
+		try {
+			return addClip(decode(AudioSystem.getAudioInputStream(in)));
+		}
+		catch (UnsupportedAudioFileException e) {
+			throw new IOException(path + " is not a sound that can be read", e);
+		}
+		finally {
+			in.close();
+		}
+	} // End loadClip()
+	
+	/**
+	 * Adds a clip that is already in the output format.
+	 * 
+	 * @param samples The 16 bit samples of the clip at SAMPLE_RATE.
+	 * @return An int id of the clip for play() and loop().
+	 */
+	public synchronized int addClip(short[] samples) {
+		if (this.clipCount == this.clips.length) {
+			short[][] bigger = new short[this.clips.length * 2][];
+			System.arraycopy(this.clips, 0, bigger, 0, this.clipCount);
+			this.clips = bigger;
+		}
+		
+		this.clips[this.clipCount] = samples;
+		
+		return this.clipCount++;
+	} // End addClip()
+	
+	/**
+	 * Decodes a sound to 16 bit mono samples at the output rate.
+	 * Channels are averaged and the rate is changed by linear
+	 * interpolation.
+	 * 
+	 * @param stream The sound to decode.
+	 * @return The samples.
+	 * @throws IOException If the sound cannot be read or converted.
+	 */
+	private static short[] decode(AudioInputStream stream) throws IOException {
+		AudioFormat source = stream.getFormat();
+		AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+		
+		if (!AudioSystem.isConversionSupported(pcm, source))
+			throw new IOException("cannot convert " + source + " to PCM");
+		
+		// Reading the whole sound as 16 bit PCM at its own rate
+		AudioInputStream converted = AudioSystem.getAudioInputStream(pcm, stream);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		
+		while ((read = converted.read(buffer)) > 0)
+			bytes.write(buffer, 0, read);
+		
+		byte[] data = bytes.toByteArray();
+		int channels = pcm.getChannels();
+		int frames = data.length / (2 * channels);
+		
+		// Mixing down to mono
+		float[] mono = new float[frames];
+		
+		for (int f = 0; f < frames; f++) {
+			int sum = 0;
+			
+			for (int c = 0; c < channels; c++) {
+				int at = ((f * channels) + c) * 2;
+				sum += (short) ((data[at] & 0xFF) | (data[at + 1] << 8));
+			}
+			
+			mono[f] = (float) sum / channels;
+		} // End for
+		
+		// Changing the rate
+		double step = pcm.getSampleRate() / SAMPLE_RATE;
+		int length = (frames == 0) ? 0 : (int) ((frames - 1) / step) + 1;
+		short[] samples = new short[length];
+		
+		for (int i = 0; i < length; i++) {
+			double at = i * step;
+			int f = (int) at;
+			float next = (f + 1 < frames) ? mono[f + 1] : mono[f];
+			
+			samples[i] = (short) Math.round(mono[f] + ((next - mono[f]) * (at - f)));
+		} // End for
+		
+		return samples;
+	} // End decode()
+	
+	/**
+	 * Opens the default sound device and starts feeding it.
+	 * 
+	 * @throws LineUnavailableException If there is no device to play on.
+	 */
+	public void start() throws LineUnavailableException {
+		if (this.running)
+			return;
+		
+		this.line = AudioSystem.getSourceDataLine(OUTPUT_FORMAT);
+		this.line.open(OUTPUT_FORMAT, BLOCK_FRAMES * FRAME_SIZE * LINE_BLOCKS);
+		this.line.start();
+		
+		this.running = true;
+		this.mixer = new Thread(this, "Audio mixer");
+		this.mixer.setDaemon(true);
+		this.mixer.setPriority(Thread.MAX_PRIORITY);
+		this.mixer.start();
+	} // End start()
+	
+	/**
+	 * Stops feeding the sound device and closes it.
+	 */
+	public void shutdown() {
+		this.running = false;
+		
+		if (this.mixer != null) {
+			try {
+				this.mixer.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			this.mixer = null;
+		} // End if
+		
+		if (this.line != null) {
+			this.line.close();
+			this.line = null;
+		}
+	} // End shutdown()
+	
+	/**
+	 * Feeds the sound device a block at a time. Writing blocks until
+	 * the line has room, which keeps the mixing in step with the device.
+	 */
+	public void run() {
+		while (this.running) {
+			mix(this.outBuffer, 0, BLOCK_FRAMES);
+			this.line.write(this.outBuffer, 0, this.outBuffer.length);
+		} // End while
+		
+		this.line.drain();
+	} // End run()
+	
+	/**
+	 * Plays a clip once, from the next block mixed. This never locks,
+	 * so it can be called from the game thread, but only one thread
+	 * may call it.
+	 * 
+	 * @param clip The id of the clip.
+	 * @return True if the sound was queued, false if too many were waiting.
+	 */
+	public boolean play(int clip) {
+		checkClip(clip);
+		
+		long t = this.triggerTail;
+		
+		if (t - this.triggerHead == TRIGGER_CAPACITY) {
+			this.triggersDropped++;
+			return false;
+		}
+		
+		int slot = (int) t & (TRIGGER_CAPACITY - 1);
+		this.triggerClips[slot] = clip;
+		this.triggerTimes[slot] = System.nanoTime();
+		
+		// Publishes the slot to the mixer
+		this.triggerTail = t + 1;
+		
+		return true;
+	} // End play()
+	
+	/**
+	 * Plays a clip over and over until it is stopped. Unlike play(),
+	 * this claims the voice straight away so it can be stopped, and
+	 * waits if a block is being mixed.
+	 * 
+	 * @param clip The id of the clip.
+	 * @return An int of the voice playing it.
+	 */
+	public synchronized int loop(int clip) {
+		checkClip(clip);
+		
+		return claimVoice(clip, true, System.nanoTime());
+	} // End loop()
+	
+	/**
+	 * Checks that a clip has been loaded.
+	 * 
+	 * @param clip The id of the clip.
+	 */
+	private void checkClip(int clip) {
+		if (clip < 0 || clip >= this.clipCount)
+			throw new IllegalArgumentException("no clip " + clip);
+	} // End checkClip()
+	
+	/**
+	 * Starts every sound waiting in the ring. Only called while
+	 * holding the monitor.
+	 */
+	private void startTriggers() {
+		long h = this.triggerHead;
+		long t = this.triggerTail;
+		
+		for (; h != t; h++) {
+			int slot = (int) h & (TRIGGER_CAPACITY - 1);
+			claimVoice(this.triggerClips[slot], false, this.triggerTimes[slot]);
+		}
+		
+		// Frees the slots for play()
+		this.triggerHead = h;
+	} // End startTriggers()
+	
+	/**
+	 * Claims a voice for a clip. A free voice is used if there is
+	 * one, otherwise the voice that has played the longest is taken.
+	 * Only called while holding the monitor.
+	 * 
+	 * @param clip The id of the clip.
+	 * @param loop True to loop the clip.
+	 * @param triggered The System.nanoTime() the sound was played at.
+	 * @return An int of the voice playing it.
+	 */
+	private int claimVoice(int clip, boolean loop, long triggered) {
+		int voice = 0;
+		
+		for (int v = 0; v < this.voiceClips.length; v++) {
+			if (this.voiceClips[v] == -1) {
+				voice = v;
+				break;
+			}
+			
+			if (this.voiceTriggers[v] < this.voiceTriggers[voice])
+				voice = v;
+		} // End for
+		
+		this.voiceClips[voice] = clip;
+		this.voicePositions[voice] = 0;
+		this.voiceLoops[voice] = loop;
+		this.voiceTriggers[voice] = triggered;
+		
+		return voice;
+	} // End claimVoice()
+	
+	/**
+	 * Stops a voice.
+	 * 
+	 * @param voice The voice to stop.
+	 */
+	public synchronized void stop(int voice) {
+		this.voiceClips[voice] = -1;
+	} // End stop()
+	
+	/**
+	 * Stops every voice, and drops the sounds waiting to start.
+	 */
+	public synchronized void stopAll() {
+		this.triggerHead = this.triggerTail;
+		
+		for (int v = 0; v < this.voiceClips.length; v++)
+			this.voiceClips[v] = -1;
+	} // End stopAll()
+	
+	/**
+	 * Mixes the next frames of every playing voice into a buffer in
+	 * the output format, after starting the sounds played since the
+	 * last block. This is what feeds the sound device, and can be
+	 * called directly when there is none.
+	 * 
+	 * @param out The buffer to fill.
+	 * @param offset Where in the buffer to start.
+	 * @param frames The number of frames to mix, at most BLOCK_FRAMES.
+	 */
+	public void mix(byte[] out, int offset, int frames) {
+		int[] sum = this.mixBuffer;
+		long started = 0L;
+		
+		for (int i = 0; i < frames; i++)
+			sum[i] = 0;
+		
+		synchronized (this) {
+			startTriggers();
+			
+			for (int v = 0; v < this.voiceClips.length; v++) {
+				int clip = this.voiceClips[v];
+				
+				if (clip == -1)
+					continue;
+				
+				short[] samples = this.clips[clip];
+				int position = this.voicePositions[v];
+				
+				if (position == 0)
+					started = Math.max(started, this.voiceTriggers[v]);
+				
+				for (int i = 0; i < frames; i++) {
+					if (position == samples.length) {
+						if (!this.voiceLoops[v] || samples.length == 0) {
+							this.voiceClips[v] = -1;
+							break;
+						}
+						
+						position = 0;
+					} // End if
+					
+					sum[i] += samples[position++];
+				} // End for
+				
+				this.voicePositions[v] = position;
+			} // End for
+		} // End synchronized
+		
+		// Clipping to 16 bits, little-endian
+		for (int i = 0; i < frames; i++) {
+			int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum[i]));
+			
+			out[offset++] = (byte) sample;
+			out[offset++] = (byte) (sample >> 8);
+		} // End for
+		
+		this.framesMixed += frames;
+		
+		if (started != 0L)
+			recordLatency(started);
+	} // End mix()
+	
+	/**
+	 * Gets how far the audio has played. With a sound device this is
+	 * the frame the device is playing, otherwise the frames mixed.
+	 * 
+	 * @return A long of the number of frames.
+	 */
+	public long getFramePosition() {
+		SourceDataLine out = this.line;
+		
+		if (out != null)
+			return out.getLongFramePosition();
+		
+		return this.framesMixed;
+	} // End getFramePosition()
+	
+	/**
+	 * Records how long a sound took from play() to the device. The
+	 * block just mixed plays after what the line already holds.
+	 * 
+	 * @param triggered The System.nanoTime() the sound was played at.
+	 */
+	private void recordLatency(long triggered) {
+		long queued = 0L;
+		SourceDataLine out = this.line;
+		
+		if (out != null) {
+			int buffered = out.getBufferSize() - out.available();
+			queued = (long) ((buffered / FRAME_SIZE) * 1e9 / SAMPLE_RATE);
+		}
+		
+		long latency = (System.nanoTime() - triggered) + queued;
+		this.lastLatency = latency;
+		
+		if (latency > this.maxLatency)
+			this.maxLatency = latency;
+	} // End recordLatency()
+	
+	/**
+	 * Gets how long the last sound took from play() to the device.
+	 * 
+	 * @return A long of the latency in ns.
+	 */
+	public long getLastLatency() {
+		return this.lastLatency;
+	} // End getLastLatency()
+	
+	/**
+	 * Gets the longest any sound took from play() to the device.
+	 * 
+	 * @return A long of the latency in ns.
+	 */
+	public long getMaxLatency() {
+		return this.maxLatency;
+	} // End getMaxLatency()
+	
+	/**
+	 * Gets the number of sounds play() dropped because too many were
+	 * waiting to start.
+	 * 
+	 * @return An int of the dropped sounds.
+	 */
+	public int getDroppedTriggers() {
+		return this.triggersDropped;
+	} // End getDroppedTriggers()
+	
+	/**
+	 * Checks if the engine is feeding a sound device.
+	 * 
+	 * @return True once start() has opened a device, until shutdown().
+	 */
+	public boolean isRunning() {
+		return this.running;
+	} // End isRunning()
+	
+	/**
+	 * Gets the number of voices playing.
+	 * 
+	 * @return An int of the number of busy voices.
+	 */
+	public synchronized int getActiveVoices() {
+		int active = 0;
+		
+		for (int v = 0; v < this.voiceClips.length; v++)
+			if (this.voiceClips[v] != -1)
+				active++;
+		
+		return active;
+	} // End getActiveVoices()
+} // End AudioEngine class
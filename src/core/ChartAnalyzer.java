@@ -0,0 +1,554 @@
+package core;
+
+/**
+ * The ChartAnalyzer class measures how hard a chart is from its notes
+ * alone. Notes are handed in one at a time in order of time, as a
+ * NoteConsumer, and every number is kept up to date as they arrive, so
+ * a chart can be measured while it is parsed or while it is written.
+ * 
+ * What is measured:
+ * - Notes per second over a sliding one second window, and its peak
+ * - A density graph of the notes in each second of the chart
+ * - Lane switches (a note in another lane than the note before it)
+ * - Jacks (a note in the same lane as the note before it, within
+ *   JACK_GAP), and the longest run of them
+ * - Chords (a note at the same time as the note before it)
+ * - A difficulty estimate built from the numbers above
+ * 
+ * The difficulty is the notes per second the chart keeps up for most
+ * of its length (the 95th percentile of the density graph) blended
+ * with its peak, then raised by the share of notes that are jacks,
+ * which are harder to hit than the same notes spread over lanes.
+ * 
+ * Whole folders of charts are measured on the common fork-join pool
+ * with analyzeAll(), which uses every core.
+ * 
+ * Usage: java core.ChartAnalyzer chart.cbm|folder...
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ChartAnalyzer implements NoteConsumer {
+	// Length of the sliding window and of each second of the density graph, in ms
+	public static final long WINDOW = 1000;
+	
+	// The longest gap between two notes in a lane that still makes a jack, in ms
+	public static final long JACK_GAP = 250;
+	
+	// How much the peak counts towards the difficulty, against the sustained density
+	private static final double PEAK_WEIGHT = 0.3;
+	
+	// How much harder a chart made only of jacks is than one with none
+	private static final double JACK_WEIGHT = 1.0;
+	
+	// Percentile of the density graph taken as the density kept up
+	private static final int SUSTAINED_PERCENTILE = 95;
+	
+	// Charts measured one after another by each fork-join task
+	private static final int CHARTS_PER_TASK = 8;
+	
+	// Number of notes and when the first and last of them are, in ms
+	private int notes = 0;
+	private long firstTime = 0;
+	private long lastTime = 0;
+	private int lastLane = 0;
+	
+	// Whether every note came after the one before it
+	private boolean inOrder = true;
+	
+	// The times of the notes in the sliding window, oldest first
+	private long[] window = new long[64];
+	private int windowHead = 0;
+	private int windowCount = 0;
+	
+	// The most notes the window has held, and when
+	private int peakNps = 0;
+	private long peakTime = 0;
+	
+	// Notes in each second of the chart, from its first note
+	private int[] density = new int[64];
+	private int seconds = 0;
+	
+	// Patterns
+	private int laneSwitches = 0;
+	private int jacks = 0;
+	private int jackRun = 0;
+	private int longestJack = 0;
+	private int chords = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates an analyzer with no notes yet.
+	 */
+	public ChartAnalyzer() {
+		// Do nothing
+	} // End ChartAnalyzer()
+	// End Constructor(s)
+	
+	public static void main(String[] argv) throws IOException {
+		ArrayList<String> charts = new ArrayList<String>();
+		
+		for (int i = 0; i < argv.length; i++)
+			addCharts(new File(argv[i]), charts);
+		
+		if (charts.isEmpty()) {
+			System.err.println("Usage: java core.ChartAnalyzer chart.cbm|folder...");
+			System.exit(1);
+		}
+		
+		String[] files = charts.toArray(new String[charts.size()]);
+		long start = System.nanoTime();
+		final ChartAnalyzer[] results = analyzeAll(files);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		Integer[] order = new Integer[files.length];
+		
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		
+		// Hardest first, with charts that could not be read last
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				double da = (results[a] != null) ? results[a].getDifficulty() : -1;
+				double db = (results[b] != null) ? results[b].getDifficulty() : -1;
+				
+				return Double.compare(db, da);
+			}
+		});
+		
+		System.out.println("Difficulty  Peak  Avg nps  Notes  Jacks  Switches  Chart");
+		
+		for (int i = 0; i < Math.min(order.length, 20); i++) {
+			ChartAnalyzer chart = results[order[i]];
+			
+			if (chart == null)
+				break;
+			
+			System.out.printf("%10.2f %5d %8.2f %6d %6d %9d  %s%n", chart.getDifficulty(), chart.getPeakNps(),
+					chart.getAverageNps(), chart.getNoteCount(), chart.getJacks(), chart.getLaneSwitches(), files[order[i]]);
+		} // End for
+		
+		System.out.printf("%d charts in %.2f s (%.0f charts/s on %d threads)%n", files.length, seconds,
+				files.length / seconds, ForkJoinPool.commonPool().getParallelism());
+	} // End main()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#note(int, long)
+	 */
+	public void note(int lane, long time) {
+		if (this.notes == 0) {
+			this.firstTime = time;
+		}
+		else if (time < this.lastTime) {
+			// The numbers below need notes in order, so whoever handed them in has to sort them
+			this.inOrder = false;
+			return;
+		}
+		else if (time == this.lastTime) {
+			this.chords++;
+			this.jackRun = 0;
+		}
+		else if (lane == this.lastLane && time - this.lastTime <= JACK_GAP) {
+			this.jacks++;
+			this.jackRun++;
+			this.longestJack = Math.max(this.longestJack, this.jackRun);
+		}
+		else {
+			if (lane != this.lastLane)
+				this.laneSwitches++;
+			
+			this.jackRun = 0;
+		}
+		
+		this.notes++;
+		this.lastTime = time;
+		this.lastLane = lane;
+		
+		slideWindow(time);
+		addToDensity(time);
+	} // End note()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#hold(int, long, long)
+	 */
+	public void hold(int lane, long time, long endTime) {
+		// Only the start of a hold is pressed, so it counts like any other note
+		note(lane, time);
+	} // End hold()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#timing(core.TimingMap)
+	 */
+	public void timing(TimingMap timing) {
+		// Note times already take the tempo in, and scroll speed only changes how notes look
+	} // End timing()
+	
+	/**
+	 * Moves the sliding window up to a note and counts the note in it.
+	 * 
+	 * @param time The time of the note, in ms.
+	 */
+	private void slideWindow(long time) {
+		while (this.windowCount > 0 && this.window[this.windowHead] <= time - WINDOW) {
+			this.windowHead = (this.windowHead + 1) % this.window.length;
+			this.windowCount--;
+		} // End while
+		
+		if (this.windowCount == this.window.length) {
+			long[] bigger = new long[this.window.length * 2];
+			
+			for (int i = 0; i < this.windowCount; i++)
+				bigger[i] = this.window[(this.windowHead + i) % this.window.length];
+			
+			this.window = bigger;
+			this.windowHead = 0;
+		} // End if
+		
+		this.window[(this.windowHead + this.windowCount) % this.window.length] = time;
+		this.windowCount++;
+		
+		if (this.windowCount > this.peakNps) {
+			this.peakNps = this.windowCount;
+			this.peakTime = time;
+		}
+	} // End slideWindow()
+	
+	/**
+	 * Counts a note in its second of the density graph.
+	 * 
+	 * @param time The time of the note, in ms.
+	 */
+	private void addToDensity(long time) {
+		long second = (time - this.firstTime) / WINDOW;
+		
+		if (second >= Integer.MAX_VALUE / 2)
+			return;
+		
+		if (second >= this.density.length)
+			this.density = Arrays.copyOf(this.density, Math.max(this.density.length * 2, (int) second + 1));
+		
+		this.density[(int) second]++;
+		this.seconds = Math.max(this.seconds, (int) second + 1);
+	} // End addToDensity()
+	
+	/**
+	 * Hands every note of a store to the analyzer, sorting the
+	 * store first if it needs it.
+	 * 
+	 * @param store The notes of a chart.
+	 */
+	public void analyze(NoteStore store) {
+		if (!store.isSorted())
+			store.sortByTime();
+		
+		for (int i = 0; i < store.size(); i++)
+			note(store.getLane(i), store.getTime(i));
+	} // End analyze(NoteStore)
+	
+	/**
+	 * Measures a chart file. Compiled maps are read from their mapping
+	 * and .cbm files are measured as they are parsed; a .cbm file with
+	 * notes out of order is loaded and sorted, then measured again.
+	 * 
+	 * @param filename A .cbm or .cbmc file.
+	 * @param parser The parser to read .cbm files with.
+	 * @throws IOException If the file cannot be read or is not a valid map.
+	 */
+	public void analyze(String filename, MapParser parser) throws IOException {
+		reset();
+		
+		if (filename.endsWith(".cbmc")) {
+			CompiledMap.open(filename).feed(this);
+			return;
+		}
+		
+		parser.parse(filename, this);
+		
+		if (!this.inOrder) {
+			reset();
+			analyze(parser.parseInNotes(filename));
+		}
+	} // End analyze(String, MapParser)
+	
+	/**
+	 * Measures many charts at once on the common fork-join pool.
+	 * 
+	 * @param files The .cbm or .cbmc files.
+	 * @return An array of an analyzer per chart, in the same order, with null for charts that could not be read.
+	 */
+	public static ChartAnalyzer[] analyzeAll(String[] files) {
+		ChartAnalyzer[] results = new ChartAnalyzer[files.length];
+		
+		ForkJoinPool.commonPool().invoke(new AnalyzeTask(files, results, 0, files.length));
+		
+		return results;
+	} // End analyzeAll()
+	
+	/**
+	 * Adds a chart, or every chart in a folder and the folders inside it.
+	 * 
+	 * @param file A chart or a folder.
+	 * @param charts Where the paths of the charts are added.
+	 */
+	private static void addCharts(File file, ArrayList<String> charts) {
+		if (!file.isDirectory()) {
+			if (ChartLibrary.isChart(file.getName()))
+				charts.add(file.getPath());
+			
+			return;
+		}
+		
+		File[] files = file.listFiles();
+		
+		if (files == null)
+			return;
+		
+		Arrays.sort(files);
+		
+		for (int i = 0; i < files.length; i++)
+			addCharts(files[i], charts);
+	} // End addCharts()
+	
+	/**
+	 * Forgets every note, so the analyzer can measure another chart.
+	 */
+	public void reset() {
+		this.notes = 0;
+		this.firstTime = 0;
+		this.lastTime = 0;
+		this.lastLane = 0;
+		this.inOrder = true;
+		
+		this.windowHead = 0;
+		this.windowCount = 0;
+		this.peakNps = 0;
+		this.peakTime = 0;
+		
+		Arrays.fill(this.density, 0, this.seconds, 0);
+		this.seconds = 0;
+		
+		this.laneSwitches = 0;
+		this.jacks = 0;
+		this.jackRun = 0;
+		this.longestJack = 0;
+		this.chords = 0;
+	} // End reset()
+	
+	/**
+	 * Works out how hard the chart is from the notes so far.
+	 * 
+	 * @return A double of the difficulty, roughly the notes per second to keep up with.
+	 */
+	public double getDifficulty() {
+		if (this.notes == 0)
+			return 0;
+		
+		double blended = ((1 - PEAK_WEIGHT) * getSustainedNps()) + (PEAK_WEIGHT * this.peakNps);
+		
+		return blended * (1 + (JACK_WEIGHT * this.jacks) / this.notes);
+	} // End getDifficulty()
+	
+	/**
+	 * Gets the notes per second the chart keeps up for most of its length.
+	 * 
+	 * @return An int of the 95th percentile of the density graph.
+	 */
+	public int getSustainedNps() {
+		if (this.seconds == 0)
+			return 0;
+		
+		int[] sorted = Arrays.copyOf(this.density, this.seconds);
+		Arrays.sort(sorted);
+		
+		return sorted[((this.seconds - 1) * SUSTAINED_PERCENTILE) / 100];
+	} // End getSustainedNps()
+	
+	/**
+	 * Gets how dense the chart is on average.
+	 * 
+	 * @return A float of the notes per second from the first note to the last, over at least one second.
+	 */
+	public float getAverageNps() {
+		return (this.notes * 1000f) / Math.max(this.lastTime - this.firstTime, WINDOW);
+	} // End getAverageNps()
+	
+	/**
+	 * Gets the notes in the sliding window as of the last note.
+	 * 
+	 * @return An int of the notes in the second up to the last note.
+	 */
+	public int getCurrentNps() {
+		return this.windowCount;
+	} // End getCurrentNps()
+	
+	/**
+	 * Gets the most notes in any one second of the chart.
+	 * 
+	 * @return An int of the peak notes per second.
+	 */
+	public int getPeakNps() {
+		return this.peakNps;
+	} // End getPeakNps()
+	
+	/**
+	 * Gets when the peak was reached.
+	 * 
+	 * @return A long of the time of the note that ended the densest second, in ms.
+	 */
+	public long getPeakTime() {
+		return this.peakTime;
+	} // End getPeakTime()
+	
+	/**
+	 * Gets the density graph of the chart.
+	 * 
+	 * @return An array of the notes in each second, from the first note.
+	 */
+	public int[] getDensityGraph() {
+		return Arrays.copyOf(this.density, this.seconds);
+	} // End getDensityGraph()
+	
+	/**
+	 * Gets the number of notes handed in.
+	 * 
+	 * @return An int of the notes.
+	 */
+	public int getNoteCount() {
+		return this.notes;
+	} // End getNoteCount()
+	
+	/**
+	 * Gets when the first note is.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getFirstTime() {
+		return this.firstTime;
+	} // End getFirstTime()
+	
+	/**
+	 * Gets when the last note is.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getLastTime() {
+		return this.lastTime;
+	} // End getLastTime()
+	
+	/**
+	 * Gets the number of notes in another lane than the note before.
+	 * 
+	 * @return An int of the lane switches.
+	 */
+	public int getLaneSwitches() {
+		return this.laneSwitches;
+	} // End getLaneSwitches()
+	
+	/**
+	 * Gets the number of notes in the same lane as the note before,
+	 * within JACK_GAP of it.
+	 * 
+	 * @return An int of the jacks.
+	 */
+	public int getJacks() {
+		return this.jacks;
+	} // End getJacks()
+	
+	/**
+	 * Gets the most jacks in a row.
+	 * 
+	 * @return An int of the longest run of jacks.
+	 */
+	public int getLongestJack() {
+		return this.longestJack;
+	} // End getLongestJack()
+	
+	/**
+	 * Gets the number of notes at the same time as the note before.
+	 * 
+	 * @return An int of the chord notes.
+	 */
+	public int getChords() {
+		return this.chords;
+	} // End getChords()
+	
+	/**
+	 * Checks if every note was handed in after the one before it. Notes
+	 * out of order are left out, so the numbers only hold when this is true.
+	 * 
+	 * @return True if the notes were in order.
+	 */
+	public boolean isInOrder() {
+		return this.inOrder;
+	} // End isInOrder()
+	
+	/**
+	 * Measures a range of charts, splitting it in half until it is
+	 * small enough to measure on one thread with one parser.
+	 */
+	private static class AnalyzeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		// The charts, where their analyzers go, and the range of them
+		private final String[] files;
+		private final ChartAnalyzer[] results;
+		private final int from;
+		private final int to;
+		
+		/**
+		 * This constructor creates the task for a range of charts.
+		 * 
+		 * @param files The charts.
+		 * @param results Where their analyzers go.
+		 * @param from The first chart of the range.
+		 * @param to The chart after the last one of the range.
+		 */
+		private AnalyzeTask(String[] files, ChartAnalyzer[] results, int from, int to) {
+			this.files = files;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		} // End AnalyzeTask()
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (this.to - this.from > CHARTS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				
+				invokeAll(new AnalyzeTask(this.files, this.results, this.from, middle),
+						new AnalyzeTask(this.files, this.results, middle, this.to));
+				return;
+			} // End if
+			
+			MapParser parser = new MapParser();
+			
+			for (int i = this.from; i < this.to; i++) {
+				ChartAnalyzer analyzer = new ChartAnalyzer();
+				
+				try {
+					analyzer.analyze(this.files[i], parser);
+					this.results[i] = analyzer;
+				}
+				catch (IOException e) {
+					System.err.println("Skipping chart " + e.getMessage());
+				}
+			} // End for
+		} // End compute()
+	} // End AnalyzeTask class
+} // End ChartAnalyzer class
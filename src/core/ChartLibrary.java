@@ -0,0 +1,735 @@
+package core;
+
+/**
+ * The ChartLibrary class keeps what a song select needs to know about
+ * every chart under a folder in one index file, which is memory mapped
+ * and read in place. Opening a library of any size only maps the file,
+ * and nothing is parsed or allocated per chart until it is asked for.
+ * 
+ * Scanning a folder walks its tree on a fork-join pool. A chart whose
+ * modified time and size match its entry in the old index keeps that
+ * entry; every other chart is loaded, sorted and measured by a
+ * ChartAnalyzer on its own task. The new index is written next to the
+ * charts and moved over the old one, so a library being read is never
+ * seen half written.
+ * 
+ * A .cbli file is big-endian and starts with a 24 byte header:
+ *   int   magic ("CBLI")
+ *   short version
+ *   short reserved (0)
+ *   int   number of charts
+ *   int   reserved (0)
+ *   long  offset of the paths
+ * followed by one 72 byte record per chart, sorted by path:
+ *   long  modified time of the file, in ms
+ *   long  size of the file, in bytes
+ *   long  hash of the chart, from Replay.hashChart()
+ *   int   number of notes
+ *   int   time of the last note, in ms
+ *   int   notes in each lane (Left, Down, Up, Right)
+ *   float notes per second from the first note to the last
+ *   int   most notes in any one second
+ *   float difficulty, from ChartAnalyzer
+ *   int   reserved (0)
+ *   int   offset of the path from the start of the paths
+ *   int   length of the path, in bytes
+ * and then the paths, relative to the folder, in UTF-8. An index of an
+ * older version is rebuilt by the next scan.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ChartLibrary {
+	// "CBLI" in ASCII
+	public static final int MAGIC = 0x43424C49;
+	
+	// The version of the index written
+	public static final short VERSION = 2;
+	
+	// The name of the index file in a library's folder
+	public static final String INDEX_NAME = "library.cbli";
+	
+	// Sizes of the header and of each chart, in bytes
+	public static final int HEADER_SIZE = 24;
+	public static final int RECORD_SIZE = 72;
+	
+	// Offsets of the fields in a chart record
+	private static final int MODIFIED_OFFSET = 0;
+	private static final int LENGTH_OFFSET = 8;
+	private static final int HASH_OFFSET = 16;
+	private static final int NOTES_OFFSET = 24;
+	private static final int DURATION_OFFSET = 28;
+	private static final int LANES_OFFSET = 32;
+	private static final int DENSITY_OFFSET = 48;
+	private static final int PEAK_OFFSET = 52;
+	private static final int DIFFICULTY_OFFSET = 56;
+	private static final int PATH_OFFSET = 64;
+	private static final int PATH_LENGTH_OFFSET = 68;
+	
+	// Number of lanes counted per chart
+	public static final int LANES = NoteIndex.LANES;
+	
+	/*
+	 * What charts can be sorted by:
+	 * BY_PATH = The path, which is the order of the index
+	 * BY_NOTES = The number of notes
+	 * BY_DURATION = The time of the last note
+	 * BY_DENSITY = Notes per second
+	 * BY_DIFFICULTY = The difficulty from ChartAnalyzer
+	 */
+	public static final int BY_PATH = 0;
+	public static final int BY_NOTES = 1;
+	public static final int BY_DURATION = 2;
+	public static final int BY_DENSITY = 3;
+	public static final int BY_DIFFICULTY = 4;
+	public static final String[] SORT_NAMES = {"Name", "Notes", "Length", "Density", "Difficulty"};
+	
+	// The folder the charts are in
+	private final File root;
+	
+	// The mapped index
+	private final ByteBuffer buffer;
+	
+	// Number of charts, and where the paths start
+	private final int size;
+	private final int pathsStart;
+	
+	// Charts loaded and charts kept from the old index by the last scan
+	private int parsed = 0;
+	private int reused = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor wraps a buffer holding a whole .cbli file.
+	 * 
+	 * @param root The folder the charts are in.
+	 * @param buffer The buffer, positioned at the start of the file.
+	 * @param source The name of the index, used in error messages.
+	 * @throws IOException If the buffer is not a chart index.
+	 */
+	public ChartLibrary(File root, ByteBuffer buffer, String source) throws IOException {
+		this.root = root;
+		this.buffer = buffer;
+		
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException(source + " is not a chart index");
+		
+		if (buffer.getShort(4) != VERSION)
+			throw new IOException(source + " is version " + buffer.getShort(4)
+					+ ", only version " + VERSION + " can be read");
+		
+		this.size = buffer.getInt(8);
+		long paths = buffer.getLong(16);
+		
+		if (this.size < 0 || paths != HEADER_SIZE + ((long) this.size * RECORD_SIZE) || paths > buffer.limit())
+			throw new IOException(source + " is cut short, expected " + this.size + " charts");
+		
+		this.pathsStart = (int) paths;
+	} // End ChartLibrary(File, ByteBuffer, String)
+	// End Constructor(s)
+	
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 1) {
+			System.err.println("Usage: java core.ChartLibrary folder");
+			System.exit(1);
+		}
+		
+		long start = System.nanoTime();
+		ChartLibrary library = scan(argv[0]);
+		long scanned = System.nanoTime();
+		
+		System.out.printf("%d charts (%d loaded, %d from the index) in %.1f ms%n", library.size(),
+				library.getParsedCount(), library.getReusedCount(), (scanned - start) / 1e6);
+		
+		library = open(argv[0]);
+		int[] order = library.sort(BY_DIFFICULTY, true);
+		
+		System.out.printf("Opened and sorted in %.1f ms%n", (System.nanoTime() - scanned) / 1e6);
+		
+		for (int i = 0; i < Math.min(order.length, 10); i++) {
+			int c = order[i];
+			System.out.printf("%6.2f difficulty %8.2f nps %8d notes  %s%n", library.getDifficulty(c),
+					library.getDensity(c), library.getNoteCount(c), library.getPath(c));
+		} // End for
+	} // End main()
+	
+	/**
+	 * Memory maps the index of a folder of charts, without looking
+	 * at the charts themselves.
+	 * 
+	 * @param folder The folder the charts are in.
+	 * @return The library.
+	 * @throws IOException If there is no index or it cannot be read.
+	 */
+	public static ChartLibrary open(String folder) throws IOException {
+		File root = new File(folder);
+		File index = new File(root, INDEX_NAME);
+		FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ);
+		
+		try {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			return new ChartLibrary(root, mapped, index.getPath());
+		}
+		finally {
+			// The mapping stays valid after the channel is closed
+			channel.close();
+		}
+	} // End open()
+	
+	/**
+	 * Scans a folder for charts and brings its index up to date.
+	 * Charts that have not changed since the index was written are
+	 * not read again.
+	 * 
+	 * @param folder The folder the charts are in.
+	 * @return The library, mapped from the new index.
+	 * @throws IOException If the index cannot be written.
+	 */
+	public static ChartLibrary scan(String folder) throws IOException {
+		File root = new File(folder);
+		ChartLibrary old = null;
+		
+		if (new File(root, INDEX_NAME).exists()) {
+			try {
+				old = open(folder);
+			}
+			catch (IOException e) {
+				System.err.println("Rebuilding the chart index: " + e.getMessage());
+			}
+		} // End if
+		
+		ConcurrentLinkedQueue<Entry> found = new ConcurrentLinkedQueue<Entry>();
+		AtomicInteger parsed = new AtomicInteger();
+		
+		ForkJoinPool.commonPool().invoke(new FolderScan(root, "", old, found, parsed));
+		
+		ArrayList<Entry> entries = new ArrayList<Entry>(found);
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return a.path.compareTo(b.path);
+			}
+		});
+		
+		write(root, entries);
+		
+		ChartLibrary library = open(folder);
+		library.parsed = parsed.get();
+		library.reused = entries.size() - library.parsed;
+		
+		return library;
+	} // End scan()
+	
+	/**
+	 * Writes the index of a folder to a new file and moves it over
+	 * the old one.
+	 * 
+	 * @param root The folder the charts are in.
+	 * @param entries The charts, sorted by path.
+	 * @throws IOException If the index cannot be written.
+	 */
+	private static void write(File root, ArrayList<Entry> entries) throws IOException {
+		File index = new File(root, INDEX_NAME);
+		File temp = new File(root, INDEX_NAME + ".tmp");
+		
+		byte[][] paths = new byte[entries.size()][];
+		
+		for (int i = 0; i < paths.length; i++)
+			paths[i] = entries.get(i).path.getBytes(StandardCharsets.UTF_8);
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+		
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(0);
+			out.writeInt(entries.size());
+			out.writeInt(0);
+			out.writeLong(HEADER_SIZE + ((long) entries.size() * RECORD_SIZE));
+			
+			int pathOffset = 0;
+			
+			for (int i = 0; i < paths.length; i++) {
+				Entry entry = entries.get(i);
+				
+				out.writeLong(entry.modified);
+				out.writeLong(entry.length);
+				out.writeLong(entry.hash);
+				out.writeInt(entry.notes);
+				out.writeInt(entry.duration);
+				
+				for (int lane = 0; lane < LANES; lane++)
+					out.writeInt(entry.lanes[lane]);
+				
+				out.writeFloat(entry.density);
+				out.writeInt(entry.peak);
+				out.writeFloat(entry.difficulty);
+				out.writeInt(0);
+				out.writeInt(pathOffset);
+				out.writeInt(paths[i].length);
+				
+				pathOffset += paths[i].length;
+			} // End for
+			
+			for (int i = 0; i < paths.length; i++)
+				out.write(paths[i]);
+		}
+		finally {
+			out.close();
+		}
+		
+		Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} // End write()
+	
+	/**
+	 * Sorts the charts without reading a single path, by packing each
+	 * key with its chart into a long like NoteStore.sortByTime() does.
+	 * Charts with the same key stay in order of path.
+	 * 
+	 * @param by BY_PATH, BY_NOTES, BY_DURATION, BY_DENSITY or BY_DIFFICULTY.
+	 * @param descending True to put the largest first.
+	 * @return An array of the charts in order.
+	 */
+	public int[] sort(int by, boolean descending) {
+		int[] order = new int[this.size];
+		
+		if (by == BY_PATH) {
+			for (int i = 0; i < this.size; i++)
+				order[i] = descending ? this.size - 1 - i : i;
+			
+			return order;
+		} // End if
+		
+		long[] keys = new long[this.size];
+		
+		for (int i = 0; i < this.size; i++) {
+			long key;
+			
+			if (by == BY_NOTES)
+				key = getNoteCount(i);
+			else if (by == BY_DURATION)
+				key = Math.max(getDuration(i), 0);
+			else if (by == BY_DENSITY)
+				key = Float.floatToIntBits(Math.max(getDensity(i), 0f));   // in order for positive floats
+			else
+				key = Float.floatToIntBits(Math.max(getDifficulty(i), 0f));
+			
+			if (descending)
+				key = Integer.MAX_VALUE - key;
+			
+			keys[i] = (key << 32) | i;
+		} // End for
+		
+		Arrays.sort(keys);
+		
+		for (int k = 0; k < this.size; k++)
+			order[k] = (int) keys[k];
+		
+		return order;
+	} // End sort()
+	
+	/**
+	 * Finds a chart by its path.
+	 * 
+	 * @param path The path of the chart, relative to the folder, with '/' between folders.
+	 * @return The index of the chart, or -1 if it is not in the library.
+	 */
+	public int indexOf(String path) {
+		int low = 0;
+		int high = this.size - 1;
+		
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int compare = getPath(mid).compareTo(path);
+			
+			if (compare < 0)
+				low = mid + 1;
+			else if (compare > 0)
+				high = mid - 1;
+			else
+				return mid;
+		} // End while
+		
+		return -1;
+	} // End indexOf()
+	
+	/**
+	 * Gets the number of charts in the library.
+	 * 
+	 * @return An int of the number of charts.
+	 */
+	public int size() {
+		return this.size;
+	} // End size()
+	
+	/**
+	 * Gets the folder the charts are in.
+	 * 
+	 * @return The File of the folder.
+	 */
+	public File getRoot() {
+		return this.root;
+	} // End getRoot()
+	
+	/**
+	 * Gets the path of a chart.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A String of the path, relative to the folder.
+	 */
+	public String getPath(int i) {
+		int record = record(i);
+		byte[] bytes = new byte[this.buffer.getInt(record + PATH_LENGTH_OFFSET)];
+		int offset = this.pathsStart + this.buffer.getInt(record + PATH_OFFSET);
+		
+		for (int b = 0; b < bytes.length; b++)
+			bytes[b] = this.buffer.get(offset + b);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	} // End getPath()
+	
+	/**
+	 * Gets the file of a chart.
+	 * 
+	 * @param i The index of the chart.
+	 * @return The File of the chart.
+	 */
+	public File getFile(int i) {
+		return new File(this.root, getPath(i));
+	} // End getFile()
+	
+	/**
+	 * Gets the modified time the chart's file had when it was indexed.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A long of the time in ms since 1970.
+	 */
+	public long getModified(int i) {
+		return this.buffer.getLong(record(i) + MODIFIED_OFFSET);
+	} // End getModified()
+	
+	/**
+	 * Gets the size the chart's file had when it was indexed.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A long of the size in bytes.
+	 */
+	public long getFileLength(int i) {
+		return this.buffer.getLong(record(i) + LENGTH_OFFSET);
+	} // End getFileLength()
+	
+	/**
+	 * Gets the hash of a chart, which replays and the server know it by.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A long of the hash from Replay.hashChart().
+	 */
+	public long getChartHash(int i) {
+		return this.buffer.getLong(record(i) + HASH_OFFSET);
+	} // End getChartHash()
+	
+	/**
+	 * Gets the number of notes in a chart.
+	 * 
+	 * @param i The index of the chart.
+	 * @return An int of the number of notes.
+	 */
+	public int getNoteCount(int i) {
+		return this.buffer.getInt(record(i) + NOTES_OFFSET);
+	} // End getNoteCount()
+	
+	/**
+	 * Gets how long a chart lasts, to its last note.
+	 * 
+	 * @param i The index of the chart.
+	 * @return An int of the time of the last note in ms.
+	 */
+	public int getDuration(int i) {
+		return this.buffer.getInt(record(i) + DURATION_OFFSET);
+	} // End getDuration()
+	
+	/**
+	 * Gets the number of notes in one lane of a chart.
+	 * 
+	 * @param i The index of the chart.
+	 * @param lane The direction (1 = Left, 2 = Down, 3 = Up, 4 = Right).
+	 * @return An int of the number of notes.
+	 */
+	public int getLaneCount(int i, int lane) {
+		return this.buffer.getInt(record(i) + LANES_OFFSET + ((lane - 1) * 4));
+	} // End getLaneCount()
+	
+	/**
+	 * Gets how dense a chart is.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A float of the notes per second from the first note to the last.
+	 */
+	public float getDensity(int i) {
+		return this.buffer.getFloat(record(i) + DENSITY_OFFSET);
+	} // End getDensity()
+	
+	/**
+	 * Gets the most notes in any one second of a chart.
+	 * 
+	 * @param i The index of the chart.
+	 * @return An int of the peak notes per second.
+	 */
+	public int getPeakNps(int i) {
+		return this.buffer.getInt(record(i) + PEAK_OFFSET);
+	} // End getPeakNps()
+	
+	/**
+	 * Gets how hard a chart is.
+	 * 
+	 * @param i The index of the chart.
+	 * @return A float of the difficulty from ChartAnalyzer.
+	 */
+	public float getDifficulty(int i) {
+		return this.buffer.getFloat(record(i) + DIFFICULTY_OFFSET);
+	} // End getDifficulty()
+	
+	/**
+	 * Gets the number of charts the last scan loaded.
+	 * 
+	 * @return An int of the charts that were new or had changed.
+	 */
+	public int getParsedCount() {
+		return this.parsed;
+	} // End getParsedCount()
+	
+	/**
+	 * Gets the number of charts the last scan kept from the old index.
+	 * 
+	 * @return An int of the charts that had not changed.
+	 */
+	public int getReusedCount() {
+		return this.reused;
+	} // End getReusedCount()
+	
+	/**
+	 * Gets where a chart's record starts.
+	 * 
+	 * @param i The index of the chart.
+	 * @return An int of the offset in the index.
+	 */
+	private int record(int i) {
+		if (i < 0 || i >= this.size)
+			throw new IndexOutOfBoundsException("no chart " + i);
+		
+		return HEADER_SIZE + (i * RECORD_SIZE);
+	} // End record()
+	
+	/**
+	 * Checks if a file is a chart by its name.
+	 * 
+	 * @param name The name of the file.
+	 * @return True for .cbm and .cbmc files.
+	 */
+	public static boolean isChart(String name) {
+		return name.endsWith(".cbm") || name.endsWith(".cbmc");
+	} // End isChart()
+	
+	/**
+	 * One chart while a folder is being scanned.
+	 */
+	private static class Entry {
+		// The path relative to the folder, and the file's modified time and size
+		private String path;
+		private long modified;
+		private long length;
+		
+		// What the index keeps about the chart
+		private long hash;
+		private int notes;
+		private int duration;
+		private int[] lanes = new int[LANES];
+		private float density;
+		private int peak;
+		private float difficulty;
+		
+		/**
+		 * This constructor creates an entry for a file, measured later.
+		 * 
+		 * @param path The path relative to the folder.
+		 * @param file The file of the chart.
+		 */
+		private Entry(String path, File file) {
+			this.path = path;
+			this.modified = file.lastModified();
+			this.length = file.length();
+		} // End Entry(String, File)
+		
+		/**
+		 * Copies what an old index kept about the chart.
+		 * 
+		 * @param library The old index.
+		 * @param i The index of the chart in it.
+		 */
+		private void copy(ChartLibrary library, int i) {
+			this.hash = library.getChartHash(i);
+			this.notes = library.getNoteCount(i);
+			this.duration = library.getDuration(i);
+			
+			for (int lane = 1; lane <= LANES; lane++)
+				this.lanes[lane - 1] = library.getLaneCount(i, lane);
+			
+			this.density = library.getDensity(i);
+			this.peak = library.getPeakNps(i);
+			this.difficulty = library.getDifficulty(i);
+		} // End copy()
+		
+		/**
+		 * Measures a chart that has been loaded.
+		 * 
+		 * @param store The notes of the chart, sorted by time.
+		 * @param analyzer An analyzer that has been handed the notes.
+		 */
+		private void measure(NoteStore store, ChartAnalyzer analyzer) {
+			this.hash = Replay.hashChart(store);
+			this.notes = store.size();
+			
+			for (int i = 0; i < store.size(); i++) {
+				int lane = store.getLane(i);
+				
+				if (lane >= 1 && lane <= LANES)
+					this.lanes[lane - 1]++;
+			} // End for
+			
+			if (this.notes == 0)
+				return;
+			
+			this.duration = (int) Math.min(analyzer.getLastTime(), Integer.MAX_VALUE);
+			this.density = analyzer.getAverageNps();
+			this.peak = analyzer.getPeakNps();
+			this.difficulty = (float) analyzer.getDifficulty();
+		} // End measure()
+	} // End Entry class
+	
+	/**
+	 * Scans one folder, with a task for each folder inside it and for
+	 * each chart that has to be loaded.
+	 */
+	private static class FolderScan extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		// The folder, its path relative to the library, and the old index (may be null)
+		private final File folder;
+		private final String prefix;
+		private final ChartLibrary old;
+		
+		// Where charts are put as they are found, and a count of charts loaded
+		private final ConcurrentLinkedQueue<Entry> found;
+		private final AtomicInteger parsed;
+		
+		/**
+		 * This constructor creates the task for one folder.
+		 * 
+		 * @param folder The folder.
+		 * @param prefix Its path relative to the library, ending in '/' unless empty.
+		 * @param old The old index, or null.
+		 * @param found Where charts are put.
+		 * @param parsed A count of the charts loaded.
+		 */
+		private FolderScan(File folder, String prefix, ChartLibrary old, ConcurrentLinkedQueue<Entry> found, AtomicInteger parsed) {
+			this.folder = folder;
+			this.prefix = prefix;
+			this.old = old;
+			this.found = found;
+			this.parsed = parsed;
+		} // End FolderScan()
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			File[] files = this.folder.listFiles();
+			
+			if (files == null)
+				return;
+			
+			ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+			
+			for (final File file : files) {
+				String path = this.prefix + file.getName();
+				
+				if (file.isDirectory()) {
+					tasks.add(new FolderScan(file, path + "/", this.old, this.found, this.parsed));
+					continue;
+				}
+				
+				if (!isChart(file.getName()))
+					continue;
+				
+				final Entry entry = new Entry(path, file);
+				int known = (this.old != null) ? this.old.indexOf(path) : -1;
+				
+				if (known != -1 && this.old.getModified(known) == entry.modified && this.old.getFileLength(known) == entry.length) {
+					entry.copy(this.old, known);
+					this.found.add(entry);
+					continue;
+				}
+				
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					
+					protected void compute() {
+						load(file, entry);
+					}
+				});
+			} // End for
+			
+			invokeAll(tasks);
+		} // End compute()
+		
+		/**
+		 * Loads and measures a chart, leaving it out of the library if it
+		 * cannot be read.
+		 * 
+		 * @param file The file of the chart.
+		 * @param entry The entry to fill in.
+		 */
+		private void load(File file, Entry entry) {
+			try {
+				NoteStore store = new MapParser().loadNotes(file.getPath());
+				
+				if (!store.isSorted())
+					store.sortByTime();
+				
+				ChartAnalyzer analyzer = new ChartAnalyzer();
+				analyzer.analyze(store);
+				
+				entry.measure(store, analyzer);
+				this.found.add(entry);
+				this.parsed.incrementAndGet();
+			}
+			catch (IOException e) {
+				System.err.println("Skipping chart " + e.getMessage());
+			}
+		} // End load()
+	} // End FolderScan class
+} // End ChartLibrary class
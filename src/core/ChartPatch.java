@@ -0,0 +1,282 @@
+package core;
+
+/**
+ * The ChartPatch class is the change from the chart a game is playing
+ * to a new version of it, worked out away from the game threads so
+ * that applying it on a tick only copies the state of each note.
+ * 
+ * Notes are matched by lane, time and where their hold ends. A note in
+ * both versions keeps whether it was hit or has gone past, a note only
+ * in the new version is added and a note only in the old one is
+ * removed; a note that was moved or had its hold changed is removed
+ * and added again. The new notes take the timing of the new version.
+ * They are put in order of time and then lane, and a NoteStore and
+ * NoteIndex are built for each player ahead of time.
+ * 
+ * @version 1.2
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class ChartPatch {
+	// The new notes and their index, one of each per player
+	private final NoteStore[] stores;
+	private final NoteIndex[] indexes;
+	
+	// A copy of the new notes that is never played, for working out the next patch
+	private final NoteStore chart;
+	
+	// Where each old note is in the new notes (-1 if it was removed)
+	private final int[] oldToNew;
+	
+	// Notes added and removed
+	private final int added;
+	private final int removed;
+	
+	// Whether the tempo or scroll speed changed
+	private final boolean timingChanged;
+	
+	// When the last note reaches the top arrows, in ms
+	private final long lastTime;
+	
+	// When the change to the file was seen, from System.nanoTime()
+	private final long detectedAt;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a patch from what between() worked out.
+	 * 
+	 * @param stores The new notes, one store per player.
+	 * @param chart A copy of the new notes that is never played.
+	 * @param oldToNew Where each old note is in the new notes.
+	 * @param added Notes added.
+	 * @param removed Notes removed.
+	 * @param timingChanged Whether the tempo or scroll speed changed.
+	 * @param detectedAt When the change to the file was seen.
+	 */
+	private ChartPatch(NoteStore[] stores, NoteStore chart, int[] oldToNew, int added, int removed,
+			boolean timingChanged, long detectedAt) {
+		this.stores = stores;
+		this.chart = chart;
+		this.oldToNew = oldToNew;
+		this.added = added;
+		this.removed = removed;
+		this.timingChanged = timingChanged;
+		this.detectedAt = detectedAt;
+		
+		this.indexes = new NoteIndex[stores.length];
+		
+		for (int p = 0; p < stores.length; p++)
+			this.indexes[p] = new NoteIndex(stores[p]);
+		
+		this.lastTime = (chart.size() > 0) ? chart.getTime(chart.size() - 1) : 0;
+	} // End ChartPatch()
+	// End Constructor(s)
+	
+	/**
+	 * Works out the change from the notes being played to new notes.
+	 * 
+	 * @param current The notes being played, in the order the game has them.
+	 * @param next The new notes, which are not changed.
+	 * @param players The number of players to build notes for.
+	 * @param detectedAt When the change to the file was seen, from System.nanoTime().
+	 * @return The ChartPatch.
+	 */
+	public static ChartPatch between(NoteStore current, NoteStore next, int players, long detectedAt) {
+		int[] oldOrder = canonicalOrder(current);
+		int[] newOrder = canonicalOrder(next);
+		
+		NoteStore target = new NoteStore(next.size());
+		target.timing(next.getTiming());
+		
+		for (int k = 0; k < newOrder.length; k++)
+			target.add(next.getLane(newOrder[k]), next.getTime(newOrder[k]), next.getEndTime(newOrder[k]));
+		
+		int[] oldToNew = new int[current.size()];
+		Arrays.fill(oldToNew, -1);
+		
+		// Walking both in order of time then lane, like merging two sorted lists
+		int i = 0;
+		int k = 0;
+		int kept = 0;
+		
+		while (i < oldOrder.length && k < target.size()) {
+			int note = oldOrder[i];
+			int compare = compare(current, note, target, k);
+			
+			if (compare == 0) {
+				oldToNew[note] = k;
+				kept++;
+				i++;
+				k++;
+			}
+			else if (compare < 0)
+				i++;
+			else
+				k++;
+		} // End while
+		
+		NoteStore[] stores = new NoteStore[Math.max(players, 1)];
+		NoteStore chart = target.copy();
+		
+		for (int p = 0; p < stores.length; p++)
+			stores[p] = (p == 0) ? target : chart.copy();
+		
+		boolean timingChanged = !current.getTiming().hasSameSegments(next.getTiming());
+		
+		return new ChartPatch(stores, chart, oldToNew, target.size() - kept, current.size() - kept, timingChanged, detectedAt);
+	} // End between()
+	
+	/**
+	 * Orders the notes of a store by time, lane then end. The store has
+	 * to be sorted by time, so only notes at the same time are moved.
+	 * 
+	 * @param notes The notes, sorted by time.
+	 * @return An array of the note indexes in order.
+	 */
+	private static int[] canonicalOrder(NoteStore notes) {
+		int[] order = new int[notes.size()];
+		
+		for (int i = 0; i < order.length; i++) {
+			int j = i;
+			
+			// Chords are a few notes at most, so an insertion sort is enough
+			while (j > 0 && compare(notes, order[j - 1], notes, i) > 0) {
+				order[j] = order[j - 1];
+				j--;
+			} // End while
+			
+			order[j] = i;
+		} // End for
+		
+		return order;
+	} // End canonicalOrder()
+	
+	/**
+	 * Compares two notes by time, lane then end.
+	 * 
+	 * @param notes1 The store of the first note.
+	 * @param note1 The index of the first note.
+	 * @param notes2 The store of the second note.
+	 * @param note2 The index of the second note.
+	 * @return An int below 0, 0 or above 0 as the first note comes before, with or after the second.
+	 */
+	private static int compare(NoteStore notes1, int note1, NoteStore notes2, int note2) {
+		int compare = Long.compare(notes1.getTime(note1), notes2.getTime(note2));
+		
+		if (compare == 0)
+			compare = Integer.compare(notes1.getLane(note1), notes2.getLane(note2));
+		
+		if (compare == 0)
+			compare = Long.compare(notes1.getEndTime(note1), notes2.getEndTime(note2));
+		
+		return compare;
+	} // End compare()
+	
+	/**
+	 * Checks if the patch changes anything. A change to only the scroll
+	 * speed moves no note in time but still changes where notes are
+	 * drawn, so it is not empty.
+	 * 
+	 * @return True if no note was added or removed and the timing is the same.
+	 */
+	public boolean isEmpty() {
+		return this.added == 0 && this.removed == 0 && !this.timingChanged;
+	} // End isEmpty()
+	
+	/**
+	 * Checks if the tempo or scroll speed changed.
+	 * 
+	 * @return True if the new version is timed differently.
+	 */
+	public boolean isTimingChanged() {
+		return this.timingChanged;
+	} // End isTimingChanged()
+	
+	/**
+	 * Gets the new notes of a player.
+	 * 
+	 * @param player The player, from 0.
+	 * @return The NoteStore, with every note waiting.
+	 */
+	public NoteStore getNotes(int player) {
+		return this.stores[player];
+	} // End getNotes()
+	
+	/**
+	 * Gets the index of the new notes of a player.
+	 * 
+	 * @param player The player, from 0.
+	 * @return The NoteIndex.
+	 */
+	public NoteIndex getIndex(int player) {
+		return this.indexes[player];
+	} // End getIndex()
+	
+	/**
+	 * Gets the number of players the patch has notes for.
+	 * 
+	 * @return An int of the players.
+	 */
+	public int getPlayerCount() {
+		return this.stores.length;
+	} // End getPlayerCount()
+	
+	/**
+	 * Gets the new notes in the order the game will have them, which
+	 * the next patch is worked out against.
+	 * 
+	 * @return A NoteStore that is never played.
+	 */
+	public NoteStore getChart() {
+		return this.chart;
+	} // End getChart()
+	
+	/**
+	 * Gets where an old note is in the new notes.
+	 * 
+	 * @param note The index of the old note.
+	 * @return An int of the index of the new note, or -1 if it was removed.
+	 */
+	public int getNewIndex(int note) {
+		return this.oldToNew[note];
+	} // End getNewIndex()
+	
+	/**
+	 * Gets the number of notes added.
+	 * 
+	 * @return An int of the notes added.
+	 */
+	public int getAdded() {
+		return this.added;
+	} // End getAdded()
+	
+	/**
+	 * Gets the number of notes removed.
+	 * 
+	 * @return An int of the notes removed.
+	 */
+	public int getRemoved() {
+		return this.removed;
+	} // End getRemoved()
+	
+	/**
+	 * Gets when the last new note reaches the top arrows.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getLastTime() {
+		return this.lastTime;
+	} // End getLastTime()
+	
+	/**
+	 * Gets when the change to the file was seen.
+	 * 
+	 * @return A long from System.nanoTime().
+	 */
+	public long getDetectedAt() {
+		return this.detectedAt;
+	} // End getDetectedAt()
+} // End ChartPatch class
@@ -0,0 +1,206 @@
+package core;
+
+/**
+ * The ChartWatcher class watches the file of the chart being played and,
+ * each time it is saved, loads it again and works out a ChartPatch from
+ * the notes the game has to the new ones. All of that happens on the
+ * watcher's own thread; the update thread only picks the patch up with
+ * poll() at the start of a tick, so the game never pauses and nothing
+ * but the notes is loaded again.
+ * 
+ * A patch waits until the game has taken the one before it, since each
+ * patch is worked out against the notes the game will have by then.
+ * A save is only loaded once the file has gone a few ms without being
+ * written, and a chart with no notes is taken as a save caught halfway.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ChartWatcher implements Runnable {
+	// How long to wait between checks for the game to take a patch, in ms
+	private static final long HANDOFF_WAIT = 1;
+	
+	// How long the file has to go without a write before it is loaded, in ms
+	private static final long SETTLE_TIME = 5;
+	
+	// The chart file and the folder it is in
+	private final Path file;
+	private final Path folder;
+	
+	// The number of players to build notes for
+	private final int players;
+	
+	// The notes the game has, or will have once it takes the waiting patch
+	private NoteStore current;
+	
+	// The patch waiting for the update thread (null if none)
+	private final AtomicReference<ChartPatch> pending = new AtomicReference<ChartPatch>();
+	
+	// Reads the chart again, only used by the watcher thread
+	private final MapParser parser = new MapParser();
+	
+	// Watches the folder, and the thread waiting on it
+	private WatchService service;
+	private Thread thread;
+	private volatile boolean running = false;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a watcher for a chart being played.
+	 * 
+	 * @param filename The .cbm or .cbmc file of the chart.
+	 * @param current A copy of the notes the game has, in the same order.
+	 * @param players The number of players in the game.
+	 */
+	public ChartWatcher(String filename, NoteStore current, int players) {
+		this.file = Paths.get(filename).toAbsolutePath();
+		this.folder = this.file.getParent();
+		this.current = current;
+		this.players = players;
+	} // End ChartWatcher()
+	// End Constructor(s)
+	
+	/**
+	 * Starts watching the chart on a thread of its own.
+	 * 
+	 * @throws IOException If the folder of the chart cannot be watched.
+	 */
+	public void start() throws IOException {
+		this.service = FileSystems.getDefault().newWatchService();
+		this.folder.register(this.service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		
+		this.running = true;
+		this.thread = new Thread(this, "Chart watcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	} // End start()
+	
+	/**
+	 * Stops watching the chart.
+	 */
+	public void close() {
+		this.running = false;
+		
+		try {
+			if (this.service != null)
+				this.service.close();
+		}
+		catch (IOException e) {
+			// Nothing more can be done while closing
+		}
+	} // End close()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		try {
+			while (this.running) {
+				boolean changed = takeChanges(this.service.take());
+				long detectedAt = System.nanoTime();
+				WatchKey more;
+				
+				// Saves truncate the file then write it, often in more than one go
+				while ((more = this.service.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null)
+					changed |= takeChanges(more);
+				
+				if (changed)
+					reload(detectedAt);
+			} // End while
+		}
+		catch (ClosedWatchServiceException e) {
+			// Closed by close()
+		}
+		catch (InterruptedException e) {
+			// Stopped
+		}
+	} // End run()
+	
+	/**
+	 * Checks if the events of a key touch the chart, and readies the
+	 * key for more events.
+	 * 
+	 * @param key A key of the folder with events.
+	 * @return True if the chart was created or changed.
+	 */
+	private boolean takeChanges(WatchKey key) {
+		boolean changed = false;
+		
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.file.getFileName().equals(event.context()))
+				changed = true;
+		} // End for
+		
+		key.reset();
+		
+		return changed;
+	} // End takeChanges()
+	
+	/**
+	 * Loads the chart again and hands the change to the game, once it
+	 * has taken the one before.
+	 * 
+	 * @param detectedAt When the change was seen, from System.nanoTime().
+	 * @throws InterruptedException If stopped while waiting for the game.
+	 */
+	private void reload(long detectedAt) throws InterruptedException {
+		NoteStore next;
+		
+		try {
+			next = this.parser.loadNotes(this.file.toString());
+		}
+		catch (IOException e) {
+			// Most likely saved halfway; the next save is tried again
+			System.err.println("Could not reload chart " + e.getMessage());
+			return;
+		}
+		
+		if (next.size() == 0)
+			return;
+		
+		if (!next.isSorted())
+			next.sortByTime();
+		
+		ChartPatch patch = ChartPatch.between(this.current, next, this.players, detectedAt);
+		
+		if (patch.isEmpty())
+			return;
+		
+		while (!this.pending.compareAndSet(null, patch)) {
+			if (!this.running)
+				return;
+			
+			Thread.sleep(HANDOFF_WAIT);
+		} // End while
+		
+		this.current = patch.getChart();
+	} // End reload()
+	
+	/**
+	 * Takes the change waiting for the game, if there is one. Called
+	 * by the update thread at the start of a tick.
+	 * 
+	 * @return The ChartPatch to apply, or null if the chart has not changed.
+	 */
+	public ChartPatch poll() {
+		if (this.pending.get() == null)
+			return null;
+		
+		return this.pending.getAndSet(null);
+	} // End poll()
+} // End ChartWatcher class
@@ -0,0 +1,229 @@
+package core;
+
+/**
+ * The CompiledMap class reads a compiled CircleBear map (.cbmc) by
+ * memory mapping the file. Notes are read straight out of the mapped
+ * file when asked for, so opening a map costs the same no matter how
+ * many notes it has.
+ * 
+ * A .cbmc file is big-endian and starts with a 16 byte header:
+ *   int   magic ("CBMC")
+ *   short version
+ *   short number of lanes
+ *   int   number of notes
+ *   int   number of timing segments (0 for a map with no changes)
+ * followed by one 12 byte record per note, sorted by time:
+ *   int   time the note reaches the top arrows, in ms
+ *   byte  lane (1 = Left, 2 = Down, 3 = Up, 4 = Right)
+ *   3 bytes reserved (0)
+ *   int   length of the hold in ms (0 if the note is not a hold)
+ * followed by one 20 byte record per segment of the TimingMap:
+ *   int    height the segment starts at
+ *   double beats per minute
+ *   double scroll speed
+ * 
+ * Version 1 files had 8 byte records with no holds or timing, and have
+ * to be compiled again.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class CompiledMap {
+	// "CBMC" in ASCII
+	public static final int MAGIC = 0x43424D43;
+	
+	// The version of the format written by the MapCompiler
+	public static final short VERSION = 2;
+	
+	// Sizes of the header, of each note and of each timing segment, in bytes
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 12;
+	public static final int SEGMENT_SIZE = 20;
+	
+	// Offsets of the fields in a note record
+	private static final int TIME_OFFSET = 0;
+	private static final int LANE_OFFSET = 4;
+	private static final int LENGTH_OFFSET = 8;
+	
+	// Offsets of the fields in a timing segment
+	private static final int HEIGHT_OFFSET = 0;
+	private static final int TEMPO_OFFSET = 4;
+	private static final int SPEED_OFFSET = 12;
+	
+	// The mapped file
+	private final ByteBuffer buffer;
+	
+	// Number of notes, lanes and timing segments in the map
+	private final int size;
+	private final int lanes;
+	private final int segments;
+	
+	// Constructor(s)
+	/**
+	 * This constructor wraps a buffer holding a whole .cbmc file.
+	 * 
+	 * @param buffer The buffer, positioned at the start of the file.
+	 * @param source The name of the map, used in error messages.
+	 * @throws IOException If the buffer is not a compiled map.
+	 */
+	public CompiledMap(ByteBuffer buffer, String source) throws IOException {
+		this.buffer = buffer;
+		
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException(source + " is not a compiled map");
+		
+		if (buffer.getShort(4) != VERSION)
+			throw new IOException(source + " is version " + buffer.getShort(4)
+					+ ", only version " + VERSION + " can be read (compile it again with MapCompiler)");
+		
+		this.lanes = buffer.getShort(6);
+		this.size = buffer.getInt(8);
+		this.segments = buffer.getInt(12);
+		
+		if (this.size < 0 || this.segments < 0 || getSegmentStart() + ((long) this.segments * SEGMENT_SIZE) > buffer.limit())
+			throw new IOException(source + " is cut short, expected " + this.size + " notes and " + this.segments + " timing segments");
+	} // End CompiledMap(ByteBuffer, String)
+	// End Constructor(s)
+	
+	/**
+	 * Memory maps a compiled map file.
+	 * 
+	 * @param filename A .cbmc file.
+	 * @return The compiled map.
+	 * @throws IOException If the file cannot be mapped or is not a compiled map.
+	 */
+	public static CompiledMap open(String filename) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		
+		try {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			return new CompiledMap(mapped, filename);
+		}
+		finally {
+			// The mapping stays valid after the channel is closed
+			channel.close();
+		}
+	} // End open()
+	
+	/**
+	 * Gets the number of notes in the map.
+	 * 
+	 * @return An int of the number of notes.
+	 */
+	public int size() {
+		return this.size;
+	} // End size()
+	
+	/**
+	 * Gets the number of lanes the map was written for.
+	 * 
+	 * @return An int of the number of lanes.
+	 */
+	public int getLaneCount() {
+		return this.lanes;
+	} // End getLaneCount()
+	
+	/**
+	 * Gets the direction of a note.
+	 * 
+	 * @param i The index of the note.
+	 * @return An int representing the note's direction.
+	 */
+	public int getLane(int i) {
+		return this.buffer.get(HEADER_SIZE + (i * RECORD_SIZE) + LANE_OFFSET);
+	} // End getLane()
+	
+	/**
+	 * Gets when a note reaches the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A long of the note's time in ms.
+	 */
+	public long getTime(int i) {
+		return this.buffer.getInt(HEADER_SIZE + (i * RECORD_SIZE) + TIME_OFFSET);
+	} // End getTime()
+	
+	/**
+	 * Gets when the end of a note reaches the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A long of the time in ms, the note's own time if it is not a hold.
+	 */
+	public long getEndTime(int i) {
+		return getTime(i) + this.buffer.getInt(HEADER_SIZE + (i * RECORD_SIZE) + LENGTH_OFFSET);
+	} // End getEndTime()
+	
+	/**
+	 * Gets where the timing segments start in the file.
+	 * 
+	 * @return A long of the offset in bytes.
+	 */
+	private long getSegmentStart() {
+		return HEADER_SIZE + ((long) this.size * RECORD_SIZE);
+	} // End getSegmentStart()
+	
+	/**
+	 * Reads the tempo and scroll speed changes of the map.
+	 * 
+	 * @return A new TimingMap, or TimingMap.DEFAULT if the map has no changes.
+	 */
+	public TimingMap getTiming() {
+		if (this.segments == 0)
+			return TimingMap.DEFAULT;
+		
+		TimingMap timing = new TimingMap();
+		int start = (int) getSegmentStart();
+		
+		for (int k = 0; k < this.segments; k++) {
+			int segment = start + (k * SEGMENT_SIZE);
+			int height = this.buffer.getInt(segment + HEIGHT_OFFSET);
+			
+			timing.addTempo(height, this.buffer.getDouble(segment + TEMPO_OFFSET));
+			timing.addScroll(height, this.buffer.getDouble(segment + SPEED_OFFSET));
+		} // End for
+		
+		return timing;
+	} // End getTiming()
+	
+	/**
+	 * Hands the timing and then every note to the consumer in order.
+	 * 
+	 * @param consumer Who is handed the notes.
+	 */
+	public void feed(NoteConsumer consumer) {
+		if (this.segments > 0)
+			consumer.timing(getTiming());
+		
+		for (int i = 0; i < this.size; i++) {
+			long time = getTime(i);
+			long endTime = getEndTime(i);
+			
+			if (endTime == time)
+				consumer.note(getLane(i), time);
+			else
+				consumer.hold(getLane(i), time, endTime);
+		} // End for
+	} // End feed()
+	
+	/**
+	 * Creates a NoteStore of the map that can be played.
+	 * 
+	 * @return A NoteStore holding every note.
+	 */
+	public NoteStore toNoteStore() {
+		NoteStore notes = new NoteStore(this.size);
+		feed(notes);
+		
+		return notes;
+	} // End toNoteStore()
+} // End CompiledMap class
@@ -0,0 +1,467 @@
+package core;
+
+/**
+ * The EventLog class records what happens in the game (hits, misses,
+ * late frames, frame stats and errors) without the game, input or
+ * render threads ever waiting on the console or the disk. Each event
+ * is a few numbers written into one slot of a ring buffer that is
+ * allocated up front. Any thread may log: a slot is claimed with a
+ * compare-and-set on the tail and published by moving the slot's
+ * sequence number, so logging never locks and never allocates. When
+ * the ring is full the event is dropped and counted rather than waited
+ * for.
+ * 
+ * A background thread drains the ring in batches, either into a
+ * binary .cbel file or as lines of text on the console. A .cbel file
+ * is big-endian and starts with a 24 byte header:
+ *   int   magic ("CBEL")
+ *   short version
+ *   short size of each record
+ *   long  System.nanoTime() the log started at
+ *   long  System.currentTimeMillis() the log started at
+ * followed by one 32 byte record per event:
+ *   long  System.nanoTime() of the event
+ *   int   type, then three ints and a long that depend on the type
+ * Running this class on a .cbel file prints it as text.
+ * 
+ * Usage: java core.EventLog events.cbel
+ * 
+ * @version 1.2
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class EventLog implements Runnable {
+	/*
+	 * The types of event, and what their numbers hold:
+	 * HIT = player, lane, points, press time in ms
+	 * EMPTY_PRESS = player, lane, 0, press time in ms (no note to hit)
+	 * MISS = player, notes missed since the last tick, 0, chart time in ms
+	 * LATE_FRAME = 0, 0, 0, ns the frame was late by
+	 * FRAME_STATS = phase, 0, 0, 99th percentile in ns
+	 * ERROR = error, 0, 0, a number about the error
+	 * DROPPED = 0, 0, 0, events lost because the ring was full
+	 * RELOAD = notes added, notes removed, 0, ns from the chart being saved to the change being played
+	 * REPLAY_SAVED = presses, hits, misses, score of the replay written
+	 */
+	public static final int HIT = 1;
+	public static final int EMPTY_PRESS = 2;
+	public static final int MISS = 3;
+	public static final int LATE_FRAME = 4;
+	public static final int FRAME_STATS = 5;
+	public static final int ERROR = 6;
+	public static final int DROPPED = 7;
+	public static final int RELOAD = 8;
+	public static final int REPLAY_SAVED = 9;
+	
+	// Names of the types of event, for printing
+	public static final String[] TYPE_NAMES = {
+		"?", "Hit", "EmptyPress", "Miss", "LateFrame", "FrameStats", "Error", "Dropped", "Reload", "ReplaySaved"
+	};
+	
+	/*
+	 * The errors an ERROR event can be:
+	 * NO_IMAGE = The offscreen image could not be made
+	 * CANVAS_LOST = The canvas lost its buffers while drawing
+	 * PAINT_FAILED = The offscreen image could not be copied on-screen
+	 * KEY_DROPPED = A key press did not fit in the input queue (presses dropped so far)
+	 * REPLAY_FAILED = The replay file could not be written (presses in the replay)
+	 * NO_SPRITES = The images could not be read into a sprite atlas (images wanted)
+	 * NO_BUFFER_STRATEGY = The canvas has no BufferStrategy, so the fallback renderer is used (buffers asked for)
+	 */
+	public static final int NO_IMAGE = 1;
+	public static final int CANVAS_LOST = 2;
+	public static final int PAINT_FAILED = 3;
+	public static final int KEY_DROPPED = 4;
+	public static final int REPLAY_FAILED = 5;
+	public static final int NO_SPRITES = 6;
+	public static final int NO_BUFFER_STRATEGY = 7;
+	
+	// Names of the lanes, for printing
+	public static final String[] LANE_NAMES = {"?", "Left", "Down", "Up", "Right"};
+	
+	// Names of the errors, for printing
+	public static final String[] ERROR_NAMES = {
+		"?", "NoImage", "CanvasLost", "PaintFailed", "KeyDropped", "ReplayFailed", "NoSprites", "NoBufferStrategy"
+	};
+	
+	// "CBEL" in ASCII
+	public static final int MAGIC = 0x4342454C;
+	
+	// The version of the format written
+	public static final short VERSION = 1;
+	
+	// Sizes in the file, in bytes
+	public static final int HEADER_SIZE = 24;
+	public static final int RECORD_SIZE = 32;
+	
+	// Most events written in one go, plus a DROPPED event
+	private static final int BATCH = 1024;
+	
+	// How long the drainer waits when the ring is empty, in ns
+	private static final long DRAIN_INTERVAL = 10000000L;
+	
+	// The ring of events, one slot each
+	private final AtomicLongArray sequences;
+	private final long[] times;
+	private final int[] types;
+	private final int[] as;
+	private final int[] bs;
+	private final int[] cs;
+	private final long[] values;
+	private final int mask;
+	
+	// Next slot to claim, moved by any logging thread
+	private final AtomicLong tail = new AtomicLong();
+	
+	// Next slot to drain, only moved by the drainer
+	private long head = 0L;
+	
+	// Events lost because the ring was full, and how many of those were written
+	private final AtomicLong dropped = new AtomicLong();
+	private long droppedWritten = 0L;
+	
+	// Where events go (null for the console) and the buffer a batch is written from
+	private FileChannel file = null;
+	private ByteBuffer batch = null;
+	
+	// The thread draining the ring
+	private Thread drainer = null;
+	private volatile boolean closed = false;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a log with room for at least the given
+	 * number of events waiting to be written.
+	 * 
+	 * @param capacity The number of events the ring can hold.
+	 */
+	public EventLog(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		
+		this.sequences = new AtomicLongArray(size);
+		this.times = new long[size];
+		this.types = new int[size];
+		this.as = new int[size];
+		this.bs = new int[size];
+		this.cs = new int[size];
+		this.values = new long[size];
+		this.mask = size - 1;
+		
+		for (int i = 0; i < size; i++)
+			this.sequences.set(i, i);
+	} // End EventLog(int)
+	// End Constructor(s)
+	
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 1) {
+			System.err.println("Usage: java core.EventLog events.cbel");
+			System.exit(1);
+		}
+		
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(argv[0])));
+		
+		if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC)
+			throw new IOException(argv[0] + " is not an event log");
+		
+		short version = in.getShort();
+		int recordSize = in.getShort();
+		
+		if (version != VERSION || recordSize < RECORD_SIZE)
+			throw new IOException(argv[0] + " is version " + version + ", only version " + VERSION + " can be read");
+		
+		long startNanos = in.getLong();
+		long startMillis = in.getLong();
+		
+		System.out.println("Started at " + new Date(startMillis));
+		
+		while (in.remaining() >= recordSize) {
+			int start = in.position();
+			long time = in.getLong();
+			int type = in.getInt();
+			int a = in.getInt();
+			int b = in.getInt();
+			int c = in.getInt();
+			long value = in.getLong();
+			
+			System.out.printf("%12.3f ms  %s%n", (time - startNanos) / 1e6, describe(type, a, b, c, value));
+			in.position(start + recordSize);
+		} // End while
+	} // End main()
+	
+	/**
+	 * Starts writing events to a file in the background. The file is
+	 * written to the end when the JVM exits.
+	 * 
+	 * @param filename The .cbel file to write, or "-" for text on the console.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public void start(String filename) throws IOException {
+		if (!filename.equals("-")) {
+			this.file = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.batch = ByteBuffer.allocateDirect((BATCH + 1) * RECORD_SIZE);
+			
+			this.batch.putInt(MAGIC);
+			this.batch.putShort(VERSION);
+			this.batch.putShort((short) RECORD_SIZE);
+			this.batch.putLong(System.nanoTime());
+			this.batch.putLong(System.currentTimeMillis());
+			writeBatch();
+		} // End if
+		
+		this.drainer = new Thread(this, "Event log");
+		this.drainer.setDaemon(true);
+		this.drainer.start();
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				close();
+			}
+		}, "Event log close"));
+	} // End start()
+	
+	/**
+	 * Logs an event. Any thread may call this; it never blocks.
+	 * 
+	 * @param type The type of event.
+	 * @param a The first number of the event.
+	 * @param b The second number of the event.
+	 * @param c The third number of the event.
+	 * @param value The long number of the event.
+	 * @return True if it was logged, false if the ring was full.
+	 */
+	public boolean log(int type, int a, int b, int c, long value) {
+		long now = System.nanoTime();
+		long pos = this.tail.get();
+		int slot;
+		
+		// Claiming a slot whose last event has been drained
+		while (true) {
+			slot = (int) pos & this.mask;
+			long ahead = this.sequences.get(slot) - pos;
+			
+			if (ahead == 0L) {
+				if (this.tail.compareAndSet(pos, pos + 1))
+					break;
+				
+				pos = this.tail.get();
+			}
+			else if (ahead < 0L) {
+				this.dropped.incrementAndGet();
+				return false;
+			}
+			else
+				pos = this.tail.get();
+		} // End while
+		
+		this.times[slot] = now;
+		this.types[slot] = type;
+		this.as[slot] = a;
+		this.bs[slot] = b;
+		this.cs[slot] = c;
+		this.values[slot] = value;
+		
+		// Publishes the slot to the drainer
+		this.sequences.lazySet(slot, pos + 1);
+		
+		return true;
+	} // End log()
+	
+	/**
+	 * Logs an error.
+	 * 
+	 * @param error The error.
+	 * @param value A number about the error.
+	 * @return True if it was logged, false if the ring was full.
+	 */
+	public boolean error(int error, long value) {
+		return log(ERROR, error, 0, 0, value);
+	} // End error()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		while (!this.closed) {
+			if (drain() == 0)
+				LockSupport.parkNanos(DRAIN_INTERVAL);
+		} // End while
+	} // End run()
+	
+	/**
+	 * Writes out every event logged so far and stops the drainer.
+	 */
+	public synchronized void close() {
+		if (this.closed)
+			return;
+		
+		this.closed = true;
+		
+		if (this.drainer != null) {
+			LockSupport.unpark(this.drainer);
+			
+			try {
+				this.drainer.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			// Anything logged while the drainer stopped
+			while (drain() > 0);
+		} // End if
+		
+		try {
+			if (this.file != null)
+				this.file.close();
+		}
+		catch (IOException e) {
+			System.err.println("Could not close event log: " + e.getMessage());
+		}
+	} // End close()
+	
+	/**
+	 * Writes out one batch of events. Only the drainer may call this.
+	 * 
+	 * @return An int of the number of events written.
+	 */
+	private int drain() {
+		int n = 0;
+		long lost = this.dropped.get();
+		
+		if (lost != this.droppedWritten) {
+			write(System.nanoTime(), DROPPED, 0, 0, 0, lost - this.droppedWritten);
+			this.droppedWritten = lost;
+		}
+		
+		while (n < BATCH) {
+			int slot = (int) this.head & this.mask;
+			
+			if (this.sequences.get(slot) != this.head + 1)
+				break;
+			
+			write(this.times[slot], this.types[slot], this.as[slot], this.bs[slot], this.cs[slot], this.values[slot]);
+			
+			// Frees the slot for the lap after this one
+			this.sequences.lazySet(slot, this.head + this.mask + 1);
+			this.head++;
+			n++;
+		} // End while
+		
+		try {
+			if (this.file != null)
+				writeBatch();
+		}
+		catch (IOException e) {
+			System.err.println("Could not write event log: " + e.getMessage());
+		}
+		
+		return n;
+	} // End drain()
+	
+	/**
+	 * Adds an event to the batch being written.
+	 * 
+	 * @param time The System.nanoTime() of the event.
+	 * @param type The type of event.
+	 * @param a The first number of the event.
+	 * @param b The second number of the event.
+	 * @param c The third number of the event.
+	 * @param value The long number of the event.
+	 */
+	private void write(long time, int type, int a, int b, int c, long value) {
+		if (this.file == null) {
+			System.out.println(describe(type, a, b, c, value));
+			return;
+		}
+		
+		this.batch.putLong(time);
+		this.batch.putInt(type);
+		this.batch.putInt(a);
+		this.batch.putInt(b);
+		this.batch.putInt(c);
+		this.batch.putLong(value);
+	} // End write()
+	
+	/**
+	 * Writes the batch to the file and empties it.
+	 * 
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void writeBatch() throws IOException {
+		this.batch.flip();
+		
+		while (this.batch.hasRemaining())
+			this.file.write(this.batch);
+		
+		this.batch.clear();
+	} // End writeBatch()
+	
+	/**
+	 * Describes an event as a line of text.
+	 * 
+	 * @param type The type of event.
+	 * @param a The first number of the event.
+	 * @param b The second number of the event.
+	 * @param c The third number of the event.
+	 * @param value The long number of the event.
+	 * @return A String describing the event.
+	 */
+	public static String describe(int type, int a, int b, int c, long value) {
+		switch (type) {
+			case HIT:
+				return "Hit player " + (a + 1) + " " + laneName(b) + ": " + c + " at " + value + " ms";
+			case EMPTY_PRESS:
+				return "EmptyPress player " + (a + 1) + " " + laneName(b) + " at " + value + " ms";
+			case MISS:
+				return "Miss player " + (a + 1) + ": " + b + " by " + value + " ms";
+			case LATE_FRAME:
+				return "LateFrame by " + (value / 1000) + " us";
+			case FRAME_STATS:
+				return "FrameStats " + ((a >= 0 && a < FrameStats.PHASE_NAMES.length) ? FrameStats.PHASE_NAMES[a] : "?")
+						+ " p99 " + (value / 1000) + " us";
+			case ERROR:
+				return "Error " + ((a > 0 && a < ERROR_NAMES.length) ? ERROR_NAMES[a] : "?") + " " + value;
+			case DROPPED:
+				return "Dropped " + value + " events";
+			case RELOAD:
+				return "Reload +" + a + " -" + b + " notes in " + (value / 1000) + " us";
+			case REPLAY_SAVED:
+				return "ReplaySaved " + a + " presses, " + b + " hits, " + c + " misses, score " + value;
+			default:
+				return "Event " + type + " " + a + " " + b + " " + c + " " + value;
+		} // End switch
+	} // End describe()
+	
+	/**
+	 * Gets the name of a lane.
+	 * 
+	 * @param lane The lane, from 1.
+	 * @return A String of the name.
+	 */
+	private static String laneName(int lane) {
+		return (lane > 0 && lane < LANE_NAMES.length) ? LANE_NAMES[lane] : LANE_NAMES[0];
+	} // End laneName()
+	
+	/**
+	 * Gets the number of events lost because the ring was full.
+	 * 
+	 * @return A long of the dropped events.
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	} // End getDropped()
+} // End EventLog class
@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * The FramePacer interface waits out the rest of a frame. The game
+ * loop works out when the next frame is due and hands that time to
+ * the pacer, which decides how to wait for it.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public interface FramePacer {
+	/**
+	 * Waits until a System.nanoTime() deadline.
+	 * 
+	 * @param deadline The System.nanoTime() the next frame is due at.
+	 * @return A long of the System.nanoTime() the wait ended at.
+	 */
+	public long waitUntil(long deadline);
+} // End FramePacer interface
@@ -0,0 +1,283 @@
+package core;
+
+/**
+ * The FrameSnapshot class holds what the renderer needs from one game
+ * tick: the chart time of the tick and the notes near the screen that
+ * are still waiting to be hit, along with holds that were hit and have
+ * not ended. Notes are kept by how far the notes will have scrolled
+ * when they reach the top arrows, and the tick by how far they have
+ * scrolled and how fast they are moving, so the renderer can place
+ * them at any time after the tick, not only at the tick itself.
+ * 
+ * Snapshots are reused. The update thread fills one in and publishes
+ * it through a SnapshotBuffer; once published it is not changed until
+ * the render thread has let go of it, so the renderer sees it as
+ * immutable.
+ * 
+ * With more than one player, the notes of each player follow on from
+ * those of the player before, and getFirst() and getEnd() give where
+ * each player's notes are.
+ * 
+ * @version 1.3
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class FrameSnapshot {
+	// Tile size for the game
+	private static final int TILE_SIZE = 50;
+	
+	// Notes the arrays start with room for
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	// The chart time of the tick, in ms, and when it was published
+	private long time = 0L;
+	private long publishTime = 0L;
+	
+	// How far the notes have scrolled at the tick, in pixels, and how fast they move, in pixels per ms
+	private double scroll = 0;
+	private double scrollRate = 0;
+	
+	// The waiting notes and unfinished holds near the screen, of every player
+	private int[] lanes = new int[DEFAULT_CAPACITY];
+	private double[] scrolls = new double[DEFAULT_CAPACITY];
+	private double[] endScrolls = new double[DEFAULT_CAPACITY];
+	private boolean[] held = new boolean[DEFAULT_CAPACITY];
+	private int count = 0;
+	
+	// Where the notes of each player end
+	private int[] ends = new int[1];
+	
+	// Score keeping of each player at the tick
+	private long[] scores = new long[1];
+	private int[] hits = new int[1];
+	private int[] misses = new int[1];
+	
+	/**
+	 * Fills in the snapshot from the engine. Only the update thread
+	 * may call this, on a snapshot it owns.
+	 * 
+	 * @param engine The engine after its update for this tick.
+	 */
+	public void capture(GameEngine engine) {
+		int playerCount = engine.getPlayerCount();
+		
+		if (this.ends.length != playerCount) {
+			this.ends = new int[playerCount];
+			this.scores = new long[playerCount];
+			this.hits = new int[playerCount];
+			this.misses = new int[playerCount];
+		}
+		
+		int n = 0;
+		
+		for (int p = 0; p < playerCount; p++) {
+			Player player = engine.getPlayer(p);
+			n = captureNotes(player.getNotes(), n);
+			
+			this.ends[p] = n;
+			this.scores[p] = player.getScore();
+			this.hits[p] = player.getHits();
+			this.misses[p] = player.getMisses();
+		} // End for
+		
+		TimingMap timing = engine.getNotes().getTiming();
+		
+		this.count = n;
+		this.time = engine.getTime();
+		this.scroll = timing.getScrollPosition(this.time);
+		this.scrollRate = timing.getScrollRate(this.time);
+		this.publishTime = System.nanoTime();
+	} // End capture()
+	
+	/**
+	 * Copies the notes still on screen of one player: the ones not
+	 * hit yet, missed or not, and the holds that are being held.
+	 * 
+	 * @param notes The notes as the player has played them.
+	 * @param n Where to copy the first note to.
+	 * @return An int of where the next player's notes go.
+	 */
+	private int captureNotes(NoteStore notes, int n) {
+		int first = notes.getFirstDrawn();
+		int end = notes.getActiveEnd();
+		long now = notes.getNow();
+		
+		// Only grows when more notes are on screen than ever before
+		if (n + end - first > this.lanes.length) {
+			int capacity = Math.max(n + end - first, this.lanes.length * 2);
+			this.lanes = Arrays.copyOf(this.lanes, capacity);
+			this.scrolls = Arrays.copyOf(this.scrolls, capacity);
+			this.endScrolls = Arrays.copyOf(this.endScrolls, capacity);
+			this.held = Arrays.copyOf(this.held, capacity);
+		}
+		
+		for (int i = first; i < end; i++) {
+			int state = notes.getState(i);
+			
+			// Holds stay until their end reaches the top arrows, once their start is hit
+			if ((state == NoteStore.HIT && notes.getEndTime(i) <= now) || notes.isOffScreen(i))
+				continue;
+			
+			this.lanes[n] = notes.getLane(i);
+			this.scrolls[n] = notes.getScroll(i);
+			this.endScrolls[n] = notes.getEndScroll(i);
+			this.held[n] = (state == NoteStore.HIT);
+			n++;
+		} // End for
+		
+		return n;
+	} // End captureNotes()
+	
+	/**
+	 * Gets the chart time of the tick.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getTime() {
+		return this.time;
+	} // End getTime()
+	
+	/**
+	 * Gets when the snapshot was published.
+	 * 
+	 * @return A long of the System.nanoTime() it was published at.
+	 */
+	public long getPublishTime() {
+		return this.publishTime;
+	} // End getPublishTime()
+	
+	/**
+	 * Gets the number of waiting notes near the screen, of every player.
+	 * 
+	 * @return An int of the number of notes.
+	 */
+	public int size() {
+		return this.count;
+	} // End size()
+	
+	/**
+	 * Gets the number of players.
+	 * 
+	 * @return An int of the number of players.
+	 */
+	public int getPlayerCount() {
+		return this.ends.length;
+	} // End getPlayerCount()
+	
+	/**
+	 * Gets the first note of a player.
+	 * 
+	 * @param player The player, from 0.
+	 * @return The index in the snapshot of the player's first note.
+	 */
+	public int getFirst(int player) {
+		return (player == 0) ? 0 : this.ends[player - 1];
+	} // End getFirst()
+	
+	/**
+	 * Gets the end of the notes of a player.
+	 * 
+	 * @param player The player, from 0.
+	 * @return The index in the snapshot after the player's last note.
+	 */
+	public int getEnd(int player) {
+		return this.ends[player];
+	} // End getEnd()
+	
+	/**
+	 * Gets the direction of a note.
+	 * 
+	 * @param i The index of the note in the snapshot.
+	 * @return An int representing the note's direction.
+	 */
+	public int getLane(int i) {
+		return this.lanes[i];
+	} // End getLane()
+	
+	/**
+	 * Gets the x-coord of a note.
+	 * 
+	 * @param i The index of the note in the snapshot.
+	 * @return An int of the x-coord.
+	 */
+	public int getXCoord(int i) {
+		return (this.lanes[i] * TILE_SIZE) - TILE_SIZE;
+	} // End getXCoord()
+	
+	/**
+	 * Gets how far the notes have scrolled at a chart time, going on
+	 * at the speed of the tick.
+	 * 
+	 * @param at The chart time, in ms, which can fall between ms.
+	 * @return A double of the scroll position in pixels.
+	 */
+	public double getScrollAt(double at) {
+		return this.scroll + ((at - this.time) * this.scrollRate);
+	} // End getScrollAt()
+	
+	/**
+	 * Gets the y-coord of a note at a scroll position.
+	 * 
+	 * @param i The index of the note in the snapshot.
+	 * @param scroll How far the notes have scrolled, from getScrollAt().
+	 * @return An int of the y-coord.
+	 */
+	public int getYCoord(int i, double scroll) {
+		return NoteStore.TARGET_Y + (int) (this.scrolls[i] - scroll);
+	} // End getYCoord()
+	
+	/**
+	 * Gets the y-coord of the end of a note at a scroll position.
+	 * 
+	 * @param i The index of the note in the snapshot.
+	 * @param scroll How far the notes have scrolled, from getScrollAt().
+	 * @return An int of the y-coord, the same as the note's if it is not a hold.
+	 */
+	public int getEndYCoord(int i, double scroll) {
+		return NoteStore.TARGET_Y + (int) (this.endScrolls[i] - scroll);
+	} // End getEndYCoord()
+	
+	/**
+	 * Checks if a note is a hold whose start was hit, so only what is
+	 * left of the hold is drawn.
+	 * 
+	 * @param i The index of the note in the snapshot.
+	 * @return True if the hold is being held.
+	 */
+	public boolean isHeld(int i) {
+		return this.held[i];
+	} // End isHeld()
+	
+	/**
+	 * Gets the score of a player at the tick.
+	 * 
+	 * @param player The player, from 0.
+	 * @return A long of the score.
+	 */
+	public long getScore(int player) {
+		return this.scores[player];
+	} // End getScore()
+	
+	/**
+	 * Gets the number of notes a player hit by the tick.
+	 * 
+	 * @param player The player, from 0.
+	 * @return An int of the hits.
+	 */
+	public int getHits(int player) {
+		return this.hits[player];
+	} // End getHits()
+	
+	/**
+	 * Gets the number of notes a player missed by the tick.
+	 * 
+	 * @param player The player, from 0.
+	 * @return An int of the misses.
+	 */
+	public int getMisses(int player) {
+		return this.misses[player];
+	} // End getMisses()
+} // End FrameSnapshot class
@@ -0,0 +1,246 @@
+package core;
+
+/**
+ * The FrameStats class keeps how long each phase of the game loop
+ * takes, plus how long key presses wait to be judged, in one
+ * LatencyHistogram per phase. It can be registered as an MBean so the
+ * numbers can be watched through JMX while the game runs.
+ * 
+ * Each phase is recorded by one thread: UPDATE and INPUT by the update
+ * thread and the rest by the render thread. JMX reads from its own
+ * threads and so sees the histograms a few values behind at most. A
+ * reset asked for through JMX is carried out by each thread for its
+ * own phases, on its next tick or frame, so no histogram is reset
+ * while another thread is recording into it.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class FrameStats implements FrameStatsMBean {
+	// The phases that are timed
+	public static final int FRAME = 0;       // from one frame to the next
+	public static final int UPDATE = 1;      // gameUpdate()
+	public static final int RENDER = 2;      // gameRender()
+	public static final int PAINT = 3;       // paintScreen()
+	public static final int OVER_SLEEP = 4;  // sleeping longer than asked
+	public static final int INPUT = 5;       // key press to judgement
+	
+	// Names of the phases, as used through JMX
+	public static final String[] PHASE_NAMES = {"Frame", "Update", "Render", "Paint", "OverSleep", "Input"};
+	
+	// The phases each thread records, and so resets
+	public static final int[] UPDATE_PHASES = {UPDATE, INPUT};
+	public static final int[] RENDER_PHASES = {FRAME, RENDER, PAINT, OVER_SLEEP};
+	
+	// The name the stats are registered under
+	public static final String OBJECT_NAME = "core:type=FrameStats";
+	
+	// One histogram of ns for each phase
+	private final LatencyHistogram[] phases = new LatencyHistogram[PHASE_NAMES.length];
+	
+	// Frames that took longer than the frame period
+	private volatile long lateFrames = 0L;
+	
+	// Moved on by each reset asked for through JMX
+	private volatile int resets = 0;
+	
+	// The reset each phase was last cleared for, only changed by the thread recording it
+	private final int[] phaseResets = new int[PHASE_NAMES.length];
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates empty stats.
+	 */
+	public FrameStats() {
+		for (int p = 0; p < this.phases.length; p++)
+			this.phases[p] = new LatencyHistogram();
+	} // End FrameStats()
+	// End Constructor(s)
+	
+	/**
+	 * Registers the stats with the platform MBean server.
+	 * 
+	 * @throws JMException If they cannot be registered.
+	 */
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+		
+		server.registerMBean(this, name);
+	} // End register()
+	
+	/**
+	 * Records how long a phase took. Only the thread that records the
+	 * phase (see UPDATE_PHASES and RENDER_PHASES) may call this.
+	 * 
+	 * @param phase The phase, like UPDATE.
+	 * @param nanos How long it took, in ns.
+	 */
+	public void record(int phase, long nanos) {
+		this.phases[phase].record(nanos);
+	} // End record()
+	
+	/**
+	 * Counts a frame that took longer than the frame period. Only the
+	 * render thread may call this, and the count is reset with FRAME.
+	 */
+	public void lateFrame() {
+		this.lateFrames = this.lateFrames + 1;
+	} // End lateFrame()
+	
+	/**
+	 * Carries out a reset asked for through JMX on the phases of the
+	 * calling thread. Each thread calls this with its own phases,
+	 * between ticks or frames.
+	 * 
+	 * @param own The phases the calling thread records, like UPDATE_PHASES.
+	 */
+	public void applyReset(int[] own) {
+		int wanted = this.resets;
+		
+		for (int i = 0; i < own.length; i++) {
+			int p = own[i];
+			
+			if (this.phaseResets[p] == wanted)
+				continue;
+			
+			this.phases[p].reset();
+			this.phaseResets[p] = wanted;
+			
+			if (p == FRAME)
+				this.lateFrames = 0L;
+		} // End for
+	} // End applyReset()
+	
+	/**
+	 * Gets the histogram of a phase.
+	 * 
+	 * @param phase The phase, like UPDATE.
+	 * @return The LatencyHistogram of the phase, in ns.
+	 */
+	public LatencyHistogram getHistogram(int phase) {
+		return this.phases[phase];
+	} // End getHistogram()
+	
+	/**
+	 * Gets a percentile of a phase in microseconds.
+	 * 
+	 * @param phase The phase, like UPDATE.
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return A long of the time in microseconds.
+	 */
+	private long micros(int phase, double percentile) {
+		return this.phases[phase].getPercentile(percentile) / 1000L;
+	} // End micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getFrameCount()
+	 */
+	public long getFrameCount() {
+		return this.phases[FRAME].getCount();
+	} // End getFrameCount()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getLateFrames()
+	 */
+	public long getLateFrames() {
+		return this.lateFrames;
+	} // End getLateFrames()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getFrameP99Micros()
+	 */
+	public long getFrameP99Micros() {
+		return micros(FRAME, 99);
+	} // End getFrameP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getFrameMaxMicros()
+	 */
+	public long getFrameMaxMicros() {
+		return this.phases[FRAME].getMax() / 1000L;
+	} // End getFrameMaxMicros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getUpdateP99Micros()
+	 */
+	public long getUpdateP99Micros() {
+		return micros(UPDATE, 99);
+	} // End getUpdateP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getRenderP99Micros()
+	 */
+	public long getRenderP99Micros() {
+		return micros(RENDER, 99);
+	} // End getRenderP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getPaintP99Micros()
+	 */
+	public long getPaintP99Micros() {
+		return micros(PAINT, 99);
+	} // End getPaintP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getOverSleepP99Micros()
+	 */
+	public long getOverSleepP99Micros() {
+		return micros(OVER_SLEEP, 99);
+	} // End getOverSleepP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getInputP99Micros()
+	 */
+	public long getInputP99Micros() {
+		return micros(INPUT, 99);
+	} // End getInputP99Micros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#getInputMaxMicros()
+	 */
+	public long getInputMaxMicros() {
+		return this.phases[INPUT].getMax() / 1000L;
+	} // End getInputMaxMicros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#percentileMicros(String, double)
+	 */
+	public long percentileMicros(String phase, double percentile) {
+		for (int p = 0; p < PHASE_NAMES.length; p++)
+			if (PHASE_NAMES[p].equalsIgnoreCase(phase))
+				return micros(p, percentile);
+		
+		throw new IllegalArgumentException("no phase " + phase);
+	} // End percentileMicros()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.FrameStatsMBean#reset()
+	 */
+	public synchronized void reset() {
+		this.resets = this.resets + 1;
+	} // End reset()
+} // End FrameStats class
@@ -0,0 +1,75 @@
+package core;
+
+/**
+ * The FrameStatsMBean interface is what the FrameStats of a running
+ * game shows through JMX (for example in JConsole, under
+ * core:type=FrameStats). Times are in microseconds.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public interface FrameStatsMBean {
+	/**
+	 * @return A long of the number of frames run.
+	 */
+	public long getFrameCount();
+	
+	/**
+	 * @return A long of the frames that took longer than the frame period.
+	 */
+	public long getLateFrames();
+	
+	/**
+	 * @return A long of the 99th percentile time from one frame to the next.
+	 */
+	public long getFrameP99Micros();
+	
+	/**
+	 * @return A long of the longest time from one frame to the next.
+	 */
+	public long getFrameMaxMicros();
+	
+	/**
+	 * @return A long of the 99th percentile time to update the game.
+	 */
+	public long getUpdateP99Micros();
+	
+	/**
+	 * @return A long of the 99th percentile time to draw a frame.
+	 */
+	public long getRenderP99Micros();
+	
+	/**
+	 * @return A long of the 99th percentile time to put a frame on screen.
+	 */
+	public long getPaintP99Micros();
+	
+	/**
+	 * @return A long of the 99th percentile time slept past the time asked for.
+	 */
+	public long getOverSleepP99Micros();
+	
+	/**
+	 * @return A long of the 99th percentile time from a key press to its judgement.
+	 */
+	public long getInputP99Micros();
+	
+	/**
+	 * @return A long of the longest time from a key press to its judgement.
+	 */
+	public long getInputMaxMicros();
+	
+	/**
+	 * Gets any percentile of a phase.
+	 * 
+	 * @param phase One of Frame, Update, Render, Paint, OverSleep or Input.
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return A long of the time in microseconds.
+	 */
+	public long percentileMicros(String phase, double percentile);
+	
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	public void reset();
+} // End FrameStatsMBean interface
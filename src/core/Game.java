@@ -10,70 +10,366 @@ package core;
  */
 
 // Import statements
+import javax.management.JMException;
+import javax.sound.sampled.LineUnavailableException;
 import javax.swing.JFrame;
 import java.awt.Container;
+import java.awt.Toolkit;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class Game extends JFrame implements WindowListener {
 	
 	private static final int TILE_SIZE = 50;
-	private static final int FPS = 80;
+	
+	// Frames per second, set with -Dcbr.fps=... (0 = uncapped)
+	private static final int FPS = Integer.getInteger("cbr.fps", 80);
+	
+	/*
+	 * How the rest of each frame is waited out, set with -Dcbr.pacer=...
+	 * adaptive = Park then spin, learning how late parking wakes (default)
+	 * sleep = Thread.sleep() in whole ms
+	 */
+	private static final String PACER = System.getProperty("cbr.pacer", "adaptive");
+	
+	/*
+	 * Which renderer to use, set with -Dcbr.renderer=...
+	 * canvas = Page flipping BufferStrategy (default)
+	 * panel = Offscreen image copied onto the panel
+	 */
+	private static final String RENDERER = System.getProperty("cbr.renderer", "canvas");
+	
+	/*
+	 * Which clock times the chart, set with -Dcbr.clock=...
+	 * audio = Frame position of the audio output (default)
+	 * system = System.nanoTime()
+	 */
+	private static final String CLOCK = System.getProperty("cbr.clock", "audio");
+	
+	// Draws the frame stats over the game, set with -Dcbr.overlay=true
+	private static final boolean OVERLAY = Boolean.getBoolean("cbr.overlay");
+	
+	// Number of players side by side, set with -Dcbr.players=... (player 2 uses WASD)
+	private static final int PLAYERS = Integer.getInteger("cbr.players", 1);
+	
+	// Plays every save of the chart file without restarting, set with -Dcbr.watch=true
+	private static final boolean WATCH = Boolean.getBoolean("cbr.watch");
+	
+	// Folder replays are saved in, set with -Dcbr.replays=... (empty = no replays)
+	private static final String REPLAYS = System.getProperty("cbr.replays", "replays");
+	
+	/*
+	 * Where hits, misses, frame stats and errors are logged, set with -Dcbr.events=...
+	 * - = Lines of text on the console, written in the background (default)
+	 * file.cbel = Binary records, read back with java core.EventLog file.cbel
+	 * (empty) = Not written
+	 */
+	private static final String EVENTS = System.getProperty("cbr.events", "-");
+	
+	// Number of events that can wait to be written
+	private static final int EVENT_CAPACITY = 65536;
+	
+	// Number of sounds that can play at once
+	private static final int VOICES = 16;
+	
+	// The sound played when a note is hit
+	private static final String HIT_SOUND = "Clips/explosion.wav";
 	
 	private GamePanel gp;	
-	private static ArrayList<Arrow> arrows;
+	private String mapFile;
+	private String mapName;
+	private AudioEngine audio;
 	
 	/**
-	 * The main of jBomber that takes in a map to play on.
+	 * The main of jBomber that takes in a map to play on, or a
+	 * folder of maps to pick one from.
 	 * 
-	 * @param argv A .cbm file to be parsed into a map to play.
+	 * @param argv A .cbm (or compiled .cbmc) file to be loaded into a map to play, or a folder of them.
 	 */
 	public static void main(String[] argv) {
-		long period = (long) 1000.0/FPS;
+		if (new File(argv[0]).isDirectory())
+			SongSelect.open(argv[0]);
+		else
+			play(argv[0]);
+	} // End main
+	
+	/**
+	 * Loading a map and playing it. The map, images and sound are
+	 * all loaded at once by a StartupLoader, and the game only
+	 * starts once they are ready.
+	 * 
+	 * @param mapFile A .cbm (or compiled .cbmc) file to be loaded into a map to play.
+	 */
+	public static void play(final String mapFile) {
+		long period = (FPS > 0) ? 1000000000L / FPS : 0L;
+		final AssetManager assets = new AssetManager();
+		final AudioEngine audio = CLOCK.equals("system") ? null : new AudioEngine(VOICES);
+		StartupLoader loader = new StartupLoader();
+		
+		// Parsing (or mapping) the map
+		Future<NoteStore> chart = loader.submit("chart", new Callable<NoteStore>() {
+			public NoteStore call() throws IOException {
+				return new MapParser().loadNotes(mapFile);
+			}
+		});
+		
+		// Decoding the images
+		GamePanel.preloadImages(loader, assets);
+		
+		// Opening the sound device and decoding the hit sound
+		Future<Boolean> device = null;
+		Future<Integer> hitClip = null;
+		
+		if (audio != null) {
+			device = loader.submit("sound device", new Callable<Boolean>() {
+				public Boolean call() throws LineUnavailableException {
+					audio.start();
+					return Boolean.TRUE;
+				}
+			});
+			
+			hitClip = loader.submit("audio", new Callable<Integer>() {
+				public Integer call() throws IOException {
+					return audio.loadClip(assets, HIT_SOUND);
+				}
+			});
+		} // End if
+		
+		// Starting up the window system while the rest loads
+		loader.submit("toolkit", new Callable<Toolkit>() {
+			public Toolkit call() {
+				return Toolkit.getDefaultToolkit();
+			}
+		});
 		
-		// Trying to parse the map
 		try {
-			MapParser mp = new MapParser();
-			arrows = mp.parseInArrows(argv[0]);
+			loader.awaitAll(System.out);
 		}
-		catch (Exception e) {
-			System.err.print(e.getMessage());
+		catch (InterruptedException e) {
+			return;
 		}
 		
+		NoteStore notes = loaded(chart, "Could not load map");
+		
+		if (notes == null)
+			System.exit(-1);
+		
+		if (device != null)
+			loaded(device, "No sound device, timing by the system clock");
+		
+		Integer hitSound = (hitClip != null) ? loaded(hitClip, "Could not load hit sound") : null;
+		
 		// Creating a new game with the boxes and period
-		new Game(/*map,*/ arrows, period*1000000L);
-	} // End main
+		new Game(/*map,*/ notes, period, mapFile, assets, audio,
+				(hitSound != null) ? hitSound.intValue() : -1, loader);
+	} // End play
+	
+	/**
+	 * Getting what a startup task loaded, telling the user
+	 * if it failed.
+	 * 
+	 * @param task The task handed to the StartupLoader.
+	 * @param failure What to tell the user if it failed.
+	 * @return What was loaded, or null if the task failed.
+	 */
+	private static <T> T loaded(Future<T> task, String failure) {
+		try {
+			return task.get();
+		}
+		catch (ExecutionException e) {
+			System.err.println(failure + ": " + e.getCause().getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		return null;
+	} // End loaded
 	
 	/**
 	 * Creating the game for jBomber.
 	 * 
-	 * @param boxes An ArrayList of all the boxes found.
-	 * @param period A long of the FPS.
+	 * @param notes A NoteStore of all the notes found.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 */
+	public Game(/*char[][] map,*/ NoteStore notes, long period) {
+		this(notes, period, null);
+	} // End Game(map)
+	
+	/**
+	 * Creating the game for jBomber, saving a replay named after the map.
+	 * 
+	 * @param notes A NoteStore of all the notes found.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param mapName The file name of the map, or null to save no replay.
 	 */
-	public Game(/*char[][] map,*/ ArrayList<Arrow> boxes, long period) {
+	public Game(/*char[][] map,*/ NoteStore notes, long period, String mapName) {
+		this(notes, period, mapName, new AssetManager(), null, -1, null);
+	} // End Game(map, name)
+	
+	/**
+	 * Creating the game for jBomber from what a StartupLoader
+	 * has already loaded.
+	 * 
+	 * @param notes A NoteStore of all the notes found.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param mapFile The path of the map, or null to save no replay.
+	 * @param assets The AssetManager the images were decoded into.
+	 * @param audio The sound engine, or null to open one here if the chart is timed by audio.
+	 * @param hitSound The id of the hit sound in the engine, or -1 for none.
+	 * @param loader The loader that timed startup, or null.
+	 */
+	public Game(NoteStore notes, long period, String mapFile, AssetManager assets, AudioEngine audio, int hitSound, StartupLoader loader) {
 		super("CircleBear Revolution - By CircleBear");
-		setUpGUI(/*map,*/ arrows, period);
+		this.mapFile = mapFile;
+		this.mapName = (mapFile != null) ? new File(mapFile).getName() : null;
+		this.audio = audio;
+		setUpGUI(/*map,*/ notes, period, assets, hitSound, loader);
 		
 		addWindowListener(this);
 		pack();
 		setResizable(false);
 		setVisible(true);
-	} // End Game(map)
+	} // End Game(map, name, loaded)
 	
 	/**
 	 * Setting up the GUI for jBomber.
 	 * 
-	 * @param boxes An ArrayList of all the boxes found.
-	 * @param period A long of the FPS.
+	 * @param notes A NoteStore of all the notes found.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param assets The AssetManager the images are decoded into.
+	 * @param hitSound The id of the hit sound in the engine, or -1 for none.
+	 * @param loader The loader that timed startup, or null.
 	 */
-	private void setUpGUI(/*char[][] map,*/ ArrayList<Arrow> boxes, long period) {
+	private void setUpGUI(/*char[][] map,*/ NoteStore notes, long period, AssetManager assets, int hitSound, StartupLoader loader) {
 		Container c = getContentPane();
 		
 		// Creating a new GamePanel for jBomber
-		gp = new GamePanel(this, /*map,*/ arrows, period);
+		gp = new GamePanel(this, /*map,*/ notes, period, createClock(), !RENDERER.equals("panel"), PLAYERS, assets);
+		gp.setStartupLoader(loader);
+		
+		if (audio != null && hitSound != -1)
+			gp.setHitSound(audio, hitSound);
+		
+		gp.setFramePacer(createPacer(period));
+		gp.setOverlay(OVERLAY);
+		gp.setEventLog(createEventLog());
+		
+		if (REPLAYS.length() > 0 && mapName != null)
+			gp.setReplayFile(createReplayFile());
+		
+		if (WATCH && mapFile != null) {
+			try {
+				gp.watchChart(mapFile);
+			}
+			catch (IOException e) {
+				System.err.println("Could not watch " + mapFile + ": " + e.getMessage());
+			}
+		} // End if
+		
 		c.add("Center", gp);
+		
+		// Letting the frame stats be watched through JMX
+		try {
+			gp.getFrameStats().register();
+		}
+		catch (JMException e) {
+			System.err.println("Could not register frame stats: " + e.getMessage());
+		}
 	} // End setUpGUI
+	
+	/**
+	 * Creating what waits out the rest of each frame.
+	 * 
+	 * @param period A long of the time between frames in ns.
+	 * @return The frame pacer.
+	 */
+	private FramePacer createPacer(long period) {
+		if (period == 0L)
+			return new UncappedPacer();
+		
+		if (PACER.equals("sleep"))
+			return new SleepPacer();
+		
+		return new AdaptivePacer();
+	} // End createPacer
+	
+	/**
+	 * Creating the clock the chart is timed by. The audio
+	 * clock needs a sound device, so the system clock is
+	 * used if there is none. A sound engine handed in has
+	 * already had its device opened by the loader.
+	 * 
+	 * @return The song clock.
+	 */
+	private SongClock createClock() {
+		if (CLOCK.equals("system"))
+			return new SystemClock();
+		
+		if (audio == null) {
+			audio = new AudioEngine(VOICES);
+			
+			try {
+				audio.start();
+			}
+			catch (LineUnavailableException e) {
+				System.err.println("No sound device, timing by the system clock: " + e.getMessage());
+			}
+		} // End if
+		
+		if (!audio.isRunning()) {
+			audio = null;
+			
+			return new SystemClock();
+		}
+		
+		return new AudioClock(audio);
+	} // End createClock
+	
+	/**
+	 * Creating the log of game events, writing it in the
+	 * background unless turned off.
+	 * 
+	 * @return The event log.
+	 */
+	private EventLog createEventLog() {
+		EventLog events = new EventLog(EVENT_CAPACITY);
+		
+		if (EVENTS.length() == 0)
+			return events;
+		
+		try {
+			events.start(EVENTS);
+		}
+		catch (IOException e) {
+			System.err.println("Could not open event log " + e.getMessage());
+		}
+		
+		return events;
+	} // End createEventLog
+	
+	/**
+	 * Creating the name of the file the replay of this game
+	 * is saved to, from the map and the time it started.
+	 * 
+	 * @return A String of the path of the replay.
+	 */
+	private String createReplayFile() {
+		File folder = new File(REPLAYS);
+		folder.mkdirs();
+		
+		String name = mapName.replaceFirst("\\.cbmc?$", "");
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		
+		return new File(folder, name + "-" + stamp + ".cbrr").getPath();
+	} // End createReplayFile
 
 	
 	/* (non-Javadoc)
@@ -0,0 +1,282 @@
+package core;
+
+/**
+ * The GameEngine class runs the logic of a CBR game without any
+ * display. The game is moved forward to a map time in ms, key presses
+ * are handed in with the time they happened at, and every judged press
+ * is passed to a JudgementListener. Presses are judged on their own
+ * time rather than the time of the update that handles them, and
+ * nothing depends on the wall clock, so a map can be played back as
+ * fast as the CPU allows and always gives the same result.
+ * 
+ * Any number of players can play the same map at once. They share its
+ * timeline, and each update moves every player forward in turn on the
+ * calling thread, so an update costs the same per player however many
+ * there are. Methods without a player work on the first player.
+ * 
+ * @version 1.4
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.ArrayList;
+
+public class GameEngine {
+	// Tile size for the game
+	private static final int TILE_SIZE = 50;
+	
+	// The height of the top arrows that notes are judged against
+	public static final int TARGET_Y = NoteStore.TARGET_Y;
+	
+	// Number of lanes (Left, Down, Up, Right)
+	public static final int LANES = NoteIndex.LANES;
+	
+	// The players, each with their own state for every note
+	private Player[] players;
+	
+	// The arrows at the top of the screen
+	private ArrayList<Arrow> topArrows = new ArrayList<Arrow>();
+	
+	// The time of the map the game is at, in ms
+	private long time = 0;
+	
+	// When the last note of the map reaches the top arrows, in ms
+	private long lastNoteTime = 0;
+	
+	// Who is told about judged key presses (may be null)
+	private JudgementListener listener;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates an engine that plays the given notes.
+	 * 
+	 * @param notes The notes of the map.
+	 */
+	public GameEngine(NoteStore notes) {
+		this(notes, 1);
+	} // End GameEngine(NoteStore)
+	
+	/**
+	 * This constructor creates an engine where a number of players
+	 * play the given notes. The first player plays the notes given
+	 * and every other player a copy of them.
+	 * 
+	 * @param notes The notes of the map.
+	 * @param playerCount The number of players, at least 1.
+	 */
+	public GameEngine(NoteStore notes, int playerCount) {
+		// Only the notes near the screen are updated, which needs them in order
+		if (!notes.isSorted())
+			notes.sortByTime();
+		
+		this.players = new Player[Math.max(playerCount, 1)];
+		
+		for (int p = 0; p < this.players.length; p++)
+			this.players[p] = new Player(p, (p == 0) ? notes : notes.copy());
+		
+		for (int i = 0; i < notes.size(); i++)
+			this.lastNoteTime = Math.max(this.lastNoteTime, notes.getTime(i));
+		
+		for (int lane = 1; lane <= LANES; lane++)
+			this.topArrows.add(new Arrow(new Position((lane * TILE_SIZE) - TILE_SIZE, TARGET_Y), lane));
+	} // End GameEngine(NoteStore, int)
+	// End Constructor(s)
+	
+	/**
+	 * Hands in a key press of the first player to be judged at the
+	 * given time. Key presses have to be handed in in order; a press
+	 * for a time the game has already passed is judged on the next
+	 * update.
+	 * 
+	 * @param atTime The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 */
+	public void submitInput(long atTime, int lane) {
+		this.players[0].submitInput(atTime, lane, this.time);
+	} // End submitInput(long, int)
+	
+	/**
+	 * Hands in a key press of a player to be judged at the given time.
+	 * Each player's presses have to be handed in in order.
+	 * 
+	 * @param player The player who pressed, from 0.
+	 * @param atTime The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 */
+	public void submitInput(int player, long atTime, int lane) {
+		this.players[player].submitInput(atTime, lane, this.time);
+	} // End submitInput(int, long, int)
+	
+	/**
+	 * Moves the game forward to the given time. For each player, key
+	 * presses up to that time are judged first, each at the time it
+	 * happened, and then notes that have gone past the top are counted
+	 * as misses.
+	 * 
+	 * @param newTime The time of the map to move to, in ms.
+	 */
+	public void update(long newTime) {
+		this.time = Math.max(this.time, newTime);
+		
+		for (int p = 0; p < this.players.length; p++)
+			this.players[p].update(newTime, this.time, this.listener);
+	} // End update()
+	
+	/**
+	 * Moves the game forward until every note has been hit or gone
+	 * past the top. Since presses are judged on their own time, this
+	 * is done in a single update.
+	 */
+	public void runToEnd() {
+		long end = Math.max(this.time, this.lastNoteTime);
+		
+		for (int p = 0; p < this.players.length; p++)
+			end = Math.max(end, this.players[p].getLastInputTime(end));
+		
+		update(end + getPassTime());
+	} // End runToEnd()
+	
+	/**
+	 * Swaps in a new version of the map for every player between two
+	 * updates. The time of the game and every score are kept.
+	 * 
+	 * @param patch The change to the map, with notes for every player.
+	 */
+	public void applyPatch(ChartPatch patch) {
+		if (patch.getPlayerCount() < this.players.length)
+			throw new IllegalArgumentException("patch has notes for " + patch.getPlayerCount() + " of " + this.players.length + " players");
+		
+		for (int p = 0; p < this.players.length; p++)
+			this.players[p].applyPatch(patch);
+		
+		this.lastNoteTime = patch.getLastTime();
+	} // End applyPatch()
+	
+	/**
+	 * Puts the game back to the start of the map.
+	 */
+	public void reset() {
+		this.time = 0;
+		
+		for (int p = 0; p < this.players.length; p++)
+			this.players[p].reset();
+	} // End reset()
+	
+	/**
+	 * Checks if every player has hit or let past every note.
+	 * 
+	 * @return True if nothing is left to play.
+	 */
+	public boolean isFinished() {
+		for (int p = 0; p < this.players.length; p++) {
+			if (!this.players[p].isFinished())
+				return false;
+		} // End for
+		
+		return true;
+	} // End isFinished()
+	
+	/**
+	 * Sets who is told about judged key presses.
+	 * 
+	 * @param listener The listener, or null for nobody.
+	 */
+	public void setJudgementListener(JudgementListener listener) {
+		this.listener = listener;
+	} // End setJudgementListener()
+	
+	/**
+	 * Sets the replay that key presses of the first player are
+	 * recorded into as they are handed in, along with the time the
+	 * game was at.
+	 * 
+	 * @param recorder The replay to record into, or null to stop recording.
+	 */
+	public void setReplay(Replay recorder) {
+		this.players[0].setReplay(recorder);
+	} // End setReplay()
+	
+	/**
+	 * Gets the number of players.
+	 * 
+	 * @return An int of the number of players.
+	 */
+	public int getPlayerCount() {
+		return this.players.length;
+	} // End getPlayerCount()
+	
+	/**
+	 * Gets a player.
+	 * 
+	 * @param player The player, from 0.
+	 * @return The Player.
+	 */
+	public Player getPlayer(int player) {
+		return this.players[player];
+	} // End getPlayer()
+	
+	/**
+	 * Gets the notes being played, as the first player has played them.
+	 * 
+	 * @return The NoteStore of the map.
+	 */
+	public NoteStore getNotes() {
+		return this.players[0].getNotes();
+	} // End getNotes()
+	
+	/**
+	 * Gets the arrows at the top of the screen.
+	 * 
+	 * @return An arraylist of the top arrows, one per lane.
+	 */
+	public ArrayList<Arrow> getTopArrows() {
+		return this.topArrows;
+	} // End getTopArrows()
+	
+	/**
+	 * Gets the time of the map the game is at.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getTime() {
+		return this.time;
+	} // End getTime()
+	
+	/**
+	 * Gets how long after its time a note goes past the top
+	 * of the screen, which is the same at any scroll speed.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public static long getPassTime() {
+		return NoteStore.PASS_TIME;
+	} // End getPassTime()
+	
+	/**
+	 * Gets the total points scored by the first player.
+	 * 
+	 * @return A long of the score.
+	 */
+	public long getScore() {
+		return this.players[0].getScore();
+	} // End getScore()
+	
+	/**
+	 * Gets the number of notes hit by the first player.
+	 * 
+	 * @return An int of the hits.
+	 */
+	public int getHits() {
+		return this.players[0].getHits();
+	} // End getHits()
+	
+	/**
+	 * Gets the number of notes that went past the top without being
+	 * hit by the first player.
+	 * 
+	 * @return An int of the misses.
+	 */
+	public int getMisses() {
+		return this.players[0].getMisses();
+	} // End getMisses()
+} // End GameEngine class
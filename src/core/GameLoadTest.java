@@ -0,0 +1,265 @@
+package core;
+
+/**
+ * The GameLoadTest class load tests a GameServer. It opens many
+ * connections at once, each playing whole sessions of a map by pressing
+ * every note on time, checks every result against the same map played
+ * locally, and reports sessions per second and latency percentiles.
+ * 
+ * Usage: java core.GameLoadTest port|socket-path chart.cbm [sessions] [concurrent]
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GameLoadTest {
+	// The map being played, as presses in the order they are sent
+	private final long chartHash;
+	private final long[] pressTimes;
+	private final int[] pressLanes;
+	
+	// The result every session should get
+	private final long score;
+	private final int hits;
+	private final int misses;
+	
+	// Time of whole sessions, from connecting to the result, in ns
+	private final LatencyHistogram sessionTimes = new LatencyHistogram();
+	
+	// Time from sending END to reading the result, in ns
+	private final LatencyHistogram resultTimes = new LatencyHistogram();
+	
+	// Counts of sessions
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor works out the presses and the result of
+	 * playing the map perfectly.
+	 * 
+	 * @param notes The notes of the map.
+	 */
+	public GameLoadTest(NoteStore notes) {
+		GameEngine engine = new GameEngine(notes);
+		Simulator.autoplay(engine);
+		engine.runToEnd();
+		
+		// The engine sorts the notes, which the hash needs
+		this.chartHash = Replay.hashChart(notes);
+		this.pressTimes = new long[notes.size()];
+		this.pressLanes = new int[notes.size()];
+		
+		long[] keys = new long[notes.size()];
+		
+		for (int i = 0; i < notes.size(); i++)
+			keys[i] = (notes.getTime(i) << 32) | i;
+		
+		Arrays.sort(keys);
+		
+		for (int k = 0; k < keys.length; k++) {
+			this.pressTimes[k] = keys[k] >> 32;
+			this.pressLanes[k] = notes.getLane((int) keys[k]);
+		} // End for
+		
+		this.score = engine.getScore();
+		this.hits = engine.getHits();
+		this.misses = engine.getMisses();
+	} // End GameLoadTest(NoteStore)
+	// End Constructor(s)
+	
+	public static void main(String[] argv) throws Exception {
+		if (argv.length < 2) {
+			System.err.println("Usage: java core.GameLoadTest port|socket-path chart.cbm [sessions] [concurrent]");
+			System.exit(1);
+		}
+		
+		final SocketAddress address = GameServer.parseAddress(argv[0]);
+		final GameLoadTest test = new GameLoadTest(new MapParser().loadNotes(argv[1]));
+		final int sessions = (argv.length > 2) ? Integer.parseInt(argv[2]) : 10000;
+		int concurrent = (argv.length > 3) ? Integer.parseInt(argv[3]) : sessions;
+		concurrent = Math.max(1, Math.min(concurrent, sessions));
+		
+		ExecutorService clients = GameServer.newSessionExecutor("Load client");
+		final CountDownLatch ready = new CountDownLatch(concurrent);
+		final CountDownLatch go = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(concurrent);
+		final AtomicInteger next = new AtomicInteger();
+		
+		// Every client connects first, then they all start together
+		for (int c = 0; c < concurrent; c++) {
+			clients.execute(new Runnable() {
+				public void run() {
+					try {
+						test.runClient(address, sessions, next, ready, go);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			});
+		} // End for
+		
+		ready.await();
+		
+		long start = System.nanoTime();
+		go.countDown();
+		done.await();
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		clients.shutdown();
+		
+		test.report(concurrent, seconds);
+	} // End main()
+	
+	/**
+	 * Plays sessions on one connection until every session has
+	 * been taken.
+	 * 
+	 * @param address The address of the server.
+	 * @param sessions The number of sessions to play in all.
+	 * @param next The count of sessions taken.
+	 * @param ready Counted down once connected.
+	 * @param go Waited on before the first session.
+	 */
+	private void runClient(SocketAddress address, int sessions, AtomicInteger next,
+			CountDownLatch ready, CountDownLatch go) {
+		SocketChannel channel = null;
+		
+		try {
+			try {
+				channel = SocketChannel.open(address);
+			}
+			finally {
+				ready.countDown();
+			}
+			
+			if (address instanceof InetSocketAddress)
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			
+			go.await();
+			
+			while (next.getAndIncrement() < sessions)
+				playSession(in, out);
+		}
+		catch (IOException e) {
+			this.failed.incrementAndGet();
+			System.err.println("Client failed: " + e.getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			try {
+				if (channel != null)
+					channel.close();
+			}
+			catch (IOException e) {
+				// Nothing left to do with it
+			}
+		}
+	} // End runClient()
+	
+	/**
+	 * Plays one session, pressing every note on time, and checks
+	 * the result.
+	 * 
+	 * @param in The stream from the server.
+	 * @param out The stream to the server.
+	 * @throws IOException If the connection fails.
+	 */
+	private void playSession(DataInputStream in, DataOutputStream out) throws IOException {
+		long start = System.nanoTime();
+		
+		out.writeByte(GameServer.START);
+		out.writeLong(this.chartHash);
+		out.flush();
+		
+		if (in.readUnsignedByte() != GameServer.STARTED)
+			throw new IOException("Server refused the chart: " + in.readUTF());
+		
+		in.readInt();
+		
+		for (int i = 0; i < this.pressTimes.length; i++) {
+			out.writeByte(GameServer.PRESS);
+			out.writeLong(this.pressTimes[i]);
+			out.writeByte(this.pressLanes[i]);
+		} // End for
+		
+		long end = System.nanoTime();
+		out.writeByte(GameServer.END);
+		out.flush();
+		
+		int type = in.readUnsignedByte();
+		
+		if (type != GameServer.RESULT)
+			throw new IOException((type == GameServer.ERROR) ? in.readUTF() : "Unexpected reply " + type);
+		
+		long score = in.readLong();
+		int hits = in.readInt();
+		int misses = in.readInt();
+		long now = System.nanoTime();
+		
+		// The histograms are only written by one thread at a time
+		synchronized (this) {
+			this.sessionTimes.record(now - start);
+			this.resultTimes.record(now - end);
+		}
+		
+		if (score == this.score && hits == this.hits && misses == this.misses)
+			this.completed.incrementAndGet();
+		else {
+			this.failed.incrementAndGet();
+			System.err.println("Session scored " + score + " instead of " + this.score);
+		}
+	} // End playSession()
+	
+	/**
+	 * Prints the results of the test.
+	 * 
+	 * @param concurrent The number of connections used.
+	 * @param seconds How long the sessions took, in seconds.
+	 */
+	private synchronized void report(int concurrent, double seconds) {
+		int total = this.completed.get() + this.failed.get();
+		
+		System.out.println("Notes: " + this.pressTimes.length + ", score: " + this.score);
+		System.out.println("Sessions: " + this.completed.get() + " ok, " + this.failed.get() + " failed, "
+				+ concurrent + " concurrent");
+		System.out.printf("%d sessions in %.3f s (%.0f sessions/s)%n", total, seconds, total / seconds);
+		printPercentiles("Session", this.sessionTimes);
+		printPercentiles("Result", this.resultTimes);
+	} // End report()
+	
+	/**
+	 * Prints the percentiles of a histogram in ms.
+	 * 
+	 * @param name What the histogram times.
+	 * @param histogram The times, in ns.
+	 */
+	private static void printPercentiles(String name, LatencyHistogram histogram) {
+		System.out.printf("%-8s p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n", name,
+				histogram.getPercentile(50) / 1e6, histogram.getPercentile(90) / 1e6,
+				histogram.getPercentile(99) / 1e6, histogram.getPercentile(99.9) / 1e6,
+				histogram.getMax() / 1e6);
+	} // End printPercentiles()
+} // End GameLoadTest class
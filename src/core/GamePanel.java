@@ -5,28 +5,39 @@ package core;
  * drawing of images, gets user input, and runs
  * the game. 
  * 
+ * Frames are either drawn on a Canvas through a page
+ * flipping BufferStrategy (accelerated) or, as a
+ * fallback, into an offscreen image that is copied
+ * onto the panel.
+ * 
  * @author Dan Wiechert
- * @version 1.0
+ * @version 1.3
  * @since 1.0
  */
 
 //Import statements
-import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 
+import java.awt.AWTException;
+import java.awt.BorderLayout;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.File;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
 import java.io.IOException;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
 
-public class GamePanel extends JPanel implements Runnable, KeyListener {
-	// Dimensions of game and tile sizes
+public class GamePanel extends JPanel implements Runnable, KeyListener, JudgementListener {
+	// Dimensions of game (one playfield) and tile sizes
 	private static final int WIDTH = 200;
 	private static final int HEIGHT = 600;
 	private static final int TILE_SIZE = 50;
@@ -37,9 +48,33 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	private static final int UP = 3;
 	private static final int RIGHT = 4;
 	
-	// Numbers used in FPS calculations
-	private static final int NO_DELAYS_PER_YIELD = 16;
-	private static int MAX_FRAME_SKIPS = 5;
+	// Sprites in the atlas, the top arrows then the notes in each direction
+	private static final String[] SPRITE_NAMES = {
+		"fire_left_1.png", "fire_down_1.png", "fire_up_1.png", "fire_right_1.png",
+		"fire_left_1.png", "fire_down_1.png", "fire_up_1.png", "fire_right_1.png"
+	};
+	private static final int TOP_SPRITES = 0;
+	private static final int NOTE_SPRITES = 4;
+	
+	// The color of the body of a hold note
+	private static final Color HOLD_COLOR = new Color(255, 255, 255, 160);
+	
+	// Number of buffers used for accelerated rendering
+	private static final int NUM_BUFFERS = 2;
+	
+	// Number of key presses that can wait for the game thread
+	private static final int INPUT_CAPACITY = 256;
+	
+	// Game ticks per second, and the time between them in ns
+	private static final int TICK_RATE = 1000;
+	private static final long TICK_PERIOD = 1000000000L / TICK_RATE;
+	
+	// How often the numbers on the overlay change, in ns
+	private static final long OVERLAY_REFRESH = 500000000L;
+	
+	// Events that can wait to be written, and how often frame stats are logged (ns)
+	private static final int EVENT_CAPACITY = 8192;
+	private static final long STATS_PERIOD = 1000000000L;
 	
 	// The game that created this GamePanel
 	private Game gameTop;
@@ -47,57 +82,175 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	// The current map (commented out)
 	//private char[][] map;
 	
-	// ArrayLists of the arrows in the game
-	private ArrayList<Arrow> arrows = new ArrayList<Arrow>();
-	private ArrayList<Arrow> topArrows = new ArrayList<Arrow>();
+	// The engine running the game logic, only used by the game thread
+	private GameEngine engine;
+	
+	// Number of players, each with a playfield WIDTH wide
+	private int playerCount;
+	private int panelWidth;
+	
+	// Key presses on their way from the event thread to the game thread
+	private InputQueue inputs = new InputQueue(INPUT_CAPACITY);
+	
+	// How long each phase of the loop takes
+	private FrameStats stats = new FrameStats();
+	
+	// Where hits, misses, frame stats and errors are logged without blocking
+	private EventLog events = new EventLog(EVENT_CAPACITY);
+	private int[] lastMisses;
+	private long statsTime = 0L;
+	
+	// The frame stats drawn over the game, if turned on
+	private boolean showOverlay = false;
+	private String[] overlayLines = new String[0];
+	private long overlayTime = 0L;
+	
+	// The arrows at the top
+	private ArrayList<Arrow> topArrows;
+	
+	// Hands each tick's notes from the update thread to the render thread
+	private SnapshotBuffer snapshots = new SnapshotBuffer();
 	
 	// Image files
 	private Image dbImage = null;
-	private BufferedImage topLeftArrow;
-	private BufferedImage topDownArrow;
-	private BufferedImage topUpArrow;
-	private BufferedImage topRightArrow;
-	private BufferedImage leftArrow;
-	private BufferedImage downArrow;
-	private BufferedImage upArrow;
-	private BufferedImage rightArrow;
+	private AssetManager assets;
+	private SpriteAtlas sprites = null;
 	private Graphics dbg = null;
 	
+	// The canvas used for accelerated rendering (null when using the fallback)
+	private Canvas canvas = null;
+	private BufferStrategy strategy = null;
+	
 	// New global variables (temp comment)
 	private long period;
 	private Thread animator;           // the thread that performs the animation
-	private boolean running = false;   // used to stop the animation thread
+	private Thread ticker;             // the thread that updates the game
+	private volatile boolean running = false;   // used to stop both threads
 	private boolean isPaused = false;
-	private long gameStartTime;
+	
+	// The clock the chart is timed by
+	private SongClock clock;
+	
+	// Wait out the rest of each frame and each tick
+	private FramePacer pacer = new AdaptivePacer();
+	private FramePacer tickPacer = new AdaptivePacer();
+	
+	// The key presses of the game and where they are saved (null when not recording)
+	private Replay replay = null;
+	private String replayFile = null;
+	
+	// The sound played on a hit (no sound when the engine is null)
+	private AudioEngine audio = null;
+	private int hitSound = -1;
+	
+	// The loader that timed startup, told when the first frame is drawn (may be null)
+	private StartupLoader startup = null;
+	
+	// Hands new versions of the chart to the update thread (null when not watching)
+	private ChartWatcher watcher = null;
 	
 	// Start Constructor(s)
 	/**
 	 * This is the main constructor of the GamePanel and initializes all variables.
 	 * 
 	 * @param game The game that created this GamePanel.
-	 * @param boxes An ArrayList of the boxes on the map.
-	 * @param period A long to help with FPS calculations.
+	 * @param notes A NoteStore of the notes on the map.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param clock The clock the chart is timed by.
+	 * @param accelerated True to draw through a BufferStrategy.
 	 */
-	public GamePanel(Game game, /*char[][] map,*/ ArrayList<Arrow> arrows, long period) {
+	public GamePanel(Game game, /*char[][] map,*/ NoteStore notes, long period, SongClock clock, boolean accelerated) {
+		this(game, notes, period, clock, accelerated, 1);
+	} // End GamePanel(Game, map)
+	
+	/**
+	 * This constructor initializes all variables for a number of players
+	 * playing the map side by side.
+	 * 
+	 * @param game The game that created this GamePanel.
+	 * @param notes A NoteStore of the notes on the map.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param clock The clock the chart is timed by.
+	 * @param accelerated True to draw through a BufferStrategy.
+	 * @param players The number of players, each with their own playfield.
+	 */
+	public GamePanel(Game game, NoteStore notes, long period, SongClock clock, boolean accelerated, int players) {
+		this(game, notes, period, clock, accelerated, players, new AssetManager());
+	} // End GamePanel(Game, map, players)
+	
+	/**
+	 * This constructor initializes all variables, taking images from
+	 * an AssetManager that may already have decoded them.
+	 * 
+	 * @param game The game that created this GamePanel.
+	 * @param notes A NoteStore of the notes on the map.
+	 * @param period A long of the time between frames in ns, 0 for uncapped.
+	 * @param clock The clock the chart is timed by.
+	 * @param accelerated True to draw through a BufferStrategy.
+	 * @param players The number of players, each with their own playfield.
+	 * @param assets Where the images are loaded from.
+	 */
+	public GamePanel(Game game, NoteStore notes, long period, SongClock clock, boolean accelerated, int players, AssetManager assets) {
 		this.gameTop = game;
+		this.assets = assets;
 		//this.map = map;
-		this.arrows = arrows;
 		this.period = period;
+		this.clock = clock;
 		
-		createTopArrows();
-		readInImages();
+		this.engine = new GameEngine(notes, players);
+		this.playerCount = this.engine.getPlayerCount();
+		this.panelWidth = WIDTH * this.playerCount;
+		this.lastMisses = new int[this.playerCount];
+		this.engine.setJudgementListener(this);
+		this.topArrows = this.engine.getTopArrows();
 		
 		setBackground(Color.white);
-		setPreferredSize(new Dimension(WIDTH, HEIGHT));
+		setPreferredSize(new Dimension(this.panelWidth, HEIGHT));
 		
 		setFocusable(true);
 	    requestFocus();    // the JPanel now has focus, so receives key events
 		//readyForTermination(); Don't need this for now.
 		
 		addKeyListener(this);
-	} // End GamePanel(Game, map)
+		
+		/*
+		 * The canvas covers the whole panel, so it takes
+		 * the focus and the key events when it is used.
+		 */
+		if (accelerated) {
+			this.canvas = new Canvas();
+			this.canvas.setIgnoreRepaint(true);
+			this.canvas.setFocusable(true);
+			this.canvas.addKeyListener(this);
+			
+			setLayout(new BorderLayout());
+			add(this.canvas, BorderLayout.CENTER);
+		} // End if
+	} // End GamePanel(Game, map, players, assets)
 	// End Constructor(s)
 	
+	/**
+	 * Hands the images the panel draws to a StartupLoader to be
+	 * decoded into an AssetManager, one task per image.
+	 * 
+	 * @param loader The loader to decode on.
+	 * @param assets The AssetManager the panel will be given.
+	 */
+	public static void preloadImages(StartupLoader loader, final AssetManager assets) {
+		HashSet<String> names = new HashSet<String>();
+		
+		for (final String name : SPRITE_NAMES) {
+			if (!names.add(name))
+				continue;
+			
+			loader.submit("images", new Callable<Object>() {
+				public Object call() throws IOException {
+					return assets.getImage(name);
+				}
+			});
+		} // End for
+	} // End preloadImages()
+	
 	// =================================================================================
 	// Start section of running game
 	// =================================================================================
@@ -107,15 +260,28 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	 */
 	public void addNotify() { 
 		super.addNotify();   // creates the peer
+		createCanvasStrategy();
+		readInImages();      // in the format of the screen
 	    startGame();         // start the thread
 	} // End addNotify()
 	
 	/**
-	 * Initializes and starts the thread
+	 * Starts the chart, the thread updating the game and
+	 * the thread drawing it.
 	 */
 	private void startGame() { 
 		if (animator == null || !running) {
-			animator = new Thread(this);
+			this.clock.start();
+			running = true;
+			
+			ticker = new Thread(new Runnable() {
+				public void run() {
+					runUpdates();
+				}
+			}, "Game update");
+			ticker.start();
+			
+			animator = new Thread(this, "Game render");
 		    animator.start();
 	    }
 	} // End startGame()
@@ -141,60 +307,99 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 		running = false;
 	} // End stopGame()
 	  
-	  /**
-	   * TODO: Comment...
-	   */
+	/**
+	 * Runs the render loop. The game is updated on its own thread,
+	 * so each frame draws the newest snapshot the update thread has
+	 * published. Each frame is due one period after the last one was
+	 * due, and the pacer waits for it; a frame that is already late
+	 * starts straight away and the frames after it are due from then.
+	 */
 	public void run() {
-		long beforeTime, afterTime, timeDiff, sleepTime;
-		long overSleepTime = 0L;
-		int noDelays = 0;
-		long excess = 0L;
-		  
-		gameStartTime = System.nanoTime();
-		beforeTime = gameStartTime;
+		long beforeTime, afterTime, renderTime;
+		long nextFrame;
+		long lastFrameTime = 0L;
 		  
-		running = true;
+		beforeTime = System.nanoTime();
+		nextFrame = beforeTime;
 		  
 		while(running) {
-			gameUpdate();
+			this.stats.applyReset(FrameStats.RENDER_PHASES);
+			
+			if (lastFrameTime != 0L)
+				this.stats.record(FrameStats.FRAME, beforeTime - lastFrameTime);
+			
+			lastFrameTime = beforeTime;
+			
 			gameRender();
+			renderTime = System.nanoTime();
 			paintScreen();
-			  
+			
 			afterTime = System.nanoTime();
-			timeDiff = afterTime - beforeTime;
-			sleepTime = (period - timeDiff) - overSleepTime;
-			  
-			if(sleepTime > 0) {
-				try {
-					Thread.sleep(sleepTime/1000000L);
-				}
-				catch(InterruptedException e) {
-					System.err.println(e.getMessage());
-				}
-				  
-				overSleepTime = (System.nanoTime() - afterTime) - sleepTime;
+			
+			if (this.startup != null) {
+				this.startup.finish("first frame", System.out);
+				this.startup = null;
 			}
-			else {
-				excess -= sleepTime;
-				overSleepTime = 0L;
-				  
-				if(++noDelays >= NO_DELAYS_PER_YIELD) {
-					Thread.yield();
-					noDelays = 0;
+			
+			this.stats.record(FrameStats.RENDER, renderTime - beforeTime);
+			this.stats.record(FrameStats.PAINT, afterTime - renderTime);
+			
+			nextFrame += period;
+			
+			if (afterTime - nextFrame > 0) {
+				if (period > 0) {
+					this.stats.lateFrame();
+					this.events.log(EventLog.LATE_FRAME, 0, 0, 0, afterTime - nextFrame);
 				}
-			}
-			  
-			beforeTime = System.nanoTime();
-			  
-			int skips = 0;
-			while((excess > period) && (skips < MAX_FRAME_SKIPS)) {
-				excess -= period;
-				gameUpdate();
-				skips++;
-			}
+				
+				nextFrame = afterTime;
+			} // End if
+			
+			if (afterTime - this.statsTime > STATS_PERIOD)
+				logFrameStats(afterTime);
+			
+			beforeTime = this.pacer.waitUntil(nextFrame);
+			this.stats.record(FrameStats.OVER_SLEEP, beforeTime - nextFrame);
 		} // End running 
 	} // End run()
 	
+	/**
+	 * Runs the update loop at TICK_RATE, whatever the frame
+	 * rate is, so key presses are judged and notes move on
+	 * the same short ticks however long a frame takes to draw.
+	 */
+	private void runUpdates() {
+		long beforeTime = System.nanoTime();
+		long nextTick = beforeTime;
+		
+		while (running) {
+			this.stats.applyReset(FrameStats.UPDATE_PHASES);
+			gameUpdate();
+			
+			long afterTime = System.nanoTime();
+			this.stats.record(FrameStats.UPDATE, afterTime - beforeTime);
+			
+			nextTick += TICK_PERIOD;
+			
+			if (afterTime - nextTick > 0)
+				nextTick = afterTime;
+			
+			beforeTime = this.tickPacer.waitUntil(nextTick);
+		} // End while
+	} // End runUpdates()
+	
+	/**
+	 * Logs the 99th percentile of each phase of the loop.
+	 * 
+	 * @param now A reading of System.nanoTime() for this frame.
+	 */
+	private void logFrameStats(long now) {
+		this.statsTime = now;
+		
+		for (int phase = 0; phase < FrameStats.PHASE_NAMES.length; phase++)
+			this.events.log(EventLog.FRAME_STATS, phase, 0, 0, this.stats.getHistogram(phase).getPercentile(99));
+	} // End logFrameStats()
+	
 	// =================================================================================
 	// End section for running game
 	// =================================================================================
@@ -208,84 +413,204 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	 * logic is updated.
 	 */
 	private void gameRender() {
+		if (this.strategy != null) {
+			renderToCanvas();
+			return;
+		}
+		
 		if (dbImage == null) {
-			dbImage = createImage(WIDTH, HEIGHT);
+			dbImage = createImage(this.panelWidth, HEIGHT);
 			
 			if (dbImage == null) {
-				System.out.println("dbImage is null.");
+				this.events.error(EventLog.NO_IMAGE, 0);
 				return;
 			}
 			else
 				dbg = dbImage.getGraphics();
 		} // End if
 		
+		drawGame(dbg);
+	} // End gameRender()
+	
+	/**
+	 * This method draws a whole frame of the game.
+	 * 
+	 * @param g A graphics screen to draw on.
+	 */
+	void drawGame(Graphics g) {
+		FrameSnapshot snapshot = this.snapshots.acquire();
+		
+		/*
+		 * Notes move at the speed of the tick until the next
+		 * one, so moving them on at that speed for the fraction
+		 * of a ms since the tick puts them where they are
+		 * between ticks.
+		 */
+		long sinceTick = Math.min(System.nanoTime() - snapshot.getPublishTime(), TICK_PERIOD);
+		double scroll = snapshot.getScrollAt(snapshot.getTime() + (Math.max(0L, sinceTick) / 1e6));
+		
 		// clear the background
-	    dbg.setColor(Color.BLUE);
-	    dbg.fillRect (0, 0, WIDTH, HEIGHT);
+	    g.setColor(Color.BLUE);
+	    g.fillRect (0, 0, this.panelWidth, HEIGHT);
 	    
-	    // Drawing in the floor, boxes, bombs, bomber, and explosions
-	    this.fillInTopArrows(dbg);
-	    this.fillInArrows(dbg);
-	} // End gameRender()
+	    // Drawing in the top arrows and the notes of each playfield
+	    for (int p = 0; p < this.playerCount; p++) {
+	    	int left = p * WIDTH;
+	    	
+	    	this.fillInTopArrows(g, left);
+	    	this.fillInArrows(g, snapshot, p, left, scroll);
+	    	
+	    	if (p > 0) {
+	    		g.setColor(Color.WHITE);
+	    		g.drawLine(left, 0, left, HEIGHT);
+	    	}
+	    } // End for
+	    
+	    if (this.showOverlay)
+	    	drawOverlay(g);
+	} // End drawGame()
 	
 	/**
-	 * This method reads in all the images that will be used
-	 * during the game.
+	 * Draws the frame stats over the game. The text is only
+	 * worked out again every OVERLAY_REFRESH, so most frames
+	 * just draw the same strings.
+	 * 
+	 * @param g A graphics screen to draw on.
 	 */
-	private void readInImages() {
-		// TODO: Read in correct images
+	private void drawOverlay(Graphics g) {
+		long now = System.nanoTime();
+		
+		if (now - this.overlayTime > OVERLAY_REFRESH) {
+			this.overlayTime = now;
+			this.overlayLines = new String[] {
+				"frame p99 " + this.stats.getFrameP99Micros() + " us",
+				"update p99 " + this.stats.getUpdateP99Micros() + " us",
+				"render p99 " + this.stats.getRenderP99Micros() + " us",
+				"input p99 " + this.stats.getInputP99Micros() + " us",
+				"late " + this.stats.getLateFrames() + "/" + this.stats.getFrameCount()
+			};
+		} // End if
+		
+		g.setColor(Color.WHITE);
+		
+		for (int i = 0; i < this.overlayLines.length; i++)
+			g.drawString(this.overlayLines[i], 4, HEIGHT - 8 - (12 * (this.overlayLines.length - 1 - i)));
+	} // End drawOverlay()
+	
+	/**
+	 * Draws a frame into the back buffer of the canvas and
+	 * shows it, drawing it again if the buffer's contents
+	 * are lost or restored while drawing.
+	 */
+	private void renderToCanvas() {
+		try {
+			do {
+				do {
+					Graphics g = this.strategy.getDrawGraphics();
+					drawGame(g);
+					g.dispose();
+				} while (this.strategy.contentsRestored());
+				
+				this.strategy.show();
+			} while (this.strategy.contentsLost());
+			
+			Toolkit.getDefaultToolkit().sync();
+		}
+		catch (IllegalStateException e) {
+			// The canvas lost its buffers (e.g. while closing)
+			this.events.error(EventLog.CANVAS_LOST, 0);
+		}
+	} // End renderToCanvas()
+	
+	/**
+	 * Creates the BufferStrategy of the canvas, asking for page
+	 * flipping first. If the canvas cannot get any accelerated
+	 * strategy, it is removed and the fallback path is used.
+	 */
+	private void createCanvasStrategy() {
+		if (this.canvas == null)
+			return;
+		
+		ImageCapabilities accelerated = new ImageCapabilities(true);
+		BufferCapabilities flipping = new BufferCapabilities(accelerated, accelerated,
+				BufferCapabilities.FlipContents.UNDEFINED);
+		
+		try {
+			this.canvas.createBufferStrategy(NUM_BUFFERS, flipping);
+		}
+		catch (AWTException e) {
+			// No page flipping, let AWT pick the best it has
+			this.canvas.createBufferStrategy(NUM_BUFFERS);
+		}
 		
-		// Load the explosion image(s)
+		this.strategy = this.canvas.getBufferStrategy();
+		
+		if (this.strategy == null) {
+			this.events.error(EventLog.NO_BUFFER_STRATEGY, NUM_BUFFERS);
+			remove(this.canvas);
+			this.canvas = null;
+		}
+		else
+			this.canvas.requestFocus();
+	} // End createCanvasStrategy()
+	
+	/**
+	 * This method reads in all the images that will be used
+	 * during the game and packs them into one sprite atlas,
+	 * made for the screen once the panel has been added.
+	 * A panel that is never added, like one drawing offscreen,
+	 * calls this itself and gets an atlas for no screen.
+	 */
+	void readInImages() {
 		try {
-		 	this.topLeftArrow = ImageIO.read(new File("src/Images/fire_left_1.png"));
-			this.topDownArrow = ImageIO.read(new File("src/Images/fire_down_1.png"));
-			this.topUpArrow = ImageIO.read(new File("src/Images/fire_up_1.png"));
-			this.topRightArrow = ImageIO.read(new File("src/Images/fire_right_1.png"));
-			this.leftArrow = ImageIO.read(new File("src/Images/fire_left_1.png"));
-			this.downArrow = ImageIO.read(new File("src/Images/fire_down_1.png"));
-			this.upArrow = ImageIO.read(new File("src/Images/fire_up_1.png"));
-			this.rightArrow = ImageIO.read(new File("src/Images/fire_right_1.png"));
+			this.sprites = this.assets.createAtlas(SPRITE_NAMES, getGraphicsConfiguration());
 		}
 		catch(IOException e) {
-			System.err.println(e.getMessage());
+			// Only read once at startup, so which image failed and why can go to the console
+			System.err.println("Could not read the sprites: " + e.getMessage());
+			this.events.error(EventLog.NO_SPRITES, SPRITE_NAMES.length);
 		}
 	} // End readInImages()
 	
-	private void createTopArrows() {
-		topArrows.add(new Arrow(new Position((LEFT * TILE_SIZE) - TILE_SIZE, TILE_SIZE), LEFT));
-		topArrows.add(new Arrow(new Position((DOWN * TILE_SIZE) - TILE_SIZE, TILE_SIZE), DOWN));
-		topArrows.add(new Arrow(new Position((UP * TILE_SIZE) - TILE_SIZE, TILE_SIZE), UP));
-		topArrows.add(new Arrow(new Position((RIGHT * TILE_SIZE) - TILE_SIZE, TILE_SIZE), RIGHT));
-	} // End createTopArrows()
-	
 	/**
 	 * This method draws the arrows graphics on the screen.
 	 * 
 	 * @param dbg A graphics screen to draw on.
+	 * @param snapshot The notes of the newest tick.
+	 * @param player The player whose notes are drawn.
+	 * @param left The x-coord of the left of the player's playfield.
+	 * @param scroll How far the notes have scrolled at the time drawn.
 	 */
-	private void fillInArrows(Graphics dbg) {	
-		// Draws the arrows
-		for(int i = 0; i < this.arrows.size(); i++) {
-			try {
-				int x = arrows.get(i).getPosition().getXCoord();
-				int y = arrows.get(i).getPosition().getYCoord();
-				
-				/*
-				 * Drawing different arrow images based on
-				 * what direction they are.
-				 */
-				if (arrows.get(i).getDirection() == LEFT)
-					dbg.drawImage(this.leftArrow, x, y, this);
-				else if (arrows.get(i).getDirection() == DOWN)
-					dbg.drawImage(this.downArrow, x, y, this);
-				else if (arrows.get(i).getDirection() == UP)
-					dbg.drawImage(this.upArrow, x, y, this);
-				else if (arrows.get(i).getDirection() == RIGHT)
-					dbg.drawImage(this.rightArrow, x, y, this);
-			}
-			catch (NullPointerException e) {
-				// Ignore exception because bomb is gone
+	private void fillInArrows(Graphics dbg, FrameSnapshot snapshot, int player, int left, double scroll) {	
+		if (this.sprites == null)
+			return;
+		
+		// Draws the notes near the screen that are still waiting to be hit, and what is left of holds
+		for (int i = snapshot.getFirst(player); i < snapshot.getEnd(player); i++) {
+			int x = left + snapshot.getXCoord(i);
+			int y = snapshot.getYCoord(i, scroll);
+			int endY = Math.min(snapshot.getEndYCoord(i, scroll), HEIGHT);
+			
+			// A hold being held is only drawn from the top arrows down
+			if (snapshot.isHeld(i))
+				y = Math.max(y, GameEngine.TARGET_Y);
+			
+			if (endY > y) {
+				dbg.setColor(HOLD_COLOR);
+				dbg.fillRect(x + (TILE_SIZE / 4), y + (TILE_SIZE / 2), TILE_SIZE / 2, endY - y);
 			}
+			
+			if (snapshot.isHeld(i))
+				continue;
+			
+			/*
+			 * Drawing different arrow images based on
+			 * what direction they are.
+			 */
+			int lane = snapshot.getLane(i);
+			
+			if (lane >= LEFT && lane <= RIGHT)
+				this.sprites.draw(dbg, NOTE_SPRITES + lane - LEFT, x, y);
 		} // End for
 	} // End fillInArrows()
 	
@@ -293,37 +618,30 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	 * This method draws the arrows graphics on the screen.
 	 * 
 	 * @param dbg A graphics screen to draw on.
+	 * @param left The x-coord of the left of the playfield.
 	 */
-	private void fillInTopArrows(Graphics dbg) {	
+	private void fillInTopArrows(Graphics dbg, int left) {	
+		if (this.sprites == null)
+			return;
+		
 		// Draws the arrows
 		for(int i = 0; i < this.topArrows.size(); i++) {
-			try {
-				int x = this.topArrows.get(i).getPosition().getXCoord();
-				int y = this.topArrows.get(i).getPosition().getYCoord();
-				
-				/*
-				 * Drawing different arrow images based on
-				 * what direction they are.
-				 */
-				if (topArrows.get(i).getDirection() == LEFT)
-					dbg.drawImage(this.topLeftArrow, x, y, this);
-				else if (topArrows.get(i).getDirection() == DOWN)
-					dbg.drawImage(this.topDownArrow, x, y, this);
-				else if (topArrows.get(i).getDirection() == UP)
-					dbg.drawImage(this.topUpArrow, x, y, this);
-				else if (topArrows.get(i).getDirection() == RIGHT)
-					dbg.drawImage(this.topRightArrow, x, y, this);
-			}
-			catch (NullPointerException e) {
-				// Ignore exception because bomb is gone
-			}
+			Arrow top = this.topArrows.get(i);
+			int x = left + top.getPosition().getXCoord();
+			int y = top.getPosition().getYCoord();
+			
+			this.sprites.draw(dbg, TOP_SPRITES + top.getDirection() - LEFT, x, y);
 		} // End for
 	} // End fillInTopArrows()
 	
 	/**
 	 * Uses active rendering to put the buffered image on-screen.
+	 * Frames drawn on the canvas are already on-screen.
 	 */
 	private void paintScreen() { 
+		if (this.strategy != null)
+			return;
+		
 		Graphics g;
       
 	    try {
@@ -335,7 +653,7 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	        g.dispose();
 	    }
 	    catch (Exception e) { 
-	    	System.out.println("Graphics context error: " + e);  
+	    	this.events.error(EventLog.PAINT_FAILED, 0);
 	    }
 	} // End paintScreen()
 	
@@ -348,88 +666,248 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 	// =================================================================================
 	
 	/**
-	 * This updates the logic of the game.
+	 * This updates the logic of the game by handing the
+	 * key presses since the last tick to the engine and
+	 * moving it to the time of the song clock, then hands
+	 * the notes of the tick to the render thread.
 	 */
-	private void gameUpdate() {	
-		/*
-		 * Removing arrows that are past the top.
-		 */
-		for (int b = (arrows.size() - 1); b > -1; b--)
-			if (arrows.get(b).getPosition().getYCoord() <= 0)
-				arrows.remove(b);
+	void gameUpdate() {	
+		if (this.watcher != null)
+			applyPatch(this.watcher.poll());
 		
-		/*
-		 * Moving the arrows up.
-		 */
-		for (int a = 0; a < this.arrows.size(); a++)
-			this.arrows.get(a).moveUp();
+		drainInputs(System.nanoTime());
+		this.engine.update(this.clock.getTime());
+		logMisses();
+		
+		// Handing the notes of this tick to the render thread
+		this.snapshots.getBack().capture(this.engine);
+		this.snapshots.publish();
+		
+		if (this.replay != null && this.engine.isFinished())
+			saveReplay();
 	} // End gameUpdate()
 	
 	/**
-	 * This method checks to see if a hit was made
-	 * by using Position.scorePoints().
+	 * Swaps a new version of the chart into the engine at the start
+	 * of a tick. The replay is dropped, since it could no longer be
+	 * played back on either version of the chart.
+	 * 
+	 * @param patch The change to the chart, or null if there is none.
+	 */
+	private void applyPatch(ChartPatch patch) {
+		if (patch == null)
+			return;
+		
+		this.engine.applyPatch(patch);
+		
+		if (this.replay != null) {
+			this.engine.setReplay(null);
+			this.replay = null;
+			this.replayFile = null;
+		}
+		
+		this.events.log(EventLog.RELOAD, patch.getAdded(), patch.getRemoved(), 0, System.nanoTime() - patch.getDetectedAt());
+	} // End applyPatch()
+	
+	/**
+	 * Logs the notes each player has missed since the last tick.
+	 */
+	private void logMisses() {
+		for (int p = 0; p < this.playerCount; p++) {
+			int misses = this.engine.getPlayer(p).getMisses();
+			
+			if (misses > this.lastMisses[p])
+				this.events.log(EventLog.MISS, p, misses - this.lastMisses[p], 0, this.engine.getTime());
+			
+			this.lastMisses[p] = misses;
+		} // End for
+	} // End logMisses()
+	
+	/**
+	 * Saves the key presses of the game, once every note
+	 * has been played. The file is written on a thread of
+	 * its own so the tick never waits on the disk, and
+	 * whether it was saved goes to the event log.
+	 */
+	private void saveReplay() {
+		this.engine.setReplay(null);
+		this.replay.setResult(this.engine);
+		
+		final Replay finished = this.replay;
+		final String filename = this.replayFile;
+		final EventLog log = this.events;
+		
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					finished.write(filename);
+					log.log(EventLog.REPLAY_SAVED, finished.size(), finished.getHits(), finished.getMisses(), finished.getScore());
+				}
+				catch (IOException e) {
+					log.error(EventLog.REPLAY_FAILED, finished.size());
+				}
+			}
+		}, "Replay writer");
+		writer.start();
+		
+		this.replay = null;
+	} // End saveReplay()
+	
+	/**
+	 * Hands every waiting key press to the engine, which
+	 * judges each one at the time it was pressed.
+	 * 
+	 * @param now A reading of System.nanoTime() for this tick.
+	 */
+	private void drainInputs(long now) {
+		while (!this.inputs.isEmpty()) {
+			long pressed = this.inputs.peekTime();
+			int key = this.inputs.peekLane() - 1;
+			
+			// Each player's lanes follow on from the player before
+			this.engine.submitInput(key / GameEngine.LANES, this.clock.toTime(pressed), (key % GameEngine.LANES) + 1);
+			this.inputs.remove();
+			
+			this.stats.record(FrameStats.INPUT, now - pressed);
+		} // End while
+	} // End drainInputs()
+	
+	/**
+	 * This method captures a key press and its time for the
+	 * game thread. It runs on the event thread, so it does
+	 * not touch the engine.
 	 * 
 	 * @param dir The direction to check hit.
 	 */
-	private void checkHit(int dir) {
-		int points = 0;
-		 
-		/*
-		 * Switch on the direction to check against other
-		 * arrows to see if they score points. If an
-		 * arrow scores points, they are displayed and
-		 * the arrow is removed.
-		 */
-		switch (dir) {
-			case 1: // Left
-				for (int z = 0; z < arrows.size(); z++) {
-					points = topArrows.get(dir - 1).scorePoints(arrows.get(z).getPosition());
-					
-					if (points != 0) {
-						System.out.println("Left: " + points);
-						arrows.remove(z);
-					} // End if
-				} // End for
-				
-				break;
-			case 2: // Down
-				for (int z = 0; z < arrows.size(); z++) {
-					points = topArrows.get(dir - 1).scorePoints(arrows.get(z).getPosition());
-					
-					if (points != 0) {
-						System.out.println("Down: " + points);
-						arrows.remove(z);
-					} // End if
-				} // End for
-				
-				break;
-			case 3: // Up
-				for (int z = 0; z < arrows.size(); z++) {
-					points = topArrows.get(dir - 1).scorePoints(arrows.get(z).getPosition());
-					
-					if (points != 0) {
-						System.out.println("Up: " + points);
-						arrows.remove(z);
-					} // End if
-				} // End for
-				
-				break;
-			case 4: // Right
-				for (int z = 0; z < arrows.size(); z++) {
-					points = topArrows.get(dir - 1).scorePoints(arrows.get(z).getPosition());
-					
-					if (points != 0) {
-						System.out.println("Right: " + points);
-						arrows.remove(z);
-					} // End if
-				} // End for
-				
-				break;
-			default:
-				// Do nothing, won't occur
-				break;
-		} // End switch
-	} // End checkHit()
+	void checkHit(int dir) {
+		checkHit(0, dir);
+	} // End checkHit(int)
+	
+	/**
+	 * This method captures a key press of a player and its
+	 * time for the game thread. Presses of players without
+	 * a playfield are ignored.
+	 * 
+	 * @param player The player who pressed, from 0.
+	 * @param dir The direction to check hit.
+	 */
+	void checkHit(int player, int dir) {
+		if (player >= this.playerCount)
+			return;
+		
+		if (!this.inputs.offer(System.nanoTime(), (player * GameEngine.LANES) + dir))
+			this.events.error(EventLog.KEY_DROPPED, this.inputs.getDropped());
+	} // End checkHit(int, int)
+	
+	/**
+	 * Gets the timings of the game loop.
+	 * 
+	 * @return The FrameStats of this panel.
+	 */
+	public FrameStats getFrameStats() {
+		return this.stats;
+	} // End getFrameStats()
+	
+	/**
+	 * Sets how the loop waits out the rest of each frame. Only
+	 * call this before the game starts.
+	 * 
+	 * @param pacer The FramePacer to use.
+	 */
+	public void setFramePacer(FramePacer pacer) {
+		this.pacer = pacer;
+	} // End setFramePacer()
+	
+	/**
+	 * Sets where hits, misses, frame stats and errors are logged.
+	 * Only call this before the game starts.
+	 * 
+	 * @param events The EventLog to use.
+	 */
+	public void setEventLog(EventLog events) {
+		this.events = events;
+	} // End setEventLog()
+	
+	/**
+	 * Sets the sound played when a note is hit. Playing it only
+	 * claims a voice of the engine, so the update thread never
+	 * waits on decoding.
+	 * 
+	 * @param audio The engine to play on, or null for no sound.
+	 * @param clip The id of the clip in the engine.
+	 */
+	public void setHitSound(AudioEngine audio, int clip) {
+		this.audio = audio;
+		this.hitSound = clip;
+	} // End setHitSound()
+	
+	/**
+	 * Starts watching the chart file, so every save is played without
+	 * restarting. Must be called before the game starts.
+	 * 
+	 * @param filename The .cbm or .cbmc file of the chart being played.
+	 * @throws IOException If the file's folder cannot be watched.
+	 */
+	public void watchChart(String filename) throws IOException {
+		this.watcher = new ChartWatcher(filename, this.engine.getNotes().copy(), this.playerCount);
+		this.watcher.start();
+	} // End watchChart()
+	
+	/**
+	 * Sets the loader that timed startup, which is told when the
+	 * first frame has been drawn.
+	 * 
+	 * @param startup The StartupLoader, or null.
+	 */
+	public void setStartupLoader(StartupLoader startup) {
+		this.startup = startup;
+	} // End setStartupLoader()
+	
+	/**
+	 * Turns drawing the frame stats over the game on or off.
+	 * 
+	 * @param show True to draw the stats.
+	 */
+	public void setOverlay(boolean show) {
+		this.showOverlay = show;
+	} // End setOverlay()
+	
+	/**
+	 * Records every key press of the first player, and saves
+	 * them as a replay once every note has been played. Must be called
+	 * before the game starts.
+	 * 
+	 * @param filename The .cbrr file to save to.
+	 */
+	public void setReplayFile(String filename) {
+		this.replayFile = filename;
+		this.replay = new Replay(Replay.hashChart(this.engine.getNotes()));
+		this.engine.setReplay(this.replay);
+	} // End setReplayFile()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.JudgementListener#judged(int, long, int, int, int)
+	 */
+	public void judged(int player, long tick, int lane, int note, int points) {
+		if (note != -1) {
+			this.events.log(EventLog.HIT, player, lane, points, tick);
+			
+			if (this.audio != null)
+				this.audio.play(this.hitSound);
+		}
+		else
+			this.events.log(EventLog.EMPTY_PRESS, player, lane, 0, tick);
+	} // End judged()
+	
+	/**
+	 * Gets the engine running the game logic.
+	 * 
+	 * @return The GameEngine of this panel.
+	 */
+	GameEngine getEngine() {
+		return this.engine;
+	} // End getEngine()
 	
 	// =================================================================================
 	// End section for game logic
@@ -491,23 +969,19 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 				checkHit(DOWN);
 				break;
 			case 65:	// (A) LEFT Player 2
-				//if (positionMover(2, -TILE_SIZE, 0))
-				//	player2.moveLeft();
+				checkHit(1, LEFT);
 				break;
 			case 68:	// (D) RIGHT Player 2
-				//if (positionMover(2, TILE_SIZE, 0))
-				//	player2.moveRight();
+				checkHit(1, RIGHT);
 				break;
 			case 80:	// P
 				// TODO: Use to pause and un-pause game
 				break;
 			case 83:	// (S) DOWN Player 2
-				//if (positionMover(2, 0, TILE_SIZE))
-				//	player2.moveDown();
+				checkHit(1, DOWN);
 				break;
 			case 87:	// (W) UP Player 2
-				//if (positionMover(2, 0, -TILE_SIZE))
-				//	player2.moveUp();
+				checkHit(1, UP);
 				break;
 			default:	// Any other key
 				// Ignore other keystrokes
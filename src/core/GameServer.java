@@ -0,0 +1,405 @@
+package core;
+
+/**
+ * The GameServer class runs many game sessions at once in one JVM for
+ * checking scores and for bots. Clients connect over a local TCP port
+ * or a Unix socket, and each connection gets its own thread and its
+ * own GameSession. Sessions run on virtual threads when the JVM has
+ * them, and otherwise on platform threads with small stacks.
+ * 
+ * Every message starts with a byte of its type and is big-endian.
+ * From the client:
+ *   START  long chart hash            Starts a session on the map
+ *   PRESS  long time, byte lane       Hands in a key press
+ *   UPDATE long time                  Moves the session forward
+ *   END                               Plays the rest of the map
+ *   REPLAY int length, bytes          Checks a .cbrr replay
+ * From the server:
+ *   STARTED int notes                 Reply to START
+ *   RESULT  long score, int hits, int misses
+ *                                     Reply to END
+ *   VERIFIED byte match, long score, int hits, int misses
+ *                                     Reply to REPLAY
+ *   ERROR  UTF message                Reply to a bad message
+ * PRESS and UPDATE have no reply, so a client can send a whole game
+ * without waiting on the server.
+ * 
+ * Usage: java core.GameServer port|socket-path chart.cbm...
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameServer {
+	// Messages from the client
+	public static final int START = 1;
+	public static final int PRESS = 2;
+	public static final int UPDATE = 3;
+	public static final int END = 4;
+	public static final int REPLAY = 5;
+	
+	// Messages from the server
+	public static final int STARTED = 1;
+	public static final int RESULT = 2;
+	public static final int VERIFIED = 3;
+	public static final int ERROR = 0;
+	
+	// Connections waiting to be accepted
+	private static final int BACKLOG = 16384;
+	
+	// Stack size of platform session threads, in bytes
+	private static final long STACK_SIZE = 256 * 1024;
+	
+	// Largest replay a client may send, in bytes
+	private static final int MAX_REPLAY = 64 * 1024 * 1024;
+	
+	// The maps that can be played, by hash; only read once the server starts
+	private final HashMap<Long, NoteStore> charts = new HashMap<Long, NoteStore>();
+	
+	// Runs each connection
+	private final ExecutorService sessions;
+	
+	// Counts of sessions
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong finished = new AtomicLong();
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a server with no maps.
+	 */
+	public GameServer() {
+		this.sessions = newSessionExecutor("Game session");
+	} // End GameServer()
+	// End Constructor(s)
+	
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 2) {
+			System.err.println("Usage: java core.GameServer port|socket-path chart.cbm...");
+			System.exit(1);
+		}
+		
+		GameServer server = new GameServer();
+		MapParser parser = new MapParser();
+		
+		for (int i = 1; i < argv.length; i++) {
+			long hash = server.addChart(parser.loadNotes(argv[i]));
+			System.out.printf("Chart %s: %016x%n", argv[i], hash);
+		} // End for
+		
+		server.serve(parseAddress(argv[0]));
+	} // End main()
+	
+	/**
+	 * Adds a map that sessions can play. Must be called before
+	 * the server starts.
+	 * 
+	 * @param notes The notes of the map.
+	 * @return A long of the hash clients start the map by.
+	 */
+	public long addChart(NoteStore notes) {
+		if (!notes.isSorted())
+			notes.sortByTime();
+		
+		long hash = Replay.hashChart(notes);
+		this.charts.put(hash, notes);
+		
+		return hash;
+	} // End addChart()
+	
+	/**
+	 * Accepts connections until the server is closed, running each
+	 * one on its own session thread.
+	 * 
+	 * @param address The port or Unix socket to listen on.
+	 * @throws IOException If the address cannot be listened on.
+	 */
+	public void serve(SocketAddress address) throws IOException {
+		ServerSocketChannel listener;
+		
+		if (address instanceof UnixDomainSocketAddress) {
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+			listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		}
+		else
+			listener = ServerSocketChannel.open();
+		
+		listener.bind(address, BACKLOG);
+		System.out.println("Listening on " + address);
+		
+		try {
+			while (listener.isOpen()) {
+				final SocketChannel channel = listener.accept();
+				
+				this.sessions.execute(new Runnable() {
+					public void run() {
+						handle(channel);
+					}
+				});
+			} // End while
+		}
+		finally {
+			listener.close();
+			this.sessions.shutdown();
+		}
+	} // End serve()
+	
+	/**
+	 * Runs the messages of one connection until it closes.
+	 * 
+	 * @param channel The connection.
+	 */
+	private void handle(SocketChannel channel) {
+		this.active.incrementAndGet();
+		
+		try {
+			if (channel.getRemoteAddress() instanceof InetSocketAddress)
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			GameSession session = null;
+			
+			while (true) {
+				int type = in.read();
+				
+				if (type == -1)
+					break;
+				
+				switch (type) {
+					case START:
+						session = start(in.readLong(), out);
+						break;
+					case PRESS:
+						long time = in.readLong();
+						int lane = in.readByte();
+						
+						if (session != null)
+							session.press(time, lane);
+						break;
+					case UPDATE:
+						long newTime = in.readLong();
+						
+						if (session != null)
+							session.advance(newTime);
+						break;
+					case END:
+						if (session == null) {
+							error(out, "No session started");
+							break;
+						}
+						
+						session.finish();
+						out.writeByte(RESULT);
+						writeResult(out, session.getEngine());
+						out.flush();
+						
+						session = null;
+						this.finished.incrementAndGet();
+						break;
+					case REPLAY:
+						verify(in, out);
+						break;
+					default:
+						error(out, "Unknown message " + type);
+						return;
+				} // End switch
+			} // End while
+		}
+		catch (EOFException e) {
+			// The client went away partway through a message
+		}
+		catch (IOException e) {
+			System.err.println("Session closed: " + e.getMessage());
+		}
+		finally {
+			this.active.decrementAndGet();
+			
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// Nothing left to do with it
+			}
+		}
+	} // End handle()
+	
+	/**
+	 * Starts a session on a map and replies with its size.
+	 * 
+	 * @param chartHash The hash of the map.
+	 * @param out The stream to reply on.
+	 * @return The new session, or null if the map is not known.
+	 * @throws IOException If the reply cannot be sent.
+	 */
+	private GameSession start(long chartHash, DataOutputStream out) throws IOException {
+		NoteStore notes = this.charts.get(chartHash);
+		
+		if (notes == null) {
+			error(out, String.format("Unknown chart %016x", chartHash));
+			return null;
+		}
+		
+		out.writeByte(STARTED);
+		out.writeInt(notes.size());
+		out.flush();
+		
+		return new GameSession(notes.copy(), chartHash);
+	} // End start()
+	
+	/**
+	 * Reads a replay, plays it on its map and replies with
+	 * whether it got the score it recorded.
+	 * 
+	 * @param in The stream to read the replay from.
+	 * @param out The stream to reply on.
+	 * @throws IOException If the replay cannot be read or the reply sent.
+	 */
+	private void verify(DataInputStream in, DataOutputStream out) throws IOException {
+		int length = in.readInt();
+		
+		if (length < 0 || length > MAX_REPLAY)
+			throw new IOException("Replay of " + length + " bytes is too big");
+		
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		
+		Replay replay;
+		
+		try {
+			replay = Replay.read(ByteBuffer.wrap(bytes), "Replay");
+		}
+		catch (IOException e) {
+			error(out, e.getMessage());
+			return;
+		}
+		
+		NoteStore notes = this.charts.get(replay.getChartHash());
+		
+		if (notes == null) {
+			error(out, String.format("Unknown chart %016x", replay.getChartHash()));
+			return;
+		}
+		
+		GameSession session = new GameSession(notes.copy(), replay.getChartHash());
+		boolean match = session.verify(replay);
+		
+		out.writeByte(VERIFIED);
+		out.writeBoolean(match);
+		writeResult(out, session.getEngine());
+		out.flush();
+		
+		this.finished.incrementAndGet();
+	} // End verify()
+	
+	/**
+	 * Writes the score, hits and misses of an engine.
+	 * 
+	 * @param out The stream to write to.
+	 * @param engine The engine of a finished session.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	private static void writeResult(DataOutputStream out, GameEngine engine) throws IOException {
+		out.writeLong(engine.getScore());
+		out.writeInt(engine.getHits());
+		out.writeInt(engine.getMisses());
+	} // End writeResult()
+	
+	/**
+	 * Replies with an error.
+	 * 
+	 * @param out The stream to reply on.
+	 * @param message What went wrong.
+	 * @throws IOException If the reply cannot be sent.
+	 */
+	private static void error(DataOutputStream out, String message) throws IOException {
+		out.writeByte(ERROR);
+		out.writeUTF(message);
+		out.flush();
+	} // End error()
+	
+	/**
+	 * Works out an address from a port number on this machine
+	 * or the path of a Unix socket.
+	 * 
+	 * @param address A port number or a path.
+	 * @return The socket address.
+	 */
+	public static SocketAddress parseAddress(String address) {
+		if (address.matches("\\d+"))
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+		
+		return UnixDomainSocketAddress.of(address);
+	} // End parseAddress()
+	
+	/**
+	 * Creates an executor that runs every task on a new thread. The
+	 * threads are virtual when the JVM has them (Java 21 and up), and
+	 * otherwise daemon platform threads with small stacks, so many
+	 * thousands of sessions can still wait on their sockets at once.
+	 * 
+	 * @param name The name of the threads.
+	 * @return The executor.
+	 */
+	static ExecutorService newSessionExecutor(final String name) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			// No virtual threads in this JVM
+		}
+		
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(null, r, name + " " + this.count.incrementAndGet(), STACK_SIZE);
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+	} // End newSessionExecutor()
+	
+	/**
+	 * Gets the number of connections open.
+	 * 
+	 * @return An int of the open connections.
+	 */
+	public int getActiveSessions() {
+		return this.active.get();
+	} // End getActiveSessions()
+	
+	/**
+	 * Gets the number of sessions played to the end or replays checked.
+	 * 
+	 * @return A long of the finished sessions.
+	 */
+	public long getFinishedSessions() {
+		return this.finished.get();
+	} // End getFinishedSessions()
+} // End GameServer class
@@ -0,0 +1,96 @@
+package core;
+
+/**
+ * The GameSession class is one game being played on a map, with no
+ * display and nothing shared with any other session. It owns its
+ * engine and its own copy of the notes, so any number of sessions can
+ * run at once in one JVM, each on its own thread.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class GameSession {
+	// The engine the session is played on
+	private final GameEngine engine;
+	
+	// The hash of the map, from Replay.hashChart()
+	private final long chartHash;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a session at the start of a map.
+	 * 
+	 * @param notes The notes of the map, which the session takes over.
+	 * @param chartHash The hash of the map, from Replay.hashChart().
+	 */
+	public GameSession(NoteStore notes, long chartHash) {
+		this.engine = new GameEngine(notes);
+		this.chartHash = chartHash;
+	} // End GameSession(NoteStore, long)
+	// End Constructor(s)
+	
+	/**
+	 * Hands in a key press. Presses have to be handed in in order.
+	 * 
+	 * @param time The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 */
+	public void press(long time, int lane) {
+		this.engine.submitInput(time, lane);
+	} // End press()
+	
+	/**
+	 * Moves the session forward to a time of the map.
+	 * 
+	 * @param time The time to move to, in ms.
+	 */
+	public void advance(long time) {
+		this.engine.update(time);
+	} // End advance()
+	
+	/**
+	 * Plays the rest of the map, judging every press handed in.
+	 */
+	public void finish() {
+		this.engine.runToEnd();
+	} // End finish()
+	
+	/**
+	 * Puts the session back to the start of the map.
+	 */
+	public void restart() {
+		this.engine.reset();
+	} // End restart()
+	
+	/**
+	 * Plays a replay from the start of the map and checks it gets
+	 * the result it recorded.
+	 * 
+	 * @param replay A replay of this map.
+	 * @return True if the score, hits and misses all match.
+	 */
+	public boolean verify(Replay replay) {
+		this.engine.reset();
+		replay.playInto(this.engine);
+		
+		return replay.matches(this.engine);
+	} // End verify()
+	
+	/**
+	 * Gets the engine the session is played on.
+	 * 
+	 * @return The GameEngine of the session.
+	 */
+	public GameEngine getEngine() {
+		return this.engine;
+	} // End getEngine()
+	
+	/**
+	 * Gets the hash of the map being played.
+	 * 
+	 * @return A long of the hash.
+	 */
+	public long getChartHash() {
+		return this.chartHash;
+	} // End getChartHash()
+} // End GameSession class
@@ -0,0 +1,127 @@
+package core;
+
+/**
+ * The InputQueue class hands key presses from the AWT event thread to
+ * the game thread without locking. It is a ring buffer for exactly one
+ * producer and one consumer: the producer writes a slot and then
+ * publishes it by moving the volatile tail, and the consumer reads the
+ * slot and then frees it by moving the volatile head. Each press keeps
+ * the System.nanoTime() it was captured at, so it can be judged at the
+ * time it happened rather than when the game thread gets to it.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class InputQueue {
+	// The presses, as a ring of slots
+	private final long[] times;
+	private final int[] lanes;
+	private final int mask;
+	
+	// Next slot to read, only moved by the consumer
+	private volatile long head = 0;
+	
+	// Next slot to write, only moved by the producer
+	private volatile long tail = 0;
+	
+	// Presses that did not fit, only changed by the producer
+	private volatile int dropped = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a queue with room for at least the
+	 * given number of presses.
+	 * 
+	 * @param capacity The number of presses the queue can hold.
+	 */
+	public InputQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		
+		this.times = new long[size];
+		this.lanes = new int[size];
+		this.mask = size - 1;
+	} // End InputQueue(int)
+	// End Constructor(s)
+	
+	/**
+	 * Adds a press to the queue. Only the producer thread may call this.
+	 * 
+	 * @param nanos The System.nanoTime() the press was captured at.
+	 * @param lane The direction of the press.
+	 * @return True if it was added, false if the queue was full.
+	 */
+	public boolean offer(long nanos, int lane) {
+		long t = this.tail;
+		
+		if (t - this.head == this.times.length) {
+			this.dropped++;
+			return false;
+		}
+		
+		int slot = (int) t & this.mask;
+		this.times[slot] = nanos;
+		this.lanes[slot] = lane;
+		
+		// Publishes the slot to the consumer
+		this.tail = t + 1;
+		
+		return true;
+	} // End offer()
+	
+	/**
+	 * Checks if there is a press to take. Only the consumer thread may
+	 * call this.
+	 * 
+	 * @return True if no press is waiting.
+	 */
+	public boolean isEmpty() {
+		return this.head == this.tail;
+	} // End isEmpty()
+	
+	/**
+	 * Gets the capture time of the oldest press. Only the consumer
+	 * thread may call this, and only when the queue is not empty.
+	 * 
+	 * @return A long of the System.nanoTime() the press was captured at.
+	 */
+	public long peekTime() {
+		return this.times[(int) this.head & this.mask];
+	} // End peekTime()
+	
+	/**
+	 * Gets the direction of the oldest press. Only the consumer thread
+	 * may call this, and only when the queue is not empty.
+	 * 
+	 * @return An int representing the direction of the press.
+	 */
+	public int peekLane() {
+		return this.lanes[(int) this.head & this.mask];
+	} // End peekLane()
+	
+	/**
+	 * Frees the slot of the oldest press. Only the consumer thread may
+	 * call this, and only when the queue is not empty.
+	 */
+	public void remove() {
+		this.head = this.head + 1;
+	} // End remove()
+	
+	/**
+	 * Gets the number of presses the queue can hold.
+	 * 
+	 * @return An int of the capacity.
+	 */
+	public int capacity() {
+		return this.times.length;
+	} // End capacity()
+	
+	/**
+	 * Gets the number of presses that were lost because the queue
+	 * was full.
+	 * 
+	 * @return An int of the number of dropped presses.
+	 */
+	public int getDropped() {
+		return this.dropped;
+	} // End getDropped()
+} // End InputQueue class
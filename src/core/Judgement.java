@@ -0,0 +1,51 @@
+package core;
+
+/**
+ * The Judgement class scores a key press by how many milliseconds it
+ * was away from the time the note reached the top arrows. The windows
+ * are the old pixel windows (5, 15, 30 and 50 pixels) at the original
+ * scroll speed of 160 pixels per second.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class Judgement {
+	// Largest time differences (in ms) for each amount of points
+	public static final long PERFECT_WINDOW = 31;
+	public static final long GREAT_WINDOW = 94;
+	public static final long GOOD_WINDOW = 188;
+	public static final long OK_WINDOW = 313;
+	
+	// Furthest a key press can be from a note and still score
+	public static final long HIT_WINDOW = OK_WINDOW;
+	
+	// Constructor(s)
+	/**
+	 * Judgement only has static methods.
+	 */
+	private Judgement() {
+		// Do nothing
+	} // End Judgement()
+	// End Constructor(s)
+	
+	/**
+	 * This method scores the points for the CBR game.
+	 * 
+	 * @param delta The time between the key press and the note, in ms.
+	 * @return An int of the points awarded.
+	 */
+	public static int scorePoints(long delta) {
+		long diff = Math.abs(delta);
+		
+		if (diff <= PERFECT_WINDOW)
+			return 100;
+		else if (diff <= GREAT_WINDOW)
+			return 75;
+		else if (diff <= GOOD_WINDOW)
+			return 50;
+		else if (diff <= OK_WINDOW)
+			return 25;
+		
+		return 0;
+	} // End scorePoints()
+} // End Judgement class
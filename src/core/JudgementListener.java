@@ -0,0 +1,21 @@
+package core;
+
+/**
+ * The JudgementListener interface is told about every key press that
+ * the GameEngine judges.
+ * 
+ * @version 1.2
+ * @since 1.1
+ */
+public interface JudgementListener {
+	/**
+	 * Called when a key press has been judged.
+	 * 
+	 * @param player The player who pressed, from 0.
+	 * @param time The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 * @param note The index of the note that was hit, or -1 if none was.
+	 * @param points The points awarded.
+	 */
+	public void judged(int player, long time, int lane, int note, int points);
+} // End JudgementListener interface
@@ -0,0 +1,157 @@
+package core;
+
+/**
+ * The LatencyHistogram class counts durations into log-spaced buckets
+ * so percentiles can be read without keeping every value. Each power
+ * of two is split into 8 buckets, so a percentile is never off by more
+ * than 1/8 of the value, from 1 ns up to the longest a long can hold.
+ * The buckets are one fixed array and recording a value only adds to
+ * a slot, so nothing is allocated while recording.
+ * 
+ * Values are recorded by one thread. Other threads may read at any
+ * time and see counts that are at most a few values behind.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+public class LatencyHistogram {
+	// Buckets per power of two, as a number of bits
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	// Values below this each get their own bucket
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+	
+	// Enough buckets for every positive long
+	private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+	
+	// The counts of each bucket
+	private final long[] counts = new long[BUCKETS];
+	
+	// Totals of everything recorded
+	private volatile long count = 0L;
+	private long total = 0L;
+	private long max = 0L;
+	
+	/**
+	 * Records a duration.
+	 * 
+	 * @param value The duration, in any unit (negative counts as 0).
+	 */
+	public void record(long value) {
+		if (value < 0L)
+			value = 0L;
+		
+		this.counts[bucketOf(value)]++;
+		this.total += value;
+		
+		if (value > this.max)
+			this.max = value;
+		
+		this.count = this.count + 1;
+	} // End record()
+	
+	/**
+	 * Works out the bucket a value is counted in.
+	 * 
+	 * @param value The value, at least 0.
+	 * @return An int of the index of the bucket.
+	 */
+	private static int bucketOf(long value) {
+		if (value < LINEAR_LIMIT)
+			return (int) value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		
+		return ((exponent - SUB_BITS) * SUB_BUCKETS) + SUB_BUCKETS + sub;
+	} // End bucketOf()
+	
+	/**
+	 * Works out the largest value counted in a bucket.
+	 * 
+	 * @param bucket The index of the bucket.
+	 * @return A long of the largest value in the bucket.
+	 */
+	private static long highestIn(int bucket) {
+		if (bucket < LINEAR_LIMIT)
+			return bucket;
+		
+		int k = bucket - SUB_BUCKETS;
+		int shift = k / SUB_BUCKETS;
+		long lowest = (long) (SUB_BUCKETS + (k % SUB_BUCKETS)) << shift;
+		
+		return lowest + ((1L << shift) - 1);
+	} // End highestIn()
+	
+	/**
+	 * Gets a percentile of the values recorded. The answer is the top
+	 * of the bucket the percentile falls in, so it is never too low.
+	 * 
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return A long of the value, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long recorded = this.count;
+		
+		if (recorded == 0L)
+			return 0L;
+		
+		long rank = (long) Math.ceil((percentile / 100.0) * recorded);
+		rank = Math.max(1L, Math.min(rank, recorded));
+		
+		long seen = 0L;
+		
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += this.counts[b];
+			
+			if (seen >= rank)
+				return Math.min(highestIn(b), this.max);
+		} // End for
+		
+		return this.max;
+	} // End getPercentile()
+	
+	/**
+	 * Gets the number of values recorded.
+	 * 
+	 * @return A long of the count.
+	 */
+	public long getCount() {
+		return this.count;
+	} // End getCount()
+	
+	/**
+	 * Gets the largest value recorded.
+	 * 
+	 * @return A long of the largest value, or 0 if nothing has been recorded.
+	 */
+	public long getMax() {
+		return this.max;
+	} // End getMax()
+	
+	/**
+	 * Gets the mean of the values recorded.
+	 * 
+	 * @return A double of the mean, or 0 if nothing has been recorded.
+	 */
+	public double getMean() {
+		long recorded = this.count;
+		
+		return (recorded == 0L) ? 0.0 : (double) this.total / recorded;
+	} // End getMean()
+	
+	/**
+	 * Forgets everything recorded. Only the thread recording the values
+	 * may call this; a reset from another thread could leave the count,
+	 * total and buckets out of step with each other.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++)
+			this.counts[b] = 0L;
+		
+		this.total = 0L;
+		this.max = 0L;
+		this.count = 0L;
+	} // End reset()
+} // End LatencyHistogram class
@@ -0,0 +1,149 @@
+package core;
+
+/**
+ * The MapCompiler class turns a CircleBear map (.cbm) into a compiled
+ * map (.cbmc) that the CompiledMap class can memory map at startup
+ * instead of parsing text. The notes are sorted by time on the way,
+ * and the tempo and scroll speed changes are written as the segments of
+ * the map's TimingMap.
+ * 
+ * Usage: java core.MapCompiler map.cbm [map.cbmc]
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class MapCompiler {
+	// Size of the buffer notes are written through
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	public static void main(String[] argv) {
+		if (argv.length < 1) {
+			System.err.println("Usage: java core.MapCompiler map.cbm [map.cbmc]");
+			System.exit(1);
+		}
+		
+		String output = (argv.length > 1) ? argv[1] : getCompiledName(argv[0]);
+		
+		try {
+			long start = System.nanoTime();
+			int notes = compile(argv[0], output);
+			
+			System.out.printf("Compiled %d notes into %s in %.1f ms%n",
+					notes, output, (System.nanoTime() - start) / 1e6);
+		}
+		catch (IOException e) {
+			System.err.println("Could not compile map " + e.getMessage());
+			System.exit(-1);
+		}
+	} // End main()
+	
+	/**
+	 * Compiles a .cbm map into a .cbmc file.
+	 * 
+	 * @param mapFile The .cbm file to read.
+	 * @param compiledFile The .cbmc file to write.
+	 * @return An int of the number of notes written.
+	 * @throws IOException If the map cannot be read or the file written.
+	 */
+	public static int compile(String mapFile, String compiledFile) throws IOException {
+		NoteStore notes = new MapParser().parseInNotes(mapFile);
+		notes.sortByTime();
+		
+		write(notes, compiledFile);
+		
+		return notes.size();
+	} // End compile()
+	
+	/**
+	 * Writes notes and their timing to a .cbmc file in the order they
+	 * are stored.
+	 * 
+	 * @param notes The notes to write, sorted by time.
+	 * @param compiledFile The .cbmc file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(NoteStore notes, String compiledFile) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(compiledFile), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			TimingMap timing = notes.getTiming();
+			int segments = timing.isConstant() ? 0 : timing.getSegmentCount();
+			
+			buffer.putInt(CompiledMap.MAGIC);
+			buffer.putShort(CompiledMap.VERSION);
+			buffer.putShort((short) NoteIndex.LANES);
+			buffer.putInt(notes.size());
+			buffer.putInt(segments);
+			
+			for (int i = 0; i < notes.size(); i++) {
+				long time = notes.getTime(i);
+				long length = notes.getEndTime(i) - time;
+				
+				if (time < Integer.MIN_VALUE || time > Integer.MAX_VALUE || length > Integer.MAX_VALUE)
+					throw new IOException("note " + i + " at " + time + " ms does not fit in a compiled map");
+				
+				if (buffer.remaining() < CompiledMap.RECORD_SIZE)
+					flush(channel, buffer);
+				
+				buffer.putInt((int) time);
+				buffer.put((byte) notes.getLane(i));
+				buffer.put((byte) 0);
+				buffer.putShort((short) 0);
+				buffer.putInt((int) length);
+			} // End for
+			
+			for (int k = 0; k < segments; k++) {
+				if (buffer.remaining() < CompiledMap.SEGMENT_SIZE)
+					flush(channel, buffer);
+				
+				buffer.putInt(timing.getSegmentHeight(k));
+				buffer.putDouble(timing.getSegmentTempo(k));
+				buffer.putDouble(timing.getSegmentSpeed(k));
+			} // End for
+			
+			flush(channel, buffer);
+		}
+		finally {
+			channel.close();
+		}
+	} // End write()
+	
+	/**
+	 * Writes out everything in the buffer and empties it.
+	 * 
+	 * @param channel The channel to write to.
+	 * @param buffer The buffer to write out.
+	 * @throws IOException If the channel cannot be written.
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		
+		buffer.clear();
+	} // End flush()
+	
+	/**
+	 * Works out the name of the compiled file for a map.
+	 * 
+	 * @param mapFile The name of the .cbm file.
+	 * @return The name with a .cbmc extension.
+	 */
+	public static String getCompiledName(String mapFile) {
+		if (mapFile.endsWith(".cbm"))
+			return mapFile + "c";
+		
+		return mapFile + ".cbmc";
+	} // End getCompiledName()
+} // End MapCompiler class
@@ -0,0 +1,43 @@
+package core;
+
+/**
+ * The MapParseException class is thrown by the MapParser when a line
+ * of a map file is not a valid note. It keeps the line number so map
+ * authors can find the problem.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+
+public class MapParseException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	// The line of the map file that could not be parsed
+	private final long lineNumber;
+	
+	// Constructor(s)
+	/**
+	 * This constructor creates an exception for a bad line.
+	 * 
+	 * @param source The name of the map being parsed.
+	 * @param lineNumber The line number, starting from 1.
+	 * @param reason What is wrong with the line.
+	 */
+	public MapParseException(String source, long lineNumber, String reason) {
+		super(source + ":" + lineNumber + ": " + reason);
+		this.lineNumber = lineNumber;
+	} // End MapParseException(String, long, String)
+	// End Constructor(s)
+	
+	/**
+	 * Gets the line of the map file that could not be parsed.
+	 * 
+	 * @return A long of the line number, starting from 1.
+	 */
+	public long getLineNumber() {
+		return this.lineNumber;
+	} // End getLineNumber()
+} // End MapParseException class
@@ -2,11 +2,24 @@ package core;
 
 /**
  * The MapParser class is used for reading from text files that have
- * map information stored in them. It stores this information in a
- * double array.
+ * map information stored in them. Each line of a CircleBear map (.cbm)
+ * is a note written as "lane::y", where y is the starting height of
+ * the note, or a hold note written as "lane::y::length", where length
+ * is how much higher the end of the hold starts.
+ * 
+ * Tempo and scroll speed changes are written as "bpm::y::beats per
+ * minute" and "scroll::y::speed", from the height y onwards (see
+ * TimingMap), and have to come before the notes so that every note
+ * can be timed as soon as it is read.
+ * 
+ * Maps are read straight from bytes into a reused buffer without
+ * making a String or array per line, and notes are handed to a
+ * NoteConsumer as they are read, so parsing a large map is limited by
+ * how fast the file can be read. A MapParser is not thread safe; use
+ * one per thread.
  * 
  * @author Josh Branchaud, Dan Wiechert
- * @version 1.1
+ * @version 1.3
  * @since 1.0
  */
 
@@ -15,8 +28,43 @@ import java.io.*;
 import java.util.ArrayList;
 
 public class MapParser {
-	// Tile size for the game
-	private static final int TILE_SIZE = 50;
+	// Size of the buffer bytes are read into
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	// Rough number of bytes per line, for sizing note stores
+	private static final int BYTES_PER_LINE = 7;
+	
+	// Largest value a lane or height can have
+	private static final long MAX_VALUE = Integer.MAX_VALUE;
+	
+	/*
+	 * The states of the line scanner:
+	 * LINE_START = Nothing read on this line yet
+	 * LANE = Reading the digits of the lane
+	 * SEPARATOR = Read the first ':' of "::"
+	 * Y_START = Read "::", waiting for the height
+	 * Y_SIGN = Read a '-' before the height
+	 * Y = Reading the digits of the height
+	 * LINE_END = Read the note, only whitespace may follow
+	 * HOLD_SEPARATOR = Read the first ':' after the height
+	 * LENGTH_START = Read "::" after the height, waiting for the length
+	 * LENGTH = Reading the digits of the length of a hold
+	 * WORD = Reading a tempo or scroll speed line
+	 */
+	private static final int LINE_START = 0;
+	private static final int LANE = 1;
+	private static final int SEPARATOR = 2;
+	private static final int Y_START = 3;
+	private static final int Y_SIGN = 4;
+	private static final int Y = 5;
+	private static final int LINE_END = 6;
+	private static final int HOLD_SEPARATOR = 7;
+	private static final int LENGTH_START = 8;
+	private static final int LENGTH = 9;
+	private static final int WORD = 10;
+	
+	// The buffer bytes are read into, reused between maps
+	private final byte[] buffer = new byte[BUFFER_SIZE];
 	
 	// Constructor(s)
 	/**
@@ -33,48 +81,298 @@ public class MapParser {
 	 * 
 	 * @param filename A .cbm file to be parsed by the CBR system.
 	 * @return An arraylist of the arrows in the game.
+	 * @throws IOException If the file cannot be read or has a bad line.
+	 */
+	public ArrayList<Arrow> parseInArrows(String filename) throws IOException {
+		return parseInNotes(filename).toArrows();
+	} // End parseInArrows()
+	
+	/**
+	 * This method is used to parse a CircleBear map (.cbm) into a
+	 * NoteStore to load into the CBR game world.
+	 * 
+	 * @param filename A .cbm file to be parsed by the CBR system.
+	 * @return A NoteStore of the notes in the game.
+	 * @throws IOException If the file cannot be read or has a bad line.
+	 */
+	public NoteStore parseInNotes(String filename) throws IOException {
+		File mapFile = new File(filename);
+		NoteStore notes = new NoteStore((int) Math.min(mapFile.length() / BYTES_PER_LINE, MAX_VALUE));
+		
+		parse(filename, notes);
+		
+		return notes;
+	} // End parseInNotes()
+	
+	/**
+	 * This method loads a map into a NoteStore. Compiled maps (.cbmc)
+	 * are memory mapped, anything else is parsed as a .cbm file.
+	 * 
+	 * @param filename A .cbm or .cbmc file.
+	 * @return A NoteStore of the notes in the game.
+	 * @throws IOException If the file cannot be read or is not a valid map.
+	 */
+	public NoteStore loadNotes(String filename) throws IOException {
+		if (filename.endsWith(".cbmc"))
+			return CompiledMap.open(filename).toNoteStore();
+		
+		return parseInNotes(filename);
+	} // End loadNotes()
+	
+	/**
+	 * This method parses a CircleBear map (.cbm) and hands every note
+	 * to the consumer as it is read.
+	 * 
+	 * @param filename A .cbm file to be parsed by the CBR system.
+	 * @param consumer Who is handed the notes.
+	 * @throws IOException If the file cannot be read or has a bad line.
 	 */
-	public ArrayList<Arrow> parseInArrows(String filename) {
-		BufferedReader br = null;
-		ArrayList<Arrow> arrows = new ArrayList<Arrow>();
+	public void parse(String filename, NoteConsumer consumer) throws IOException {
+		InputStream in = new FileInputStream(filename);
 		
-		// Trying to read in the map file
 		try {
-			File mapFile = new File(filename);
-			br = new BufferedReader(new FileReader(mapFile));
-			
-			try {
-				if(br != null) {
-					String line = br.readLine();
-					String[] currentArrow;
-					int x, y;
-					
-					while (line != null) {
-						// Parsing the current line
-						currentArrow = line.split("::");
-						x = Integer.parseInt(currentArrow[0]);
-						y = Integer.parseInt(currentArrow[1]);
+			parse(in, filename, consumer);
+		}
+		finally {
+			in.close();
+		}
+	} // End parse(String, NoteConsumer)
+	
+	/**
+	 * This method parses a CircleBear map (.cbm) from a stream and hands
+	 * every note to the consumer as it is read. Blank lines, a '\r'
+	 * before each newline and whitespace after a note are allowed.
+	 * 
+	 * @param in The stream to read the map from, which is not closed.
+	 * @param source The name of the map, used in error messages.
+	 * @param consumer Who is handed the notes.
+	 * @throws IOException If the stream cannot be read or has a bad line.
+	 */
+	public void parse(InputStream in, String source, NoteConsumer consumer) throws IOException {
+		byte[] buf = this.buffer;
+		long line = 1;
+		int state = LINE_START;
+		long lane = 0;
+		long y = 0;
+		long length = 0;
+		boolean negative = false;
+		int read;
+		
+		// Tempo and scroll lines, which are rare enough to be read as Strings
+		TimingMap timing = TimingMap.DEFAULT;
+		StringBuilder word = null;
+		boolean notesStarted = false;
+		
+		while ((read = in.read(buf, 0, buf.length)) != -1) {
+			for (int i = 0; i < read; i++) {
+				int c = buf[i];
+				
+				if (c >= '0' && c <= '9') {
+					switch (state) {
+						case LINE_START:
+						case LANE:
+							lane = (lane * 10) + (c - '0');
+							
+							if (lane > MAX_VALUE)
+								throw new MapParseException(source, line, "lane is too large");
+							
+							state = LANE;
+							break;
+						case Y_START:
+						case Y_SIGN:
+						case Y:
+							y = (y * 10) + (c - '0');
+							
+							if (y > MAX_VALUE)
+								throw new MapParseException(source, line, "height is too large");
+							
+							state = Y;
+							break;
+						case LENGTH_START:
+						case LENGTH:
+							length = (length * 10) + (c - '0');
+							
+							if (length > MAX_VALUE)
+								throw new MapParseException(source, line, "hold length is too large");
+							
+							state = LENGTH;
+							break;
+						case WORD:
+							word.append((char) c);
+							break;
+						default:
+							throw unexpected(source, line, c);
+					} // End switch
+				}
+				else if (c == ':') {
+					if (state == LANE)
+						state = SEPARATOR;
+					else if (state == SEPARATOR)
+						state = Y_START;
+					else if (state == Y)
+						state = HOLD_SEPARATOR;
+					else if (state == HOLD_SEPARATOR)
+						state = LENGTH_START;
+					else if (state == WORD)
+						word.append((char) c);
+					else
+						throw unexpected(source, line, c);
+				}
+				else if (c == '-' && state == Y_START) {
+					negative = true;
+					state = Y_SIGN;
+				}
+				else if (c == '\n') {
+					if (state == Y || state == LENGTH || state == LINE_END) {
+						if (!notesStarted) {
+							notesStarted = true;
+							
+							if (timing != TimingMap.DEFAULT)
+								consumer.timing(timing);
+						}
 						
-						arrows.add(new Arrow(new Position((x * TILE_SIZE) - TILE_SIZE, y), x));
+						emit(source, line, lane, negative ? -y : y, length, timing, consumer);
+					}
+					else if (state == WORD) {
+						if (notesStarted)
+							throw new MapParseException(source, line, "tempo and scroll lines have to come before the notes");
 						
-						// Reading the next line
-						line = br.readLine();
-					} // End while
+						if (timing == TimingMap.DEFAULT)
+							timing = new TimingMap();
+						
+						readTiming(source, line, word.toString().trim(), timing);
+						word.setLength(0);
+					}
+					else if (state != LINE_START)
+						throw new MapParseException(source, line, "expected a note written as lane::y or lane::y::length");
+					
+					line++;
+					state = LINE_START;
+					lane = 0;
+					y = 0;
+					length = 0;
+					negative = false;
+				}
+				else if (c == '\r' || c == ' ' || c == '\t') {
+					if (state == Y || state == LENGTH)
+						state = LINE_END;
+					else if (state == WORD)
+						word.append((char) c);
+					else if (state != LINE_START && state != LINE_END)
+						throw unexpected(source, line, c);
+				}
+				else if (state == WORD || (state == LINE_START && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')))) {
+					if (word == null)
+						word = new StringBuilder();
 					
-					// Closing the buffered reader
-					br.close();
+					word.append((char) (c & 0xFF));
+					state = WORD;
+				}
+				else {
+					throw unexpected(source, line, c);
 				} // End if
-			} // End try
-			catch (IOException e) {
-				System.err.println("IOException: " + e.getLocalizedMessage());
-				System.exit(-1);
-			} // End catch
-		} // End try
-		catch(FileNotFoundException e) {
-			System.err.println("FileNotFoundException: " + e.getMessage());
-			System.exit(-1);
-		} // End catch
-				
-		return arrows;
-	} // End parseInArrows()
+			} // End for
+		} // End while
+		
+		// The last line may not end with a newline
+		if (state == Y || state == LENGTH || state == LINE_END) {
+			if (!notesStarted && timing != TimingMap.DEFAULT)
+				consumer.timing(timing);
+			
+			emit(source, line, lane, negative ? -y : y, length, timing, consumer);
+		}
+		else if (state == WORD) {
+			if (notesStarted)
+				throw new MapParseException(source, line, "tempo and scroll lines have to come before the notes");
+			
+			// Still checked, though a map with no notes has no use for its timing
+			readTiming(source, line, word.toString().trim(), (timing == TimingMap.DEFAULT) ? new TimingMap() : timing);
+		}
+		else if (state != LINE_START)
+			throw new MapParseException(source, line, "unexpected end of file");
+	} // End parse(InputStream, String, NoteConsumer)
+	
+	/**
+	 * Checks the lane of a note and hands it to the consumer.
+	 * 
+	 * @param source The name of the map.
+	 * @param line The line the note is on.
+	 * @param lane The direction of the note.
+	 * @param y The starting height of the note.
+	 * @param length How much higher the end of a hold starts, or 0.
+	 * @param timing The tempo and scroll speed changes of the map.
+	 * @param consumer Who is handed the note.
+	 * @throws MapParseException If the lane is not a direction.
+	 */
+	private static void emit(String source, long line, long lane, long y, long length, TimingMap timing,
+			NoteConsumer consumer) throws MapParseException {
+		if (lane < 1 || lane > NoteIndex.LANES)
+			throw new MapParseException(source, line, "lane " + lane + " is not between 1 and " + NoteIndex.LANES);
+		
+		long time = timing.getNoteTime(y);
+		
+		if (length == 0)
+			consumer.note((int) lane, time);
+		else
+			consumer.hold((int) lane, time, timing.getNoteTime(y + length));
+	} // End emit()
+	
+	/**
+	 * Reads a tempo or scroll speed line into the timing of the map.
+	 * 
+	 * @param source The name of the map.
+	 * @param line The line being read.
+	 * @param text The line, written as "bpm::y::beats per minute" or "scroll::y::speed".
+	 * @param timing The timing to add the change to.
+	 * @throws MapParseException If the line is not a tempo or scroll speed.
+	 */
+	private static void readTiming(String source, long line, String text, TimingMap timing) throws MapParseException {
+		String[] parts = text.split("::", -1);
+		
+		if (parts.length != 3 || !(parts[0].equals("bpm") || parts[0].equals("scroll")))
+			throw new MapParseException(source, line, "expected bpm::y::beats per minute or scroll::y::speed");
+		
+		try {
+			int height = Integer.parseInt(parts[1].trim());
+			double value = Double.parseDouble(parts[2].trim());
+			
+			if (parts[0].equals("bpm"))
+				timing.addTempo(height, value);
+			else
+				timing.addScroll(height, value);
+		}
+		catch (NumberFormatException e) {
+			throw new MapParseException(source, line, "bad number in " + parts[0] + " line");
+		}
+		catch (IllegalArgumentException e) {
+			throw new MapParseException(source, line, e.getMessage());
+		}
+	} // End readTiming()
+	
+	/**
+	 * Creates the exception for a character that does not belong.
+	 * 
+	 * @param source The name of the map.
+	 * @param line The line the character is on.
+	 * @param c The character.
+	 * @return A MapParseException describing the character.
+	 */
+	private static MapParseException unexpected(String source, long line, int c) {
+		String shown = (c >= 32 && c < 127) ? "'" + (char) c + "'" : "byte " + (c & 0xFF);
+		
+		return new MapParseException(source, line, "unexpected " + shown);
+	} // End unexpected()
+	
+	/**
+	 * Converts the starting height of a note in a .cbm file into the
+	 * time it reaches the top arrows, for maps with no tempo or scroll
+	 * speed changes, which are written for notes moving up at
+	 * NoteStore.SCROLL_SPEED.
+	 * 
+	 * @param y The starting height of the note.
+	 * @return A long of the note's time in ms.
+	 */
+	public static long toTime(int y) {
+		return ((long) (y - NoteStore.TARGET_Y) * 1000) / NoteStore.SCROLL_SPEED;
+	} // End toTime()
 } // End MapParser class
@@ -0,0 +1,56 @@
+package core;
+
+/**
+ * The MockClock class is a SongClock that only moves when it is told
+ * to, for driving the game from tests and tools without waiting on
+ * real time. Every System.nanoTime() reading is taken to be now.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class MockClock implements SongClock {
+	// The time of the chart, in ms
+	private volatile long time = 0L;
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#start()
+	 */
+	public void start() {
+		this.time = 0L;
+	} // End start()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#getTime()
+	 */
+	public long getTime() {
+		return this.time;
+	} // End getTime()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#toTime(long)
+	 */
+	public long toTime(long nanos) {
+		return this.time;
+	} // End toTime()
+	
+	/**
+	 * Sets the time of the chart.
+	 * 
+	 * @param time The chart time in ms.
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	} // End setTime()
+	
+	/**
+	 * Moves the time of the chart forward.
+	 * 
+	 * @param ms The number of ms to move by.
+	 */
+	public void advance(long ms) {
+		this.time += ms;
+	} // End advance()
+} // End MockClock class
@@ -0,0 +1,36 @@
+package core;
+
+/**
+ * The NoteConsumer interface is handed the notes of a map one at a
+ * time, in the order they appear in the map file, as the MapParser
+ * reads them.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+public interface NoteConsumer {
+	/**
+	 * Called for every note read from a map.
+	 * 
+	 * @param lane The direction of the note.
+	 * @param time When the note reaches the top arrows, in ms.
+	 */
+	public void note(int lane, long time);
+	
+	/**
+	 * Called for every hold note read from a map.
+	 * 
+	 * @param lane The direction of the note.
+	 * @param time When the note reaches the top arrows, in ms.
+	 * @param endTime When the end of the hold reaches the top arrows, in ms.
+	 */
+	public void hold(int lane, long time, long endTime);
+	
+	/**
+	 * Called before the first note if the map changes tempo or scroll
+	 * speed. Maps that do not call it use TimingMap.DEFAULT.
+	 * 
+	 * @param timing The timing of the map.
+	 */
+	public void timing(TimingMap timing);
+} // End NoteConsumer interface
@@ -0,0 +1,160 @@
+package core;
+
+/**
+ * The NoteIndex class keeps the notes of a map split up by lane and
+ * sorted by when they reach the top arrows. Each lane has a cursor to
+ * its next judgeable note so a key press only looks at the few notes
+ * of its own lane that are close enough to score.
+ * 
+ * @version 1.3
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class NoteIndex {
+	// Number of lanes (Left, Down, Up, Right)
+	public static final int LANES = 4;
+	
+	// The notes being indexed
+	private NoteStore notes;
+	
+	// The note indexes of each lane, sorted by time
+	private int[][] lanes = new int[LANES][];
+	
+	// The next note in each lane that has not passed or been hit
+	private int[] cursors = new int[LANES];
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor splits the notes into lanes and sorts them
+	 * by the time they reach the top arrows.
+	 * 
+	 * @param notes The notes of the map.
+	 */
+	public NoteIndex(NoteStore notes) {
+		this.notes = notes;
+		
+		int[] counts = new int[LANES];
+		
+		for (int i = 0; i < notes.size(); i++) {
+			int lane = notes.getLane(i) - 1;
+			
+			if (lane >= 0 && lane < LANES)
+				counts[lane]++;
+		} // End for
+		
+		for (int lane = 0; lane < LANES; lane++)
+			this.lanes[lane] = new int[counts[lane]];
+		
+		/*
+		 * Packing the time and index into one long sorts by
+		 * time first and keeps notes with the same time in
+		 * map order.
+		 */
+		long[][] keys = new long[LANES][];
+		
+		for (int lane = 0; lane < LANES; lane++)
+			keys[lane] = new long[counts[lane]];
+		
+		Arrays.fill(counts, 0);
+		
+		for (int i = 0; i < notes.size(); i++) {
+			int lane = notes.getLane(i) - 1;
+			
+			if (lane >= 0 && lane < LANES)
+				keys[lane][counts[lane]++] = (notes.getTime(i) << 32) | i;
+		} // End for
+		
+		for (int lane = 0; lane < LANES; lane++) {
+			Arrays.sort(keys[lane]);
+			
+			for (int k = 0; k < keys[lane].length; k++)
+				this.lanes[lane][k] = (int) keys[lane][k];
+		} // End for
+	} // End NoteIndex(NoteStore)
+	// End Constructor(s)
+	
+	/**
+	 * Judges a key press against the closest unhit note in the pressed
+	 * lane. The note that scores is marked as hit.
+	 * 
+	 * @param dir The direction that was pressed.
+	 * @param time When the key was pressed, in ms.
+	 * @return The index of the note that was hit, or -1 if none scored.
+	 */
+	public int judge(int dir, long time) {
+		int lane = dir - 1;
+		
+		if (lane < 0 || lane >= LANES)
+			return -1;
+		
+		int[] laneNotes = this.lanes[lane];
+		
+		/*
+		 * Notes before the window can never score again, so the
+		 * cursor only ever moves forward through the lane.
+		 */
+		int i = lowerBound(laneNotes, this.cursors[lane], time - Judgement.HIT_WINDOW);
+		
+		while (i < laneNotes.length && this.notes.getState(laneNotes[i]) != NoteStore.WAITING)
+			i++;
+		
+		this.cursors[lane] = i;
+		
+		// Finding the closest note inside the window
+		int best = -1;
+		long bestDiff = Long.MAX_VALUE;
+		
+		for (; i < laneNotes.length; i++) {
+			int note = laneNotes[i];
+			long diff = this.notes.getTime(note) - time;
+			
+			if (diff > Judgement.HIT_WINDOW)
+				break;
+			
+			if (this.notes.getState(note) == NoteStore.WAITING && Math.abs(diff) < bestDiff) {
+				best = note;
+				bestDiff = Math.abs(diff);
+			}
+		} // End for
+		
+		if (best != -1)
+			this.notes.setState(best, NoteStore.HIT);
+		
+		return best;
+	} // End judge()
+	
+	/**
+	 * Moves every lane cursor back to the first note, for
+	 * when the notes have been reset.
+	 */
+	public void reset() {
+		Arrays.fill(this.cursors, 0);
+	} // End reset()
+	
+	/**
+	 * Finds the first note at or after the given time.
+	 * 
+	 * @param laneNotes The sorted note indexes of a lane.
+	 * @param from The index to start searching from.
+	 * @param time The time to search for, in ms.
+	 * @return The index of the first note with a time of at least time.
+	 */
+	private int lowerBound(int[] laneNotes, int from, long time) {
+		int lo = from;
+		int hi = laneNotes.length;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (this.notes.getTime(laneNotes[mid]) < time)
+				lo = mid + 1;
+			else
+				hi = mid;
+		} // End while
+		
+		return lo;
+	} // End lowerBound()
+} // End NoteIndex class
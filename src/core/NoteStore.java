@@ -0,0 +1,529 @@
+package core;
+
+/**
+ * The NoteStore class holds every note of a map in parallel primitive
+ * arrays instead of one Arrow and Position object per note. Updating
+ * and drawing the notes walks these arrays in order, so a frame never
+ * allocates or follows pointers from note to note.
+ * 
+ * Notes are stored by the time (in ms) they reach the top arrows. Where
+ * a note is drawn is worked out from that time and the current time of
+ * the map, so notes move at the same speed at any frame rate. How far
+ * each note has scrolled is worked out from the map's TimingMap when it
+ * is added, so placing a note only takes a subtraction even when the
+ * tempo and scroll speed change. A hold note also has the time its end
+ * reaches the top arrows; any other note ends at its own time.
+ * 
+ * Once the notes are sorted by time, only the notes between the top
+ * of the screen and just below its bottom are active. Moving the map
+ * forward activates notes as they come up and retires them as they
+ * pass the top, so the work per frame depends on how many notes are
+ * on screen rather than how many are in the map. Notes stop being
+ * judged a fixed time after they reach the top arrows, whatever the
+ * scroll speed, but are drawn until they (or the end of their hold)
+ * have scrolled off the top of the screen, so a slow scroll or a stop
+ * does not take notes off the screen early.
+ * 
+ * @version 1.6
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class NoteStore implements NoteConsumer {
+	// Tile size for the game
+	private static final int TILE_SIZE = 50;
+	
+	// Capacity used when none is given
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	// The height of the top arrows that notes are judged against
+	public static final int TARGET_Y = TILE_SIZE;
+	
+	// How fast the notes move up, in pixels per second
+	public static final int SCROLL_SPEED = 160;
+	
+	// Notes become active once they are this high up (the screen plus a tile)
+	public static final int ACTIVE_HEIGHT = 600 + TILE_SIZE;
+	
+	// How long after its time a note goes past the top at the normal scroll speed
+	public static final long PASS_TIME = ((long) TARGET_Y * 1000) / SCROLL_SPEED + 1;
+	
+	// How far past the top arrows a note has scrolled once it is off the top of the screen
+	public static final int PASS_HEIGHT = TARGET_Y + TILE_SIZE;
+	
+	/*
+	 * The states a note can be in:
+	 * WAITING = Still moving up towards the top arrows (or past them)
+	 * HIT = Scored by the player
+	 * GONE = Moved past the top of the screen
+	 */
+	public static final int WAITING = 0;
+	public static final int HIT = 1;
+	public static final int GONE = 2;
+	
+	// Number of notes in the store
+	private int size = 0;
+	
+	// The direction of each note (1 = Left, 2 = Down, 3 = Up, 4 = Right)
+	private int[] lanes;
+	
+	// When each note reaches the top arrows, in ms
+	private long[] times;
+	
+	// When the end of each note reaches the top arrows, in ms
+	private long[] ends;
+	
+	// How far the notes have scrolled when each note and its end reach the top arrows
+	private double[] scrolls;
+	private double[] endScrolls;
+	
+	// The tempo and scroll speed changes of the map
+	private TimingMap timing = TimingMap.DEFAULT;
+	
+	// The state of each note
+	private int[] states;
+	
+	// The current time of the map, in ms, and how far the notes have scrolled by then
+	private long now = 0;
+	private double nowScroll = 0;
+	
+	// Whether the notes were added in order of time
+	private boolean sorted = true;
+	
+	// The active notes are from firstActive up to (not including) activeEnd
+	private int firstActive = 0;
+	private int activeEnd = 0;
+	
+	// Notes before firstDrawn, and the ends of their holds, have scrolled off the screen
+	private int firstDrawn = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates an empty store.
+	 */
+	public NoteStore() {
+		this(DEFAULT_CAPACITY);
+	} // End NoteStore()
+	
+	/**
+	 * This constructor creates an empty store with room for the given
+	 * number of notes.
+	 * 
+	 * @param capacity The number of notes to make room for.
+	 */
+	public NoteStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		
+		this.lanes = new int[capacity];
+		this.times = new long[capacity];
+		this.ends = new long[capacity];
+		this.states = new int[capacity];
+		this.scrolls = new double[capacity];
+		this.endScrolls = new double[capacity];
+	} // End NoteStore(int)
+	// End Constructor(s)
+	
+	/**
+	 * Adds a note to the store. This is only meant to be called while
+	 * loading a map since the arrays may have to grow.
+	 * 
+	 * @param lane The direction of the note.
+	 * @param time When the note reaches the top arrows, in ms.
+	 * @return The index of the new note.
+	 */
+	public int add(int lane, long time) {
+		return add(lane, time, time);
+	} // End add(int, long)
+	
+	/**
+	 * Adds a hold note to the store. This is only meant to be called
+	 * while loading a map since the arrays may have to grow.
+	 * 
+	 * @param lane The direction of the note.
+	 * @param time When the note reaches the top arrows, in ms.
+	 * @param endTime When the end of the hold reaches the top arrows, in ms.
+	 * @return The index of the new note.
+	 */
+	public int add(int lane, long time, long endTime) {
+		if (this.size == this.lanes.length) {
+			int capacity = this.size * 2;
+			
+			this.lanes = Arrays.copyOf(this.lanes, capacity);
+			this.times = Arrays.copyOf(this.times, capacity);
+			this.ends = Arrays.copyOf(this.ends, capacity);
+			this.states = Arrays.copyOf(this.states, capacity);
+			this.scrolls = Arrays.copyOf(this.scrolls, capacity);
+			this.endScrolls = Arrays.copyOf(this.endScrolls, capacity);
+		} // End if
+		
+		if (this.size > 0 && time < this.times[this.size - 1])
+			this.sorted = false;
+		
+		this.lanes[this.size] = lane;
+		this.times[this.size] = time;
+		this.ends[this.size] = Math.max(time, endTime);
+		this.states[this.size] = WAITING;
+		placeNote(this.size);
+		
+		return this.size++;
+	} // End add(int, long, long)
+	
+	/**
+	 * Works out how far the notes have scrolled when a note and its
+	 * end reach the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 */
+	private void placeNote(int i) {
+		this.scrolls[i] = this.timing.getScrollPosition(this.times[i]);
+		this.endScrolls[i] = this.timing.getScrollPosition(this.ends[i]);
+	} // End placeNote()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#note(int, long)
+	 */
+	public void note(int lane, long time) {
+		add(lane, time);
+	} // End note()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#hold(int, long, long)
+	 */
+	public void hold(int lane, long time, long endTime) {
+		add(lane, time, endTime);
+	} // End hold()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.NoteConsumer#timing(core.TimingMap)
+	 */
+	public void timing(TimingMap timing) {
+		this.timing = timing;
+		this.nowScroll = timing.getScrollPosition(this.now);
+		
+		for (int i = 0; i < this.size; i++)
+			placeNote(i);
+	} // End timing()
+	
+	/**
+	 * Moves the map forward to the given time. Notes that come up to
+	 * the bottom of the screen become active, and active notes that are
+	 * now past the top are retired; the ones that were never hit are
+	 * marked as gone. Retired notes are still drawn until they have
+	 * scrolled off the screen. Only the notes that change are looked at, so the
+	 * notes have to be sorted by time.
+	 * 
+	 * @param time The current time of the map, in ms.
+	 * @return An int of the number of notes that went past the top.
+	 */
+	public int advanceTo(long time) {
+		int gone = 0;
+		this.now = time;
+		this.nowScroll = this.timing.getScrollPosition(time);
+		
+		// Scroll speeds are never below 0, so notes come on screen in order of time
+		while (this.activeEnd < this.size && getYCoord(this.activeEnd) <= ACTIVE_HEIGHT)
+			this.activeEnd++;
+		
+		while (this.firstActive < this.activeEnd && time - this.times[this.firstActive] >= PASS_TIME) {
+			if (this.states[this.firstActive] == WAITING) {
+				this.states[this.firstActive] = GONE;
+				gone++;
+			}
+			
+			this.firstActive++;
+		} // End while
+		
+		while (this.firstDrawn < this.firstActive && isOffScreen(this.firstDrawn))
+			this.firstDrawn++;
+		
+		return gone;
+	} // End advanceTo()
+	
+	/**
+	 * Sorts the notes by time, keeping notes with the same time in the
+	 * order they were added. This is only meant to be called while
+	 * loading a map since it changes the index of each note.
+	 */
+	public void sortByTime() {
+		long[] keys = new long[this.size];
+		
+		// Packing the time and index together gives a stable sort
+		for (int i = 0; i < this.size; i++)
+			keys[i] = (this.times[i] << 32) | i;
+		
+		Arrays.sort(keys);
+		
+		int[] sortedLanes = new int[this.lanes.length];
+		long[] sortedTimes = new long[this.times.length];
+		long[] sortedEnds = new long[this.ends.length];
+		int[] sortedStates = new int[this.states.length];
+		double[] sortedScrolls = new double[this.scrolls.length];
+		double[] sortedEndScrolls = new double[this.endScrolls.length];
+		
+		for (int k = 0; k < this.size; k++) {
+			int i = (int) keys[k];
+			
+			sortedLanes[k] = this.lanes[i];
+			sortedTimes[k] = this.times[i];
+			sortedEnds[k] = this.ends[i];
+			sortedStates[k] = this.states[i];
+			sortedScrolls[k] = this.scrolls[i];
+			sortedEndScrolls[k] = this.endScrolls[i];
+		} // End for
+		
+		this.lanes = sortedLanes;
+		this.times = sortedTimes;
+		this.ends = sortedEnds;
+		this.states = sortedStates;
+		this.scrolls = sortedScrolls;
+		this.endScrolls = sortedEndScrolls;
+		this.sorted = true;
+	} // End sortByTime()
+	
+	/**
+	 * Puts the map back to its start with every note
+	 * waiting to be hit, so it can be played again.
+	 */
+	public void reset() {
+		this.now = 0;
+		this.nowScroll = this.timing.getScrollPosition(0);
+		this.firstActive = 0;
+		this.activeEnd = 0;
+		this.firstDrawn = 0;
+		
+		for (int i = 0; i < this.size; i++)
+			this.states[i] = WAITING;
+	} // End reset()
+	
+	/**
+	 * Copies the notes into a new store at the start of the map, so
+	 * more than one game can play the same map at once.
+	 * 
+	 * @return A new NoteStore with the same notes, all waiting.
+	 */
+	public NoteStore copy() {
+		NoteStore copy = new NoteStore(this.size);
+		
+		System.arraycopy(this.lanes, 0, copy.lanes, 0, this.size);
+		System.arraycopy(this.times, 0, copy.times, 0, this.size);
+		System.arraycopy(this.ends, 0, copy.ends, 0, this.size);
+		System.arraycopy(this.scrolls, 0, copy.scrolls, 0, this.size);
+		System.arraycopy(this.endScrolls, 0, copy.endScrolls, 0, this.size);
+		copy.size = this.size;
+		copy.sorted = this.sorted;
+		copy.timing = this.timing;
+		copy.nowScroll = this.timing.getScrollPosition(0);
+		
+		return copy;
+	} // End copy()
+	
+	/**
+	 * Checks if the notes are in order of time.
+	 * 
+	 * @return True if no note comes before the note added ahead of it.
+	 */
+	public boolean isSorted() {
+		return this.sorted;
+	} // End isSorted()
+	
+	/**
+	 * Gets the first active note.
+	 * 
+	 * @return The index of the first note that has not passed the top.
+	 */
+	public int getFirstActive() {
+		return this.firstActive;
+	} // End getFirstActive()
+	
+	/**
+	 * Gets the first note that may still have to be drawn, which is
+	 * before the first active note while a retired note or the end of
+	 * a hold is still on screen.
+	 * 
+	 * @return The index of the first note that may not have scrolled off the screen.
+	 */
+	public int getFirstDrawn() {
+		return this.firstDrawn;
+	} // End getFirstDrawn()
+	
+	/**
+	 * Gets the end of the active notes.
+	 * 
+	 * @return The index after the last note that has come up on screen.
+	 */
+	public int getActiveEnd() {
+		return this.activeEnd;
+	} // End getActiveEnd()
+	
+	/**
+	 * Gets the number of notes in the store.
+	 * 
+	 * @return An int of the number of notes.
+	 */
+	public int size() {
+		return this.size;
+	} // End size()
+	
+	/**
+	 * Gets the direction of a note.
+	 * 
+	 * @param i The index of the note.
+	 * @return An int representing the note's direction.
+	 */
+	public int getLane(int i) {
+		return this.lanes[i];
+	} // End getLane()
+	
+	/**
+	 * Gets when a note reaches the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A long of the note's time in ms.
+	 */
+	public long getTime(int i) {
+		return this.times[i];
+	} // End getTime()
+	
+	/**
+	 * Gets when the end of a note reaches the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A long of the time in ms, the note's own time if it is not a hold.
+	 */
+	public long getEndTime(int i) {
+		return this.ends[i];
+	} // End getEndTime()
+	
+	/**
+	 * Checks if a note is a hold.
+	 * 
+	 * @param i The index of the note.
+	 * @return True if the end of the note comes after its time.
+	 */
+	public boolean isHold(int i) {
+		return this.ends[i] > this.times[i];
+	} // End isHold()
+	
+	/**
+	 * Gets how far the notes have scrolled when a note reaches the
+	 * top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A double of the scroll position in pixels.
+	 */
+	public double getScroll(int i) {
+		return this.scrolls[i];
+	} // End getScroll()
+	
+	/**
+	 * Gets how far the notes have scrolled when the end of a note
+	 * reaches the top arrows.
+	 * 
+	 * @param i The index of the note.
+	 * @return A double of the scroll position in pixels.
+	 */
+	public double getEndScroll(int i) {
+		return this.endScrolls[i];
+	} // End getEndScroll()
+	
+	/**
+	 * Gets the tempo and scroll speed changes of the map.
+	 * 
+	 * @return The TimingMap of the notes.
+	 */
+	public TimingMap getTiming() {
+		return this.timing;
+	} // End getTiming()
+	
+	/**
+	 * Gets the x-coord of a note, which is decided by its direction.
+	 * 
+	 * @param i The index of the note.
+	 * @return An int of the x-coord.
+	 */
+	public int getXCoord(int i) {
+		return (this.lanes[i] * TILE_SIZE) - TILE_SIZE;
+	} // End getXCoord()
+	
+	/**
+	 * Checks if a note, and the end of its hold, have scrolled off the
+	 * top of the screen at the current time of the map.
+	 * 
+	 * @param i The index of the note.
+	 * @return True if no part of the note is on screen.
+	 */
+	public boolean isOffScreen(int i) {
+		return this.nowScroll - this.endScrolls[i] > PASS_HEIGHT;
+	} // End isOffScreen()
+	
+	/**
+	 * Gets the y-coord of a note at the current time of the map.
+	 * 
+	 * @param i The index of the note.
+	 * @return An int of the y-coord.
+	 */
+	public int getYCoord(int i) {
+		return TARGET_Y + (int) (this.scrolls[i] - this.nowScroll);
+	} // End getYCoord()
+	
+	/**
+	 * Gets the current time of the map.
+	 * 
+	 * @return A long of the time in ms.
+	 */
+	public long getNow() {
+		return this.now;
+	} // End getNow()
+	
+	/**
+	 * Gets the state of a note.
+	 * 
+	 * @param i The index of the note.
+	 * @return An int of WAITING, HIT or GONE.
+	 */
+	public int getState(int i) {
+		return this.states[i];
+	} // End getState()
+	
+	/**
+	 * Sets the state of a note.
+	 * 
+	 * @param i The index of the note.
+	 * @param state WAITING, HIT or GONE.
+	 */
+	public void setState(int i, int state) {
+		this.states[i] = state;
+	} // End setState()
+	
+	/**
+	 * Creates an Arrow that reads a note of this store. The arrow
+	 * can mark the note hit but cannot move it.
+	 * 
+	 * @param i The index of the note.
+	 * @return An Arrow backed by this store.
+	 */
+	public Arrow getArrow(int i) {
+		return new Arrow(this, i);
+	} // End getArrow()
+	
+	/**
+	 * Creates Arrows for every note in the store, for code that still
+	 * works with lists of arrows.
+	 * 
+	 * @return An arraylist of arrows backed by this store.
+	 */
+	public ArrayList<Arrow> toArrows() {
+		ArrayList<Arrow> arrows = new ArrayList<Arrow>(this.size);
+		
+		for (int i = 0; i < this.size; i++)
+			arrows.add(getArrow(i));
+		
+		return arrows;
+	} // End toArrows()
+} // End NoteStore class
@@ -0,0 +1,253 @@
+package core;
+
+/**
+ * The Player class holds everything one player has in a GameEngine:
+ * their own state for every note of the map, the index and cursors
+ * used to judge their key presses, the presses waiting for their time
+ * and the score. The map and its timeline are the same for every
+ * player; only what each player has done to it is kept here.
+ * 
+ * @version 1.1
+ * @since 1.1
+ */
+public class Player {
+	// Number of key presses the queue starts with room for
+	private static final int INPUT_CAPACITY = 64;
+	
+	// Which player this is, from 0
+	private final int number;
+	
+	// The notes as this player has played them and the index used to judge them
+	private NoteStore notes;
+	private NoteIndex noteIndex;
+	
+	// Key presses waiting for their time, kept in the order given
+	private long[] inputTimes = new long[INPUT_CAPACITY];
+	private int[] inputLanes = new int[INPUT_CAPACITY];
+	private int inputHead = 0;
+	private int inputCount = 0;
+	
+	// Where key presses are recorded as they are handed in (may be null)
+	private Replay recorder;
+	
+	// Score keeping
+	private long score = 0;
+	private int hits = 0;
+	private int misses = 0;
+	
+	// Notes that had been hit or gone past when a patch took them out of the map
+	private int retired = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a player at the start of a map.
+	 * 
+	 * @param number Which player this is, from 0.
+	 * @param notes The notes of the map, sorted by time, for this player alone.
+	 */
+	public Player(int number, NoteStore notes) {
+		this.number = number;
+		this.notes = notes;
+		this.noteIndex = new NoteIndex(notes);
+	} // End Player(int, NoteStore)
+	// End Constructor(s)
+	
+	/**
+	 * Hands in a key press to be judged at the given time.
+	 * 
+	 * @param atTime The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 * @param engineTime The time the engine is at, for the replay.
+	 */
+	void submitInput(long atTime, int lane, long engineTime) {
+		if (this.inputCount == this.inputTimes.length)
+			growInputs();
+		
+		int slot = (this.inputHead + this.inputCount) % this.inputTimes.length;
+		this.inputTimes[slot] = atTime;
+		this.inputLanes[slot] = lane;
+		this.inputCount++;
+		
+		if (this.recorder != null)
+			this.recorder.add(engineTime, atTime, lane);
+	} // End submitInput()
+	
+	/**
+	 * Judges the key presses up to a time, then counts the notes
+	 * that have gone past the top as misses.
+	 * 
+	 * @param newTime The time presses are judged up to, in ms.
+	 * @param time The time of the map the engine is at, in ms.
+	 * @param listener Who is told about judged presses (may be null).
+	 */
+	void update(long newTime, long time, JudgementListener listener) {
+		while (this.inputCount > 0 && this.inputTimes[this.inputHead] <= newTime) {
+			judge(this.inputTimes[this.inputHead], this.inputLanes[this.inputHead], listener);
+			
+			this.inputHead = (this.inputHead + 1) % this.inputTimes.length;
+			this.inputCount--;
+		} // End while
+		
+		this.misses += this.notes.advanceTo(time);
+	} // End update()
+	
+	/**
+	 * Judges a key press against the notes of its lane.
+	 * 
+	 * @param pressTime The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 * @param listener Who is told about the press (may be null).
+	 */
+	private void judge(long pressTime, int lane, JudgementListener listener) {
+		if (lane < 1 || lane > NoteIndex.LANES)
+			return;
+		
+		int note = this.noteIndex.judge(lane, pressTime);
+		int points = 0;
+		
+		if (note != -1) {
+			points = Judgement.scorePoints(pressTime - this.notes.getTime(note));
+			this.score += points;
+			this.hits++;
+		}
+		
+		if (listener != null)
+			listener.judged(this.number, pressTime, lane, note, points);
+	} // End judge()
+	
+	/**
+	 * Doubles the room in the key press queue.
+	 */
+	private void growInputs() {
+		int capacity = this.inputTimes.length * 2;
+		long[] times = new long[capacity];
+		int[] lanes = new int[capacity];
+		
+		for (int i = 0; i < this.inputCount; i++) {
+			int slot = (this.inputHead + i) % this.inputTimes.length;
+			times[i] = this.inputTimes[slot];
+			lanes[i] = this.inputLanes[slot];
+		} // End for
+		
+		this.inputTimes = times;
+		this.inputLanes = lanes;
+		this.inputHead = 0;
+	} // End growInputs()
+	
+	/**
+	 * Swaps in a new version of the map. Notes in both versions keep
+	 * whether they were hit or have gone past, and the score so far
+	 * is kept. Notes added behind the current time go past straight
+	 * away and count as misses.
+	 * 
+	 * @param patch The change to the map, worked out from this player's notes.
+	 */
+	void applyPatch(ChartPatch patch) {
+		NoteStore store = patch.getNotes(this.number);
+		
+		for (int i = 0; i < this.notes.size(); i++) {
+			int note = patch.getNewIndex(i);
+			int state = this.notes.getState(i);
+			
+			if (note != -1)
+				store.setState(note, state);
+			else if (state != NoteStore.WAITING)
+				this.retired++;
+		} // End for
+		
+		this.misses += store.advanceTo(this.notes.getNow());
+		this.notes = store;
+		this.noteIndex = patch.getIndex(this.number);
+	} // End applyPatch()
+	
+	/**
+	 * Puts the player back to the start of the map.
+	 */
+	void reset() {
+		this.notes.reset();
+		this.noteIndex.reset();
+		
+		this.inputHead = 0;
+		this.inputCount = 0;
+		this.score = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.retired = 0;
+	} // End reset()
+	
+	/**
+	 * Gets the time of the last key press waiting to be judged.
+	 * 
+	 * @param time The time to give if none is waiting, in ms.
+	 * @return A long of the time in ms.
+	 */
+	long getLastInputTime(long time) {
+		if (this.inputCount == 0)
+			return time;
+		
+		return this.inputTimes[(this.inputHead + this.inputCount - 1) % this.inputTimes.length];
+	} // End getLastInputTime()
+	
+	/**
+	 * Checks if every note has been hit or gone past the top.
+	 * 
+	 * @return True if nothing is left for this player to play.
+	 */
+	public boolean isFinished() {
+		return (this.hits + this.misses - this.retired) >= this.notes.size();
+	} // End isFinished()
+	
+	/**
+	 * Sets the replay that key presses are recorded into.
+	 * 
+	 * @param recorder The replay to record into, or null to stop recording.
+	 */
+	public void setReplay(Replay recorder) {
+		this.recorder = recorder;
+	} // End setReplay()
+	
+	/**
+	 * Gets which player this is.
+	 * 
+	 * @return An int of the player, from 0.
+	 */
+	public int getNumber() {
+		return this.number;
+	} // End getNumber()
+	
+	/**
+	 * Gets the notes as this player has played them.
+	 * 
+	 * @return The NoteStore of this player.
+	 */
+	public NoteStore getNotes() {
+		return this.notes;
+	} // End getNotes()
+	
+	/**
+	 * Gets the total points scored.
+	 * 
+	 * @return A long of the score.
+	 */
+	public long getScore() {
+		return this.score;
+	} // End getScore()
+	
+	/**
+	 * Gets the number of notes hit.
+	 * 
+	 * @return An int of the hits.
+	 */
+	public int getHits() {
+		return this.hits;
+	} // End getHits()
+	
+	/**
+	 * Gets the number of notes that went past the top without being hit.
+	 * 
+	 * @return An int of the misses.
+	 */
+	public int getMisses() {
+		return this.misses;
+	} // End getMisses()
+} // End Player class
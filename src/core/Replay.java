@@ -0,0 +1,411 @@
+package core;
+
+/**
+ * The Replay class holds every key press handed to a GameEngine during
+ * a game, with the hash of the chart and the result, so the game can
+ * be played back without a display and the result checked. Each press
+ * keeps the time it was pressed at and the time the engine had reached
+ * when it was handed in; playing back moves the engine to the same
+ * times in the same order, so it gives exactly the same score.
+ * 
+ * A replay file (.cbrr) is big-endian and starts with a 36 byte header:
+ *   int   magic ("CBRR")
+ *   short version
+ *   short reserved (0)
+ *   long  hash of the chart
+ *   long  score
+ *   int   hits
+ *   int   misses
+ *   int   number of presses
+ * followed by two varints per press (7 bits a byte, low bits first):
+ *   engine time minus the engine time of the press before, in ms
+ *   (press time minus engine time, zigzag encoded) * 4 + (lane - 1)
+ * Presses are usually handed in within a ms of being made, so most
+ * take 2 or 3 bytes.
+ * 
+ * @version 1.2
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class Replay {
+	// "CBRR" in ASCII
+	public static final int MAGIC = 0x43425252;
+	
+	// The version of the format written
+	public static final short VERSION = 1;
+	
+	// Size of the header, in bytes
+	private static final int HEADER_SIZE = 36;
+	
+	// Presses the arrays start with room for
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	// The chart the replay was played on
+	private long chartHash;
+	
+	// The presses, in the order they were handed in
+	private long[] engineTimes;
+	private long[] pressTimes;
+	private int[] lanes;
+	private int size = 0;
+	
+	// The result of the game
+	private long score = 0L;
+	private int hits = 0;
+	private int misses = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates an empty replay of a chart.
+	 * 
+	 * @param chartHash The hash of the chart, from hashChart().
+	 */
+	public Replay(long chartHash) {
+		this(chartHash, DEFAULT_CAPACITY);
+	} // End Replay(long)
+	
+	/**
+	 * This constructor creates an empty replay with room for a given
+	 * number of presses.
+	 * 
+	 * @param chartHash The hash of the chart, from hashChart().
+	 * @param capacity The number of presses to make room for.
+	 */
+	public Replay(long chartHash, int capacity) {
+		this.chartHash = chartHash;
+		this.engineTimes = new long[Math.max(capacity, 1)];
+		this.pressTimes = new long[this.engineTimes.length];
+		this.lanes = new int[this.engineTimes.length];
+	} // End Replay(long, int)
+	// End Constructor(s)
+	
+	/**
+	 * Works out the hash of a chart from the lane and time of every
+	 * note and the end of every hold, in order (64 bit FNV-1a).
+	 * 
+	 * @param notes The notes of the chart, sorted by time.
+	 * @return A long of the hash.
+	 */
+	public static long hashChart(NoteStore notes) {
+		long hash = 0xcbf29ce484222325L;
+		
+		for (int i = 0; i < notes.size(); i++) {
+			hash = (hash ^ notes.getLane(i)) * 0x100000001b3L;
+			
+			long time = notes.getTime(i);
+			
+			for (int b = 0; b < 64; b += 8)
+				hash = (hash ^ ((time >>> b) & 0xFF)) * 0x100000001b3L;
+			
+			// Only holds add their end, so charts without them hash as they always did
+			if (notes.isHold(i)) {
+				long end = notes.getEndTime(i);
+				
+				for (int b = 0; b < 64; b += 8)
+					hash = (hash ^ ((end >>> b) & 0xFF)) * 0x100000001b3L;
+			}
+		} // End for
+		
+		return hash;
+	} // End hashChart()
+	
+	/**
+	 * Adds a press handed to the engine.
+	 * 
+	 * @param engineTime The time the engine was at when the press was handed in, in ms.
+	 * @param pressTime The time the key was pressed at, in ms.
+	 * @param lane The direction that was pressed.
+	 */
+	public void add(long engineTime, long pressTime, int lane) {
+		if (this.size == this.lanes.length) {
+			int capacity = this.lanes.length * 2;
+			long[] moreEngineTimes = new long[capacity];
+			long[] morePressTimes = new long[capacity];
+			int[] moreLanes = new int[capacity];
+			
+			System.arraycopy(this.engineTimes, 0, moreEngineTimes, 0, this.size);
+			System.arraycopy(this.pressTimes, 0, morePressTimes, 0, this.size);
+			System.arraycopy(this.lanes, 0, moreLanes, 0, this.size);
+			
+			this.engineTimes = moreEngineTimes;
+			this.pressTimes = morePressTimes;
+			this.lanes = moreLanes;
+		} // End if
+		
+		this.engineTimes[this.size] = engineTime;
+		this.pressTimes[this.size] = pressTime;
+		this.lanes[this.size] = lane;
+		this.size++;
+	} // End add()
+	
+	/**
+	 * Records the result of the game.
+	 * 
+	 * @param engine The engine the game was played on.
+	 */
+	public void setResult(GameEngine engine) {
+		this.score = engine.getScore();
+		this.hits = engine.getHits();
+		this.misses = engine.getMisses();
+	} // End setResult()
+	
+	/**
+	 * Plays the replay on an engine at the start of the chart, as fast
+	 * as it can, to the end of the chart. The engine must not be
+	 * recording into this replay.
+	 * 
+	 * @param engine The engine to play on.
+	 */
+	public void playInto(GameEngine engine) {
+		for (int i = 0; i < this.size; i++) {
+			engine.update(this.engineTimes[i]);
+			engine.submitInput(this.pressTimes[i], this.lanes[i]);
+		} // End for
+		
+		engine.runToEnd();
+	} // End playInto()
+	
+	/**
+	 * Checks an engine that has played this replay got the result
+	 * that was recorded.
+	 * 
+	 * @param engine The engine after playInto().
+	 * @return True if the score, hits and misses all match.
+	 */
+	public boolean matches(GameEngine engine) {
+		return engine.getScore() == this.score && engine.getHits() == this.hits
+				&& engine.getMisses() == this.misses;
+	} // End matches()
+	
+	/**
+	 * Writes the replay to a file.
+	 * 
+	 * @param filename The .cbrr file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(String filename) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(filename))));
+		
+		try {
+			write(out);
+		}
+		finally {
+			out.close();
+		}
+	} // End write(String)
+	
+	/**
+	 * Writes the replay to a stream.
+	 * 
+	 * @param out The stream to write to.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(0);
+		out.writeLong(this.chartHash);
+		out.writeLong(this.score);
+		out.writeInt(this.hits);
+		out.writeInt(this.misses);
+		out.writeInt(this.size);
+		
+		long lastEngineTime = 0L;
+		
+		for (int i = 0; i < this.size; i++) {
+			long offset = this.pressTimes[i] - this.engineTimes[i];
+			long zigzag = (offset << 1) ^ (offset >> 63);
+			
+			writeVarint(out, this.engineTimes[i] - lastEngineTime);
+			writeVarint(out, (zigzag << 2) | (this.lanes[i] - 1));
+			
+			lastEngineTime = this.engineTimes[i];
+		} // End for
+	} // End write(DataOutputStream)
+	
+	/**
+	 * Writes a value 7 bits a byte, low bits first, with the top bit
+	 * of each byte set when more bytes follow.
+	 * 
+	 * @param out The stream to write to.
+	 * @param value The value, read as unsigned.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	private static void writeVarint(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0L) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		out.write((int) value);
+	} // End writeVarint()
+	
+	/**
+	 * Reads a replay file.
+	 * 
+	 * @param filename The .cbrr file to read.
+	 * @return The replay.
+	 * @throws IOException If the file cannot be read or is not a replay.
+	 */
+	public static Replay read(String filename) throws IOException {
+		return read(ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename))), filename);
+	} // End read(String)
+	
+	/**
+	 * Reads a replay from a buffer holding a whole replay file.
+	 * 
+	 * @param buffer The buffer, positioned at the start of the replay.
+	 * @param source The name of the replay, used in error messages.
+	 * @return The replay.
+	 * @throws IOException If the buffer is not a replay.
+	 */
+	public static Replay read(ByteBuffer buffer, String source) throws IOException {
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException(source + " is not a replay");
+		
+		short version = buffer.getShort();
+		
+		if (version != VERSION)
+			throw new IOException(source + " is version " + version + ", only version " + VERSION + " can be read");
+		
+		buffer.getShort();
+		
+		long chartHash = buffer.getLong();
+		long score = buffer.getLong();
+		int hits = buffer.getInt();
+		int misses = buffer.getInt();
+		int size = buffer.getInt();
+		
+		// Every press takes at least 2 bytes
+		if (size < 0 || size > buffer.remaining() / 2)
+			throw new IOException(source + " is cut short, expected " + size + " presses");
+		
+		Replay replay = new Replay(chartHash, size);
+		long engineTime = 0L;
+		
+		for (int i = 0; i < size; i++) {
+			engineTime += readVarint(buffer, source);
+			
+			long packed = readVarint(buffer, source);
+			long zigzag = packed >>> 2;
+			long offset = (zigzag >>> 1) ^ -(zigzag & 1);
+			
+			replay.add(engineTime, engineTime + offset, (int) (packed & 3) + 1);
+		} // End for
+		
+		replay.score = score;
+		replay.hits = hits;
+		replay.misses = misses;
+		
+		return replay;
+	} // End read(ByteBuffer, String)
+	
+	/**
+	 * Reads a value written by writeVarint().
+	 * 
+	 * @param buffer The buffer to read from.
+	 * @param source The name of the replay, used in error messages.
+	 * @return A long of the value.
+	 * @throws IOException If the value runs past the end of the buffer.
+	 */
+	private static long readVarint(ByteBuffer buffer, String source) throws IOException {
+		long value = 0L;
+		
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (!buffer.hasRemaining())
+				throw new IOException(source + " is cut short");
+			
+			int b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			
+			if ((b & 0x80) == 0)
+				return value;
+		} // End for
+		
+		throw new IOException(source + " has a bad number");
+	} // End readVarint()
+	
+	/**
+	 * Gets the hash of the chart the replay was played on.
+	 * 
+	 * @return A long of the hash.
+	 */
+	public long getChartHash() {
+		return this.chartHash;
+	} // End getChartHash()
+	
+	/**
+	 * Gets the number of presses.
+	 * 
+	 * @return An int of the number of presses.
+	 */
+	public int size() {
+		return this.size;
+	} // End size()
+	
+	/**
+	 * Gets the time the engine was at when a press was handed in.
+	 * 
+	 * @param i The index of the press.
+	 * @return A long of the engine time in ms.
+	 */
+	public long getEngineTime(int i) {
+		return this.engineTimes[i];
+	} // End getEngineTime()
+	
+	/**
+	 * Gets the time a key was pressed at.
+	 * 
+	 * @param i The index of the press.
+	 * @return A long of the press time in ms.
+	 */
+	public long getPressTime(int i) {
+		return this.pressTimes[i];
+	} // End getPressTime()
+	
+	/**
+	 * Gets the direction of a press.
+	 * 
+	 * @param i The index of the press.
+	 * @return An int of the lane, from 1.
+	 */
+	public int getLane(int i) {
+		return this.lanes[i];
+	} // End getLane()
+	
+	/**
+	 * Gets the score that was recorded.
+	 * 
+	 * @return A long of the score.
+	 */
+	public long getScore() {
+		return this.score;
+	} // End getScore()
+	
+	/**
+	 * Gets the number of hits that was recorded.
+	 * 
+	 * @return An int of the hits.
+	 */
+	public int getHits() {
+		return this.hits;
+	} // End getHits()
+	
+	/**
+	 * Gets the number of misses that was recorded.
+	 * 
+	 * @return An int of the misses.
+	 */
+	public int getMisses() {
+		return this.misses;
+	} // End getMisses()
+} // End Replay class
@@ -0,0 +1,124 @@
+package core;
+
+/**
+ * The ReplayVerifier class plays back saved replays on the GameEngine
+ * as fast as the CPU allows and checks each one gets the score that
+ * was recorded. Each replay is matched to its chart by the hash of
+ * the chart, and one engine is kept per chart and reset between
+ * replays, so checking a large folder of replays creates next to no
+ * garbage.
+ * 
+ * Usage: java core.ReplayVerifier chart.cbm... replay.cbrr|folder...
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class ReplayVerifier {
+	public static void main(String[] argv) throws IOException {
+		HashMap<Long, GameEngine> engines = new HashMap<Long, GameEngine>();
+		ArrayList<String> replays = new ArrayList<String>();
+		MapParser parser = new MapParser();
+		
+		for (int i = 0; i < argv.length; i++) {
+			if (argv[i].endsWith(".cbm") || argv[i].endsWith(".cbmc")) {
+				NoteStore notes = parser.loadNotes(argv[i]);
+				
+				// The engine sorts the notes, which the hash needs
+				GameEngine engine = new GameEngine(notes);
+				engines.put(Replay.hashChart(notes), engine);
+			}
+			else
+				addReplays(new File(argv[i]), replays);
+		} // End for
+		
+		if (engines.isEmpty() || replays.isEmpty()) {
+			System.err.println("Usage: java core.ReplayVerifier chart.cbm... replay.cbrr|folder...");
+			System.exit(1);
+		}
+		
+		int passed = 0;
+		int failed = 0;
+		long presses = 0;
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < replays.size(); i++) {
+			String filename = replays.get(i);
+			Replay replay;
+			
+			try {
+				replay = Replay.read(filename);
+			}
+			catch (IOException e) {
+				System.out.println("ERROR    " + e.getMessage());
+				failed++;
+				continue;
+			}
+			
+			GameEngine engine = engines.get(replay.getChartHash());
+			
+			if (engine == null) {
+				System.out.printf("NO CHART %s (chart %016x)%n", filename, replay.getChartHash());
+				failed++;
+				continue;
+			}
+			
+			engine.reset();
+			replay.playInto(engine);
+			presses += replay.size();
+			
+			if (replay.matches(engine)) {
+				System.out.println("OK       " + filename + " score: " + engine.getScore());
+				passed++;
+			}
+			else {
+				System.out.println("MISMATCH " + filename + " score: " + engine.getScore() + " (" + replay.getScore()
+						+ "), hits: " + engine.getHits() + " (" + replay.getHits() + "), misses: "
+						+ engine.getMisses() + " (" + replay.getMisses() + ")");
+				failed++;
+			}
+		} // End for
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println("Passed: " + passed + ", failed: " + failed + ", presses: " + presses);
+		System.out.printf("%d replays in %.3f s (%.0f replays/min)%n", replays.size(), seconds,
+				replays.size() * 60 / seconds);
+		
+		if (failed > 0)
+			System.exit(2);
+	} // End main()
+	
+	/**
+	 * Adds a replay file, or every replay file in a folder and
+	 * the folders below it.
+	 * 
+	 * @param file The replay file or folder.
+	 * @param replays The list to add the paths of the replays to.
+	 */
+	private static void addReplays(File file, ArrayList<String> replays) {
+		if (!file.isDirectory()) {
+			replays.add(file.getPath());
+			return;
+		}
+		
+		File[] files = file.listFiles();
+		
+		if (files == null)
+			return;
+		
+		Arrays.sort(files);
+		
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].isDirectory() || files[i].getName().endsWith(".cbrr"))
+				addReplays(files[i], replays);
+		} // End for
+	} // End addReplays()
+} // End ReplayVerifier class
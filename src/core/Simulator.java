@@ -0,0 +1,96 @@
+package core;
+
+/**
+ * The Simulator class plays a map on the GameEngine without a display,
+ * pressing every note at the time it reaches the top arrows, and
+ * reports how many full plays it manages per second. It is used to
+ * check scoring and to load test the game logic on a server.
+ * 
+ * Usage: java core.Simulator map.cbm [plays] [replay.cbrr]
+ * 
+ * The first play can be saved as a replay, to be checked with the
+ * ReplayVerifier.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.IOException;
+import java.util.Arrays;
+
+public class Simulator {
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 1) {
+			System.err.println("Usage: java core.Simulator map.cbm [plays] [replay.cbrr]");
+			System.exit(1);
+		}
+		
+		int plays = (argv.length > 1) ? Integer.parseInt(argv[1]) : 10000;
+		
+		NoteStore notes = new MapParser().loadNotes(argv[0]);
+		GameEngine engine = new GameEngine(notes);
+		Replay replay = null;
+		
+		// Recording the first play, if a replay file was given
+		if (argv.length > 2) {
+			replay = new Replay(Replay.hashChart(notes));
+			engine.setReplay(replay);
+		}
+		
+		long score = 0;
+		long start = System.nanoTime();
+		
+		for (int p = 0; p < plays; p++) {
+			engine.reset();
+			autoplay(engine);
+			engine.runToEnd();
+			
+			if (p == 0) {
+				score = engine.getScore();
+				engine.setReplay(null);
+			}
+			else if (engine.getScore() != score)
+				System.err.println("Play " + p + " scored " + engine.getScore() + " instead of " + score);
+		} // End for
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println("Notes: " + notes.size() + ", score: " + score
+				+ ", hits: " + engine.getHits() + ", misses: " + engine.getMisses());
+		System.out.printf("%d plays in %.3f s (%.0f plays/s)%n", plays, seconds, plays / seconds);
+		
+		if (replay != null) {
+			engine.reset();
+			autoplay(engine);
+			engine.runToEnd();
+			
+			replay.setResult(engine);
+			replay.write(argv[2]);
+			System.out.println("Replay of " + replay.size() + " presses saved to " + argv[2]);
+		} // End if
+	} // End main()
+	
+	/**
+	 * Hands the engine a key press for every note at the time the
+	 * note lines up with its top arrow.
+	 * 
+	 * @param engine The engine to press keys on, at the start of the map.
+	 */
+	public static void autoplay(GameEngine engine) {
+		NoteStore notes = engine.getNotes();
+		long[] times = new long[notes.size()];
+		
+		/*
+		 * Key presses have to be handed in in order, so the
+		 * time and note index are packed together and sorted.
+		 */
+		for (int i = 0; i < notes.size(); i++)
+			times[i] = (notes.getTime(i) << 32) | i;
+		
+		Arrays.sort(times);
+		
+		for (int k = 0; k < times.length; k++)
+			engine.submitInput(times[k] >> 32, notes.getLane((int) times[k]));
+	} // End autoplay()
+} // End Simulator class
@@ -0,0 +1,31 @@
+package core;
+
+/**
+ * The SleepPacer class waits with Thread.sleep() in whole ms, the way
+ * the game loop used to. The sleep is cut down to a whole ms and the
+ * thread wakes whenever the OS gets to it, so frames come early or late
+ * by up to a ms or more. It is kept to compare the other pacers to.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class SleepPacer implements FramePacer {
+	/*
+	 * (non-Javadoc)
+	 * @see core.FramePacer#waitUntil(long)
+	 */
+	public long waitUntil(long deadline) {
+		long sleepTime = deadline - System.nanoTime();
+		
+		if (sleepTime > 0) {
+			try {
+				Thread.sleep(sleepTime / 1000000L);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} // End if
+		
+		return System.nanoTime();
+	} // End waitUntil()
+} // End SleepPacer class
@@ -0,0 +1,65 @@
+package core;
+
+/**
+ * The SnapshotBuffer class hands FrameSnapshots from the update thread
+ * to the render thread without locks, using three snapshots. The
+ * writer fills the back one, the reader draws the front one, and the
+ * third is swapped with either side in one atomic step. The writer
+ * never waits for the reader, the reader always gets the newest
+ * snapshot, and nothing is allocated to hand one over.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SnapshotBuffer {
+	// Set in the middle index when it holds a snapshot not yet read
+	private static final int FRESH = 4;
+	private static final int INDEX_MASK = 3;
+	
+	// The three snapshots
+	private final FrameSnapshot[] snapshots = {new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+	
+	// The snapshot being swapped, plus FRESH when it is newer than the front
+	private final AtomicInteger middle = new AtomicInteger(1);
+	
+	// The snapshot the writer fills, only used by the writer
+	private int back = 0;
+	
+	// The snapshot the reader draws, only used by the reader
+	private int front = 2;
+	
+	/**
+	 * Gets the snapshot to fill in. Only the update thread may call
+	 * this.
+	 * 
+	 * @return The back FrameSnapshot.
+	 */
+	public FrameSnapshot getBack() {
+		return this.snapshots[this.back];
+	} // End getBack()
+	
+	/**
+	 * Publishes the back snapshot to the reader and takes the middle
+	 * one to fill next. Only the update thread may call this.
+	 */
+	public void publish() {
+		this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+	} // End publish()
+	
+	/**
+	 * Gets the newest published snapshot, which stays the reader's
+	 * until the next call. Only the render thread may call this.
+	 * 
+	 * @return The front FrameSnapshot.
+	 */
+	public FrameSnapshot acquire() {
+		if ((this.middle.get() & FRESH) != 0)
+			this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+		
+		return this.snapshots[this.front];
+	} // End acquire()
+} // End SnapshotBuffer class
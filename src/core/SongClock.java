@@ -0,0 +1,33 @@
+package core;
+
+/**
+ * The SongClock interface gives the time of the chart being played.
+ * The game and the renderer both read the time from it, so notes are
+ * placed and judged by whatever the clock follows, such as the audio
+ * that is playing, rather than each keeping its own time.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public interface SongClock {
+	/**
+	 * Starts the chart at time 0.
+	 */
+	public void start();
+	
+	/**
+	 * Gets the time of the chart now.
+	 * 
+	 * @return A long of the chart time in ms, 0 before the clock is started.
+	 */
+	public long getTime();
+	
+	/**
+	 * Converts a System.nanoTime() reading, like the time a key was
+	 * pressed, into the time of the chart.
+	 * 
+	 * @param nanos A reading of System.nanoTime().
+	 * @return A long of the chart time in ms, 0 before the clock is started.
+	 */
+	public long toTime(long nanos);
+} // End SongClock interface
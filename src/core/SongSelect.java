@@ -0,0 +1,348 @@
+package core;
+
+/**
+ * The SongSelect class lists the charts of a ChartLibrary and starts
+ * the one picked. Everything shown comes from the mapped index, and
+ * only the rows on screen are read each time it is drawn, so a library
+ * of 50k charts opens and scrolls as fast as one of ten.
+ * 
+ * The index already on disk is shown straight away, while the folder
+ * is scanned in the background for charts that were added or changed;
+ * the list is swapped for the new index once the scan is done.
+ * 
+ * Keys: Up/Down and Page Up/Page Down move, Home/End jump to the ends,
+ * Tab changes what the list is sorted by, R reverses it and Enter
+ * plays the chart picked.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.io.IOException;
+
+public class SongSelect extends JPanel implements KeyListener {
+	private static final long serialVersionUID = 1L;
+	
+	// Size of the list and of each row
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 600;
+	private static final int ROW_HEIGHT = 18;
+	
+	// Rows above the list for the title and the column names
+	private static final int HEADER_ROWS = 2;
+	
+	// The window the list is in
+	private final JFrame frame;
+	
+	// The folder the charts are in
+	private final String folder;
+	
+	// The charts, and the order they are listed in (null while scanning a new library)
+	private ChartLibrary library = null;
+	private int[] order = new int[0];
+	
+	// What the list is sorted by and which way
+	private int sortBy = ChartLibrary.BY_PATH;
+	private boolean descending = false;
+	
+	// The chart picked and the first row on screen
+	private int selected = 0;
+	private int top = 0;
+	
+	// What the background scan is doing
+	private String status = "";
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates the list for a folder of charts.
+	 * 
+	 * @param frame The window the list is in.
+	 * @param folder The folder the charts are in.
+	 */
+	public SongSelect(JFrame frame, String folder) {
+		this.frame = frame;
+		this.folder = folder;
+		
+		setBackground(Color.black);
+		setPreferredSize(new Dimension(WIDTH, HEIGHT));
+		setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		setFocusable(true);
+		setFocusTraversalKeysEnabled(false);   // so Tab reaches the key listener
+		addKeyListener(this);
+	} // End SongSelect()
+	// End Constructor(s)
+	
+	/**
+	 * Opens a window listing the charts in a folder, and scans the
+	 * folder in the background.
+	 * 
+	 * @param folder The folder the charts are in.
+	 */
+	public static void open(final String folder) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				JFrame frame = new JFrame("CircleBear Revolution - Song Select");
+				SongSelect select = new SongSelect(frame, folder);
+				
+				frame.getContentPane().add(select);
+				frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				frame.pack();
+				frame.setResizable(false);
+				frame.setVisible(true);
+				select.requestFocusInWindow();
+				
+				select.start();
+			}
+		});
+	} // End open()
+	
+	/**
+	 * Shows the index already on disk, if there is one, and starts
+	 * scanning the folder.
+	 */
+	private void start() {
+		try {
+			setLibrary(ChartLibrary.open(this.folder), "Checking for new charts...");
+		}
+		catch (IOException e) {
+			this.status = "Scanning " + this.folder + "...";
+		}
+		
+		Thread scanner = new Thread(new Runnable() {
+			public void run() {
+				scanLibrary();
+			}
+		}, "Library scan");
+		scanner.setDaemon(true);
+		scanner.start();
+	} // End start()
+	
+	/**
+	 * Scans the folder and shows the new index. Runs on the scan thread.
+	 */
+	private void scanLibrary() {
+		long start = System.nanoTime();
+		String message;
+		ChartLibrary scanned = null;
+		
+		try {
+			scanned = ChartLibrary.scan(this.folder);
+			message = String.format("%d charts (%d new or changed) in %.0f ms", scanned.size(),
+					scanned.getParsedCount(), (System.nanoTime() - start) / 1e6);
+		}
+		catch (IOException e) {
+			message = "Could not scan " + this.folder + ": " + e.getMessage();
+		}
+		
+		final ChartLibrary result = scanned;
+		final String done = message;
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (result != null)
+					setLibrary(result, done);
+				else
+					SongSelect.this.status = done;
+				
+				repaint();
+			}
+		});
+	} // End scanLibrary()
+	
+	/**
+	 * Shows a library, keeping the same chart picked if it is still in it.
+	 * 
+	 * @param library The library to show.
+	 * @param status What to say about it.
+	 */
+	private void setLibrary(ChartLibrary library, String status) {
+		String picked = (this.library != null && this.order.length > 0) ? this.library.getPath(this.order[this.selected]) : null;
+		
+		this.library = library;
+		this.status = status;
+		this.order = library.sort(this.sortBy, this.descending);
+		this.selected = 0;
+		
+		if (picked != null) {
+			int chart = library.indexOf(picked);
+			
+			for (int row = 0; chart != -1 && row < this.order.length; row++) {
+				if (this.order[row] == chart) {
+					this.selected = row;
+					break;
+				}
+			} // End for
+		} // End if
+		
+		scrollToSelected();
+	} // End setLibrary()
+	
+	/**
+	 * Sorts the list again, keeping the same chart picked.
+	 */
+	private void resort() {
+		if (this.library != null)
+			setLibrary(this.library, this.status);
+	} // End resort()
+	
+	/**
+	 * Moves the picked chart by a number of rows.
+	 * 
+	 * @param rows The rows to move, negative to move up.
+	 */
+	private void move(int rows) {
+		this.selected = Math.max(0, Math.min(this.order.length - 1, this.selected + rows));
+		scrollToSelected();
+	} // End move()
+	
+	/**
+	 * Scrolls the list so the picked chart is on screen.
+	 */
+	private void scrollToSelected() {
+		int visible = getVisibleRows();
+		
+		if (this.selected < this.top)
+			this.top = this.selected;
+		else if (this.selected >= this.top + visible)
+			this.top = this.selected - visible + 1;
+		
+		this.top = Math.max(0, this.top);
+	} // End scrollToSelected()
+	
+	/**
+	 * Gets the number of chart rows that fit on screen.
+	 * 
+	 * @return An int of the rows.
+	 */
+	private int getVisibleRows() {
+		return (HEIGHT / ROW_HEIGHT) - HEADER_ROWS - 1;
+	} // End getVisibleRows()
+	
+	/**
+	 * Closes the list and plays the picked chart.
+	 */
+	private void play() {
+		if (this.order.length == 0)
+			return;
+		
+		final String chart = this.library.getFile(this.order[this.selected]).getPath();
+		this.frame.dispose();
+		
+		// Startup waits on the loader, so it is kept off the event thread
+		Thread game = new Thread(new Runnable() {
+			public void run() {
+				Game.play(chart);
+			}
+		}, "Game startup");
+		game.start();
+	} // End play()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		
+		g.setColor(Color.white);
+		g.drawString(this.status, 4, ROW_HEIGHT - 4);
+		
+		if (this.library == null)
+			return;
+		
+		String arrow = this.descending ? " v" : " ^";
+		String[] columns = {"Chart", "Notes", "Length", "NPS", "Diff"};
+		columns[this.sortBy] += arrow;
+		
+		g.setColor(Color.yellow);
+		g.drawString(String.format("%-40s %8s %7s %7s %7s", (Object[]) columns), 4, (2 * ROW_HEIGHT) - 4);
+		
+		int end = Math.min(this.order.length, this.top + getVisibleRows());
+		
+		for (int row = this.top; row < end; row++) {
+			int chart = this.order[row];
+			int y = (row - this.top + HEADER_ROWS + 1) * ROW_HEIGHT;
+			int seconds = this.library.getDuration(chart) / 1000;
+			
+			if (row == this.selected) {
+				g.setColor(Color.darkGray);
+				g.fillRect(0, y - ROW_HEIGHT + 4, WIDTH, ROW_HEIGHT);
+			}
+			
+			g.setColor(Color.white);
+			g.drawString(String.format("%-40.40s %8d %4d:%02d %7.2f %7.2f", this.library.getPath(chart),
+					this.library.getNoteCount(chart), seconds / 60, seconds % 60, this.library.getDensity(chart),
+					this.library.getDifficulty(chart)), 4, y - 4);
+		} // End for
+	} // End paintComponent()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.awt.event.KeyListener#keyPressed(java.awt.event.KeyEvent)
+	 */
+	public void keyPressed(KeyEvent e) {
+		switch (e.getKeyCode()) {
+			case KeyEvent.VK_UP:
+				move(-1);
+				break;
+			case KeyEvent.VK_DOWN:
+				move(1);
+				break;
+			case KeyEvent.VK_PAGE_UP:
+				move(-getVisibleRows());
+				break;
+			case KeyEvent.VK_PAGE_DOWN:
+				move(getVisibleRows());
+				break;
+			case KeyEvent.VK_HOME:
+				move(-this.order.length);
+				break;
+			case KeyEvent.VK_END:
+				move(this.order.length);
+				break;
+			case KeyEvent.VK_TAB:
+				this.sortBy = (this.sortBy + 1) % ChartLibrary.SORT_NAMES.length;
+				resort();
+				break;
+			case KeyEvent.VK_R:
+				this.descending = !this.descending;
+				resort();
+				break;
+			case KeyEvent.VK_ENTER:
+				play();
+				return;
+			default:
+				return;
+		} // End switch
+		
+		repaint();
+	} // End keyPressed()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.awt.event.KeyListener#keyReleased(java.awt.event.KeyEvent)
+	 */
+	public void keyReleased(KeyEvent e) {
+		// Do nothing
+	} // End keyReleased()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.awt.event.KeyListener#keyTyped(java.awt.event.KeyEvent)
+	 */
+	public void keyTyped(KeyEvent e) {
+		// Do nothing
+	} // End keyTyped()
+} // End SongSelect class
@@ -2,24 +2,32 @@ package core;
 
 // Import statements
 import java.io.*;
-import java.net.MalformedURLException;
-import java.net.URL;
 
-import java.applet.AudioClip;
-import java.applet.Applet;
+import javax.sound.sampled.LineUnavailableException;
 
 public class SoundTest {
-	// Creating the AudioClip as global
-	private static AudioClip myClip;
+	// Number of sounds that can play at once
+	private static final int VOICES = 16;
+	
+	// Creating the AudioEngine and clip as global
+	private static AudioEngine engine;
+	private static int myClip;
+	private static int loopVoice = -1;
 
 	public static void main(String[] args) {
+		engine = new AudioEngine(VOICES);
+		
 		try {
-			// Creating the URL this local machine
-			URL myClipURL = new URL("file", "localhost", "src/Clips/explosion.wav");
-			myClip = Applet.newAudioClip(myClipURL);
+			myClip = engine.loadClip(new AssetManager(), "Clips/explosion.wav");
+			engine.start();
+		}
+		catch (IOException e) {
+			System.err.println(e.getLocalizedMessage());
+			System.exit(-1);
 		}
-		catch (MalformedURLException e) {
-			System.err.print(e.getLocalizedMessage());
+		catch (LineUnavailableException e) {
+			System.err.println("No sound device: " + e.getLocalizedMessage());
+			System.exit(-1);
 		}
 		
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
@@ -36,16 +44,19 @@ public class SoundTest {
 		 * Playing if user types 'play'
 		 * Looping if user types 'loop'
 		 * Stopping if user types 'stop'
+		 * Printing the latency if user types 'latency'
 		 * 
 		 * Escapes program when user types 'escape'
 		 */
-		while (!(command.equals("escape"))) {
+		while (command != null && !(command.equals("escape"))) {
 			if (command.equals("play"))
 				playSound();
 			else if (command.equals("loop"))
 				loopSound();
 			else if (command.equals("stop"))
 				stopSound();
+			else if (command.equals("latency"))
+				printLatency();
 			
 			try {
 				command = br.readLine();
@@ -54,17 +65,28 @@ public class SoundTest {
 				System.exit(0);
 			}
 		} // End while
+		
+		engine.shutdown();
 	} // End main()
 	
 	private static void playSound() {
-		myClip.play();
+		engine.play(myClip);
 	} // End playSound()
 	
 	private static void loopSound() {
-		myClip.loop();
+		if (loopVoice != -1)
+			engine.stop(loopVoice);
+		
+		loopVoice = engine.loop(myClip);
 	} // End loopSound()
 	
 	private static void stopSound() {
-		myClip.stop();
+		engine.stopAll();
+		loopVoice = -1;
 	} // End stopSound()
+	
+	private static void printLatency() {
+		System.out.printf("Trigger to output: last %.1f ms, max %.1f ms%n",
+				engine.getLastLatency() / 1e6, engine.getMaxLatency() / 1e6);
+	} // End printLatency()
 } // End SoundTest class
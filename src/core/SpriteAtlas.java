@@ -0,0 +1,113 @@
+package core;
+
+/**
+ * The SpriteAtlas class packs a set of sprites side by side into one
+ * image in the pixel format of the screen. Drawing a sprite copies its
+ * part of the atlas, so every sprite is drawn from the same compatible
+ * image and nothing is converted while drawing a frame.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class SpriteAtlas {
+	// The image holding every sprite
+	private final BufferedImage atlas;
+	
+	// Where each sprite is in the atlas
+	private final int[] xCoords;
+	private final int[] widths;
+	private final int[] heights;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor packs the sprites into the atlas. The same image
+	 * given more than once is only packed once.
+	 * 
+	 * @param sprites The images of the sprites.
+	 * @param gc The configuration of the screen, or null if there is none.
+	 */
+	public SpriteAtlas(BufferedImage[] sprites, GraphicsConfiguration gc) {
+		this.xCoords = new int[sprites.length];
+		this.widths = new int[sprites.length];
+		this.heights = new int[sprites.length];
+		
+		// Working out where each distinct image goes
+		IdentityHashMap<BufferedImage, Integer> placed = new IdentityHashMap<BufferedImage, Integer>();
+		int width = 0;
+		int height = 1;
+		
+		for (int i = 0; i < sprites.length; i++) {
+			Integer x = placed.get(sprites[i]);
+			
+			if (x == null) {
+				x = width;
+				placed.put(sprites[i], x);
+				width += sprites[i].getWidth();
+				height = Math.max(height, sprites[i].getHeight());
+			}
+			
+			this.xCoords[i] = x;
+			this.widths[i] = sprites[i].getWidth();
+			this.heights[i] = sprites[i].getHeight();
+		} // End for
+		
+		width = Math.max(width, 1);
+		
+		if (gc != null)
+			this.atlas = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		else
+			this.atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		
+		// Copying each distinct image in
+		Graphics g = this.atlas.getGraphics();
+		
+		for (Map.Entry<BufferedImage, Integer> entry : placed.entrySet())
+			g.drawImage(entry.getKey(), entry.getValue(), 0, null);
+		
+		g.dispose();
+	} // End SpriteAtlas(BufferedImage[], GraphicsConfiguration)
+	// End Constructor(s)
+	
+	/**
+	 * Draws a sprite.
+	 * 
+	 * @param g A graphics screen to draw on.
+	 * @param sprite The index of the sprite.
+	 * @param x The x-coord to draw at.
+	 * @param y The y-coord to draw at.
+	 */
+	public void draw(Graphics g, int sprite, int x, int y) {
+		int sx = this.xCoords[sprite];
+		int w = this.widths[sprite];
+		int h = this.heights[sprite];
+		
+		g.drawImage(this.atlas, x, y, x + w, y + h, sx, 0, sx + w, h, null);
+	} // End draw()
+	
+	/**
+	 * Gets the number of sprites.
+	 * 
+	 * @return An int of the number of sprites.
+	 */
+	public int size() {
+		return this.xCoords.length;
+	} // End size()
+	
+	/**
+	 * Gets the image holding every sprite.
+	 * 
+	 * @return The atlas image.
+	 */
+	public BufferedImage getImage() {
+		return this.atlas;
+	} // End getImage()
+} // End SpriteAtlas class
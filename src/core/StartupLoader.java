@@ -0,0 +1,281 @@
+package core;
+
+/**
+ * The StartupLoader class loads what the game needs before it starts
+ * on a small fixed pool of threads, so decoding images, reading the map
+ * and opening the sound device happen at the same time instead of one
+ * after another. Each task belongs to a phase ("chart", "images" and so
+ * on) and the loader times every phase from when its first task starts
+ * to when its last one ends.
+ * 
+ * Moments after loading, like the first frame being drawn, can be
+ * marked too, and the report gives every phase and mark in ms since
+ * the loader was created, so time to first frame can be tracked.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+
+// Import statements
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartupLoader {
+	// Most threads used, since loading is mostly waiting on files and devices
+	private static final int MAX_THREADS = 4;
+	
+	// Width of the progress bar, in characters
+	private static final int BAR_WIDTH = 20;
+	
+	// When the loader was created, from System.nanoTime()
+	private final long startTime = System.nanoTime();
+	
+	// The threads tasks run on
+	private final ExecutorService executor;
+	
+	// The phases in the order their first task was handed in
+	private final ArrayList<Phase> phases = new ArrayList<Phase>();
+	
+	// The marks in the order they were made, in ns since startTime
+	private final ArrayList<String> markNames = new ArrayList<String>();
+	private final ArrayList<Long> markTimes = new ArrayList<Long>();
+	
+	// Tasks handed in and tasks finished, and the phase of the last one to finish
+	private int taskCount = 0;
+	private int doneCount = 0;
+	private String lastDone = "";
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates a loader with one thread per core,
+	 * at least 2 and at most MAX_THREADS.
+	 */
+	public StartupLoader() {
+		this(Math.max(2, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())));
+	} // End StartupLoader()
+	
+	/**
+	 * This constructor creates a loader with the given number of threads.
+	 * 
+	 * @param threads The number of tasks that can run at once.
+	 */
+	public StartupLoader(int threads) {
+		this.executor = Executors.newFixedThreadPool(Math.max(threads, 1), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Startup loader " + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+	} // End StartupLoader(int)
+	// End Constructor(s)
+	
+	/**
+	 * Hands in a task to run as part of a phase.
+	 * 
+	 * @param phase The name of the phase, like "images".
+	 * @param task The task.
+	 * @return A Future of what the task gives back, or the exception it threw.
+	 */
+	public synchronized <T> Future<T> submit(String phase, final Callable<T> task) {
+		final Phase owner = findPhase(phase);
+		owner.tasks++;
+		this.taskCount++;
+		
+		return this.executor.submit(new Callable<T>() {
+			public T call() throws Exception {
+				started(owner);
+				
+				try {
+					return task.call();
+				}
+				finally {
+					finished(owner);
+				}
+			}
+		});
+	} // End submit()
+	
+	/**
+	 * Waits for every task handed in so far to finish, showing how far
+	 * loading has got on a line of the console, then marks "ready".
+	 * 
+	 * @param out Where progress is shown, or null to show nothing.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public void awaitAll(PrintStream out) throws InterruptedException {
+		int shown = -1;
+		
+		synchronized (this) {
+			while (true) {
+				if (out != null && this.doneCount != shown) {
+					shown = this.doneCount;
+					out.print("\r" + progressLine());
+					out.flush();
+				}
+				
+				if (this.doneCount == this.taskCount)
+					break;
+				
+				wait();
+			} // End while
+		} // End synchronized
+		
+		if (out != null)
+			out.println();
+		
+		mark("ready");
+	} // End awaitAll()
+	
+	/**
+	 * Marks a moment of startup.
+	 * 
+	 * @param name The name of the moment, like "first frame".
+	 */
+	public synchronized void mark(String name) {
+		this.markNames.add(name);
+		this.markTimes.add(System.nanoTime() - this.startTime);
+	} // End mark()
+	
+	/**
+	 * Marks the last moment of startup, then prints the report and
+	 * stops the threads in the background, so whoever made the mark
+	 * does not wait on the console.
+	 * 
+	 * @param name The name of the moment, like "first frame".
+	 * @param out Where the report is printed.
+	 */
+	public void finish(String name, final PrintStream out) {
+		mark(name);
+		
+		this.executor.execute(new Runnable() {
+			public void run() {
+				printReport(out);
+			}
+		});
+		this.executor.shutdown();
+	} // End finish()
+	
+	/**
+	 * Prints when each phase started and ended and when each mark
+	 * was made, in ms since the loader was created.
+	 * 
+	 * @param out Where the report is printed.
+	 */
+	public synchronized void printReport(PrintStream out) {
+		out.println("Startup           tasks    start (ms)    end (ms)");
+		
+		for (Phase phase : this.phases)
+			out.printf("  %-16s %4d %13.1f %11.1f%n", phase.name, phase.tasks, phase.start / 1e6, phase.end / 1e6);
+		
+		for (int i = 0; i < this.markNames.size(); i++)
+			out.printf("  %-16s %30.1f%n", this.markNames.get(i), this.markTimes.get(i) / 1e6);
+	} // End printReport()
+	
+	/**
+	 * Gets the time since the loader was created.
+	 * 
+	 * @return A long of the time in ns.
+	 */
+	public long getElapsed() {
+		return System.nanoTime() - this.startTime;
+	} // End getElapsed()
+	
+	/**
+	 * Gets a phase, adding it if no task has been handed in for it yet.
+	 * 
+	 * @param name The name of the phase.
+	 * @return The Phase.
+	 */
+	private Phase findPhase(String name) {
+		for (Phase phase : this.phases) {
+			if (phase.name.equals(name))
+				return phase;
+		} // End for
+		
+		Phase phase = new Phase(name);
+		this.phases.add(phase);
+		
+		return phase;
+	} // End findPhase()
+	
+	/**
+	 * Notes that a task of a phase has started.
+	 * 
+	 * @param phase The phase of the task.
+	 */
+	private synchronized void started(Phase phase) {
+		long now = System.nanoTime() - this.startTime;
+		
+		if (phase.started++ == 0)
+			phase.start = now;
+	} // End started()
+	
+	/**
+	 * Notes that a task of a phase has finished and wakes anyone
+	 * waiting on the progress.
+	 * 
+	 * @param phase The phase of the task.
+	 */
+	private synchronized void finished(Phase phase) {
+		phase.end = System.nanoTime() - this.startTime;
+		phase.done++;
+		
+		this.doneCount++;
+		this.lastDone = phase.name;
+		notifyAll();
+	} // End finished()
+	
+	/**
+	 * Builds the line showing how far loading has got.
+	 * 
+	 * @return A String like "Loading [#####     ] 5/10 images".
+	 */
+	private String progressLine() {
+		int filled = (this.taskCount == 0) ? BAR_WIDTH : (this.doneCount * BAR_WIDTH) / this.taskCount;
+		StringBuilder line = new StringBuilder("Loading [");
+		
+		for (int i = 0; i < BAR_WIDTH; i++)
+			line.append((i < filled) ? '#' : ' ');
+		
+		line.append("] ").append(this.doneCount).append('/').append(this.taskCount);
+		line.append(' ').append(this.lastDone).append("        ");
+		
+		return line.toString();
+	} // End progressLine()
+	
+	/**
+	 * A phase of startup and the times of its tasks.
+	 */
+	private static class Phase {
+		// The name of the phase
+		private final String name;
+		
+		// When its first task started and its last one ended, in ns since startTime
+		private long start = 0L;
+		private long end = 0L;
+		
+		// Tasks handed in, started and finished
+		private int tasks = 0;
+		private int started = 0;
+		private int done = 0;
+		
+		/**
+		 * This constructor creates a phase with no tasks.
+		 * 
+		 * @param name The name of the phase.
+		 */
+		private Phase(String name) {
+			this.name = name;
+		} // End Phase()
+	} // End Phase class
+} // End StartupLoader class
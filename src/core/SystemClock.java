@@ -0,0 +1,42 @@
+package core;
+
+/**
+ * The SystemClock class is a SongClock that follows System.nanoTime().
+ * It is used when there is no audio to follow.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class SystemClock implements SongClock {
+	// The System.nanoTime() the chart started at (0 when not started)
+	private volatile long startTime = 0L;
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#start()
+	 */
+	public void start() {
+		this.startTime = System.nanoTime();
+	} // End start()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#getTime()
+	 */
+	public long getTime() {
+		return toTime(System.nanoTime());
+	} // End getTime()
+	
+	/*
+	 * (non-Javadoc)
+	 * @see core.SongClock#toTime(long)
+	 */
+	public long toTime(long nanos) {
+		long start = this.startTime;
+		
+		if (start == 0L)
+			return 0L;
+		
+		return (nanos - start) / 1000000L;
+	} // End toTime()
+} // End SystemClock class
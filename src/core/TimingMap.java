@@ -0,0 +1,428 @@
+package core;
+
+/**
+ * The TimingMap class maps the heights notes are written at in a map
+ * to the time they reach the top arrows, and times to how far the
+ * notes have scrolled. A map is split into segments at each tempo or
+ * scroll speed change; within a segment both mappings are linear, so
+ * the table of segments is worked out once when the map is loaded
+ * and a lookup only has to find the right segment.
+ * 
+ * Heights are in beats of BEAT_HEIGHT pixels, and a map with no
+ * changes is DEFAULT_BPM with a scroll speed of 1, which is the
+ * NoteStore.SCROLL_SPEED maps were always written for. The tempo sets
+ * how long a beat lasts and the scroll speed how far the notes move
+ * per beat, so a faster tempo also moves the notes faster. Changes at
+ * or below the height of the top arrows set how the map starts.
+ * 
+ * The game looks up times that mostly move forward a little at a time,
+ * so the last segment found is checked first and the segments are only
+ * searched when the time has left it. Changes are only meant to be
+ * added while loading a map, and the segments are worked out again on
+ * the first lookup after a change; after that a TimingMap can be
+ * shared by any number of threads. DEFAULT is shared by every map
+ * without changes, so adding a change to it throws.
+ * 
+ * @version 1.2
+ * @since 1.1
+ */
+
+// Import statements
+import java.util.Arrays;
+
+public class TimingMap {
+	// Height of a beat, in pixels of the map
+	public static final int BEAT_HEIGHT = 80;
+	
+	// The tempo and scroll speed of a map with no changes
+	public static final double DEFAULT_BPM = 120;
+	public static final double DEFAULT_SPEED = 1;
+	
+	// The timing of a map with no changes, shared by every such map so it can never be changed
+	public static final TimingMap DEFAULT = new TimingMap();
+	
+	// Number of changes the arrays start with room for
+	private static final int DEFAULT_CAPACITY = 4;
+	
+	/*
+	 * The kinds of change:
+	 * TEMPO = The beats per minute
+	 * SCROLL = How many times faster than normal the notes move
+	 */
+	private static final int TEMPO = 0;
+	private static final int SCROLL = 1;
+	
+	// The changes in the order they were added, as the height they start at, the kind and the value
+	private int[] changeHeights = new int[DEFAULT_CAPACITY];
+	private int[] changeKinds = new int[DEFAULT_CAPACITY];
+	private double[] changeValues = new double[DEFAULT_CAPACITY];
+	private int changeCount = 0;
+	
+	// Whether changes were added since the segments were worked out
+	private boolean changed = true;
+	
+	/*
+	 * The segments, in order. Each starts at a height, a time (in ms)
+	 * and a scroll position (in pixels) and has a tempo, a scroll
+	 * speed and how many pixels the notes move per ms. The first
+	 * segment starts at the top arrows, at time 0, and also covers
+	 * everything before them.
+	 */
+	private int[] segmentHeights;
+	private double[] segmentTimes;
+	private double[] segmentScrolls;
+	private double[] segmentTempos;
+	private double[] segmentSpeeds;
+	private double[] segmentRates;
+	private int segmentCount;
+	
+	// The segment of the last time looked up
+	private int cursor = 0;
+	
+	// Start Constructor(s)
+	/**
+	 * This constructor creates the timing of a map with no changes.
+	 */
+	public TimingMap() {
+		rebuild();
+	} // End TimingMap()
+	// End Constructor(s)
+	
+	/**
+	 * Changes the tempo from a height of the map onwards. This is only
+	 * meant to be called while loading a map.
+	 * 
+	 * @param height The height the new tempo starts at.
+	 * @param bpm The beats per minute, above 0.
+	 * @throws UnsupportedOperationException If this is DEFAULT.
+	 */
+	public void addTempo(int height, double bpm) {
+		if (!(bpm > 0) || Double.isInfinite(bpm))
+			throw new IllegalArgumentException("tempo " + bpm + " is not above 0");
+		
+		addChange(height, TEMPO, bpm);
+	} // End addTempo()
+	
+	/**
+	 * Changes the scroll speed from a height of the map onwards. This
+	 * is only meant to be called while loading a map.
+	 * 
+	 * @param height The height the new speed starts at.
+	 * @param speed How many times faster than normal the notes move, 0 or more.
+	 * @throws UnsupportedOperationException If this is DEFAULT.
+	 */
+	public void addScroll(int height, double speed) {
+		if (!(speed >= 0) || Double.isInfinite(speed))
+			throw new IllegalArgumentException("scroll speed " + speed + " is below 0");
+		
+		addChange(height, SCROLL, speed);
+	} // End addScroll()
+	
+	/**
+	 * Adds a change to the list, to be worked into the segments on the
+	 * next lookup.
+	 * 
+	 * @param height The height the change starts at.
+	 * @param kind TEMPO or SCROLL.
+	 * @param value The new value.
+	 * @throws UnsupportedOperationException If this is DEFAULT.
+	 */
+	private void addChange(int height, int kind, double value) {
+		if (this == DEFAULT)
+			throw new UnsupportedOperationException("the default timing cannot be changed");
+		
+		if (this.changeCount == this.changeHeights.length) {
+			int capacity = this.changeCount * 2;
+			
+			this.changeHeights = Arrays.copyOf(this.changeHeights, capacity);
+			this.changeKinds = Arrays.copyOf(this.changeKinds, capacity);
+			this.changeValues = Arrays.copyOf(this.changeValues, capacity);
+		} // End if
+		
+		this.changeHeights[this.changeCount] = height;
+		this.changeKinds[this.changeCount] = kind;
+		this.changeValues[this.changeCount] = value;
+		this.changeCount++;
+		this.changed = true;
+	} // End addChange()
+	
+	/**
+	 * Works out the segments again if changes were added since.
+	 */
+	private void update() {
+		if (this.changed)
+			rebuild();
+	} // End update()
+	
+	/**
+	 * Works out the segments from the changes, going through them in
+	 * order of height. Of changes at the same height, the one added
+	 * last counts.
+	 */
+	private void rebuild() {
+		long[] keys = new long[this.changeCount];
+		
+		// Packing the height and index together keeps changes at the same height in the order added
+		for (int i = 0; i < this.changeCount; i++)
+			keys[i] = ((long) this.changeHeights[i] << 32) | i;
+		
+		Arrays.sort(keys);
+		
+		int capacity = this.changeCount + 1;
+		this.segmentHeights = new int[capacity];
+		this.segmentTimes = new double[capacity];
+		this.segmentScrolls = new double[capacity];
+		this.segmentTempos = new double[capacity];
+		this.segmentSpeeds = new double[capacity];
+		this.segmentRates = new double[capacity];
+		
+		double tempo = DEFAULT_BPM;
+		double speed = DEFAULT_SPEED;
+		int height = NoteStore.TARGET_Y;
+		int k = 0;
+		int j = 0;
+		
+		while (true) {
+			// Taking in every change up to the start of the segment
+			while (j < keys.length && this.changeHeights[(int) keys[j]] <= height) {
+				int i = (int) keys[j++];
+				
+				if (this.changeKinds[i] == TEMPO)
+					tempo = this.changeValues[i];
+				else
+					speed = this.changeValues[i];
+			} // End while
+			
+			this.segmentHeights[k] = height;
+			this.segmentTempos[k] = tempo;
+			this.segmentSpeeds[k] = speed;
+			this.segmentRates[k] = (tempo * BEAT_HEIGHT * speed) / 60000;
+			
+			if (k > 0) {
+				this.segmentTimes[k] = timeIn(k - 1, height);
+				this.segmentScrolls[k] = this.segmentScrolls[k - 1] + ((height - this.segmentHeights[k - 1]) * this.segmentSpeeds[k - 1]);
+			}
+			
+			k++;
+			
+			if (j == keys.length)
+				break;
+			
+			height = this.changeHeights[(int) keys[j]];
+		} // End while
+		
+		this.segmentCount = k;
+		this.cursor = 0;
+		this.changed = false;
+	} // End rebuild()
+	
+	/**
+	 * Works out the time of a height within a segment.
+	 * 
+	 * @param k The segment.
+	 * @param height The height.
+	 * @return A double of the time in ms.
+	 */
+	private double timeIn(int k, long height) {
+		// Dividing last keeps heights that land on a whole ms exact
+		return this.segmentTimes[k] + (((height - this.segmentHeights[k]) * 60000.0) / (this.segmentTempos[k] * BEAT_HEIGHT));
+	} // End timeIn()
+	
+	/**
+	 * Gets when a note written at a height reaches the top arrows.
+	 * 
+	 * @param height The height of the note in the map.
+	 * @return A long of the note's time in ms.
+	 */
+	public long getNoteTime(long height) {
+		update();
+		
+		// Finding the last segment starting at or below the height
+		int lo = 1;
+		int hi = this.segmentCount;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (this.segmentHeights[mid] <= height)
+				lo = mid + 1;
+			else
+				hi = mid;
+		} // End while
+		
+		return (long) timeIn(lo - 1, height);
+	} // End getNoteTime()
+	
+	/**
+	 * Finds the segment a time is in, starting from the segment of
+	 * the last time looked up.
+	 * 
+	 * @param time The time in ms.
+	 * @return The index of the segment.
+	 */
+	private int findSegment(long time) {
+		update();
+		
+		int k = this.cursor;
+		
+		if ((k > 0 && time < this.segmentTimes[k]) || (k + 1 < this.segmentCount && time >= this.segmentTimes[k + 1])) {
+			k = search(this.segmentTimes, this.segmentCount, time);
+			
+			// Threads sharing the map may race here, but any segment is a valid start
+			this.cursor = k;
+		}
+		
+		return k;
+	} // End findSegment()
+	
+	/**
+	 * Finds the last segment starting at or before a value.
+	 * 
+	 * @param starts Where each segment starts, in order.
+	 * @param count The number of segments.
+	 * @param value The value to find.
+	 * @return The index of the segment, or 0 if the value is before every segment.
+	 */
+	private static int search(double[] starts, int count, double value) {
+		int lo = 1;
+		int hi = count;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (starts[mid] <= value)
+				lo = mid + 1;
+			else
+				hi = mid;
+		} // End while
+		
+		return lo - 1;
+	} // End search()
+	
+	/**
+	 * Gets how far the notes have scrolled at a time. A note is drawn
+	 * as far below the top arrows as its scroll position is ahead of
+	 * the one of the current time.
+	 * 
+	 * @param time The time in ms.
+	 * @return A double of the scroll position in pixels.
+	 */
+	public double getScrollPosition(long time) {
+		int k = findSegment(time);
+		
+		return this.segmentScrolls[k] + ((time - this.segmentTimes[k]) * this.segmentRates[k]);
+	} // End getScrollPosition()
+	
+	/**
+	 * Gets how fast the notes move at a time.
+	 * 
+	 * @param time The time in ms.
+	 * @return A double of the pixels per ms.
+	 */
+	public double getScrollRate(long time) {
+		return this.segmentRates[findSegment(time)];
+	} // End getScrollRate()
+	
+	/**
+	 * Gets when the notes have scrolled to a position. If they stop
+	 * there, the time they move on again is given.
+	 * 
+	 * @param scroll The scroll position in pixels.
+	 * @return A long of the time in ms.
+	 */
+	public long getTimeAtScroll(double scroll) {
+		update();
+		
+		int k = search(this.segmentScrolls, this.segmentCount, scroll);
+		
+		// Only the last segment can be found while stopped
+		if (this.segmentRates[k] == 0)
+			return (long) this.segmentTimes[k];
+		
+		return (long) (this.segmentTimes[k] + ((scroll - this.segmentScrolls[k]) / this.segmentRates[k]));
+	} // End getTimeAtScroll()
+	
+	/**
+	 * Checks if the map has no tempo or scroll speed changes.
+	 * 
+	 * @return True if the whole map is DEFAULT_BPM at DEFAULT_SPEED.
+	 */
+	public boolean isConstant() {
+		update();
+		
+		return this.segmentCount == 1 && this.segmentTempos[0] == DEFAULT_BPM && this.segmentSpeeds[0] == DEFAULT_SPEED;
+	} // End isConstant()
+	
+	/**
+	 * Checks if another TimingMap times a map the same way, with the
+	 * same tempo and scroll speed from the same heights.
+	 * 
+	 * @param other The TimingMap to compare with.
+	 * @return True if every segment is the same.
+	 */
+	public boolean hasSameSegments(TimingMap other) {
+		if (other == this)
+			return true;
+		
+		update();
+		other.update();
+		
+		if (this.segmentCount != other.segmentCount)
+			return false;
+		
+		for (int k = 0; k < this.segmentCount; k++) {
+			if (this.segmentHeights[k] != other.segmentHeights[k] || this.segmentTempos[k] != other.segmentTempos[k]
+					|| this.segmentSpeeds[k] != other.segmentSpeeds[k])
+				return false;
+		} // End for
+		
+		return true;
+	} // End hasSameSegments()
+	
+	/**
+	 * Gets the number of segments.
+	 * 
+	 * @return An int of the segments.
+	 */
+	public int getSegmentCount() {
+		update();
+		
+		return this.segmentCount;
+	} // End getSegmentCount()
+	
+	/**
+	 * Gets the height a segment starts at.
+	 * 
+	 * @param k The segment.
+	 * @return An int of the height in the map.
+	 */
+	public int getSegmentHeight(int k) {
+		update();
+		
+		return this.segmentHeights[k];
+	} // End getSegmentHeight()
+	
+	/**
+	 * Gets the tempo of a segment.
+	 * 
+	 * @param k The segment.
+	 * @return A double of the beats per minute.
+	 */
+	public double getSegmentTempo(int k) {
+		update();
+		
+		return this.segmentTempos[k];
+	} // End getSegmentTempo()
+	
+	/**
+	 * Gets the scroll speed of a segment.
+	 * 
+	 * @param k The segment.
+	 * @return A double of how many times faster than normal the notes move.
+	 */
+	public double getSegmentSpeed(int k) {
+		update();
+		
+		return this.segmentSpeeds[k];
+	} // End getSegmentSpeed()
+} // End TimingMap class
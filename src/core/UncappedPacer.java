@@ -0,0 +1,21 @@
+package core;
+
+/**
+ * The UncappedPacer class does not wait at all, so frames run as fast
+ * as they can be drawn. It only yields, so other threads (like the
+ * one handing in key presses) still get to run.
+ * 
+ * @version 1.0
+ * @since 1.1
+ */
+public class UncappedPacer implements FramePacer {
+	/*
+	 * (non-Javadoc)
+	 * @see core.FramePacer#waitUntil(long)
+	 */
+	public long waitUntil(long deadline) {
+		Thread.yield();
+		
+		return System.nanoTime();
+	} // End waitUntil()
+} // End UncappedPacer class